@@ -17,15 +17,21 @@
 
 package net.wouterdanes.docker.maven;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import net.wouterdanes.docker.provider.DockerProvider;
-import net.wouterdanes.docker.provider.DockerProviderSupplier;
+import net.wouterdanes.docker.provider.DockerProviderRegistry;
 import net.wouterdanes.docker.provider.model.BuiltImageInfo;
+import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
 import net.wouterdanes.docker.provider.model.PushableImage;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -37,15 +43,17 @@ import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.*;
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -60,6 +68,10 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
     private static final String BUILT_IMAGES_KEY = "builtImages";
     private static final String PUSHABLE_IMAGES_KEY = "pushableImages";
     private static final String ERRORS_KEY = "errors";
+    private static final String PROVIDER_REGISTRY_KEY = "providerRegistry";
+    private static final String LOG_TAILS_KEY = "logTails";
+    private static final String GOAL_METRICS_KEY = "goalMetrics";
+    private static final long LOG_TAIL_DRAIN_MILLIS = 5000;
 
     @Component
     private RepositorySystem repositorySystem;
@@ -101,6 +113,64 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
     @Parameter(defaultValue = "", property = "docker.logs", required = false)
     private String logs;
 
+    /**
+     * Write stdout and stderr of a container to separate files: ${container-name}.stdout.log and
+     * ${container-name}.stderr.log.
+     */
+    @Parameter(defaultValue = "false", property = "docker.splitLogs")
+    private boolean splitLogs;
+
+    /**
+     * Follow the logs of containers into the logs directory while they run, instead of downloading them when they are
+     * stopped. The files are rotated when they reach docker.logMaxSize.
+     */
+    @Parameter(defaultValue = "false", property = "docker.tailLogs")
+    private boolean tailLogs;
+
+    /**
+     * The size in megabytes at which a followed log file is rotated.
+     */
+    @Parameter(defaultValue = "10", property = "docker.logMaxSize")
+    private int logMaxSize;
+
+    /**
+     * The number of rotated log files to keep per container, next to the current one.
+     */
+    @Parameter(defaultValue = "5", property = "docker.logRetention")
+    private int logRetention;
+
+    /**
+     * The maximum number of containers that are stopped and deleted at the same time.
+     */
+    @Parameter(defaultValue = "8", property = "docker.stopParallelism")
+    private int stopParallelism;
+
+    /**
+     * Kill containers instead of stopping them, so they don't get time to shut down. The logs then don't contain what
+     * a container would log while shutting down.
+     */
+    @Parameter(defaultValue = "false", property = "docker.killContainers")
+    private boolean killContainers;
+
+    /**
+     * How the work for every container and image runs: "platform" runs it on pools of platform threads, "virtual"
+     * gives every task a virtual thread, on Java 21 or newer.
+     */
+    @Parameter(defaultValue = TaskScope.PLATFORM, property = "docker.executionMode")
+    private String executionMode = TaskScope.PLATFORM;
+
+    /**
+     * The file the metrics of the calls to docker are written to at the end of every goal, per endpoint of the remote
+     * api. Set it to an empty value to not write them.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/docker-plugin-metrics.json", property = "docker.metricsFile")
+    private File metricsFile;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
+    private TaskScope taskScope;
+
     public void setProviderName(final String providerName) {
         this.providerName = providerName;
     }
@@ -109,6 +179,42 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         this.skip = skip;
     }
 
+    public void setLogs(final String logs) {
+        this.logs = logs;
+    }
+
+    public void setSplitLogs(final boolean splitLogs) {
+        this.splitLogs = splitLogs;
+    }
+
+    public void setTailLogs(final boolean tailLogs) {
+        this.tailLogs = tailLogs;
+    }
+
+    public void setLogMaxSize(final int logMaxSize) {
+        this.logMaxSize = logMaxSize;
+    }
+
+    public void setLogRetention(final int logRetention) {
+        this.logRetention = logRetention;
+    }
+
+    public void setStopParallelism(final int stopParallelism) {
+        this.stopParallelism = stopParallelism;
+    }
+
+    public void setKillContainers(final boolean killContainers) {
+        this.killContainers = killContainers;
+    }
+
+    public void setExecutionMode(final String executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public void setMetricsFile(final File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
     @Override
     public final void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -117,20 +223,124 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         }
 
         getLog().info("Using docker provider: " + providerName);
-        doExecute();
+        Map<ApiMetrics, ApiMetrics> metricsAtStart = snapshotApiMetrics();
+        try (TaskScope scope = TaskScope.open(executionMode, getLog())) {
+            taskScope = scope;
+            doExecute();
+            if (scope.getTasks() > 0) {
+                getLog().debug(String.format("Ran %d task(s) on %s threads, at most %d at the same time",
+                        scope.getTasks(), scope.isVirtual() ? "virtual" : "platform", scope.getPeak()));
+            }
+        } finally {
+            taskScope = null;
+            writeApiMetrics(metricsAtStart);
+        }
+        if (getLog().isDebugEnabled()) {
+            getLog().debug(String.format("Docker API clients created during this build so far: %d",
+                    getDockerProviderRegistry().getCreatedClientCount()));
+        }
+    }
+
+    /**
+     * @return a snapshot of the metrics of every provider made so far, to tell the calls of this goal apart
+     */
+    private Map<ApiMetrics, ApiMetrics> snapshotApiMetrics() {
+        Map<ApiMetrics, ApiMetrics> snapshots = new IdentityHashMap<>();
+        if (metricsFile != null && !metricsFile.getPath().isEmpty()) {
+            for (ApiMetrics daemon : getDockerProviderRegistry().getApiMetrics()) {
+                snapshots.put(daemon, daemon.snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Writes the metrics of the calls that the goals of this build made to docker so far, one entry per goal with
+     * only the calls of that goal. Failing to write them doesn't fail the build.
+     *
+     * @param metricsAtStart the snapshots of the metrics when this goal started
+     */
+    private void writeApiMetrics(final Map<ApiMetrics, ApiMetrics> metricsAtStart) {
+        if (metricsFile == null || metricsFile.getPath().isEmpty()) {
+            return;
+        }
+        List<ApiMetrics> metrics = getDockerProviderRegistry().getApiMetrics();
+        if (metrics.isEmpty()) {
+            return;
+        }
+        JsonArray daemons = new JsonArray();
+        for (ApiMetrics daemon : metrics) {
+            ApiMetrics atStart = metricsAtStart.get(daemon);
+            daemons.add((atStart != null ? daemon.since(atStart) : daemon.snapshot()).toJson());
+        }
+        JsonObject goal = new JsonObject();
+        goal.addProperty("goal", mojoExecution != null ? mojoExecution.getGoal() : getClass().getSimpleName());
+        if (mojoExecution != null) {
+            goal.addProperty("executionId", mojoExecution.getExecutionId());
+        }
+        goal.add("daemons", daemons);
+        List<JsonObject> goals = getGoalMetrics();
+        goals.add(goal);
+
+        JsonArray goalsJson = new JsonArray();
+        goals.forEach(goalsJson::add);
+        JsonObject report = new JsonObject();
+        report.add("goals", goalsJson);
+        Path file = metricsFile.toPath();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, new GsonBuilder().setPrettyPrinting().create().toJson(report)
+                    .getBytes(StandardCharsets.UTF_8));
+            getLog().debug(String.format("Wrote the metrics of %s to %s", metrics, file));
+        } catch (IOException e) {
+            getLog().warn(String.format("Cannot write the metrics of the calls to docker to %s: %s", file,
+                    e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the metrics of the goals that ran so far, kept in the plugin context like the provider registry
+     */
+    @SuppressWarnings("unchecked")
+    private List<JsonObject> getGoalMetrics() {
+        Map pluginContext = getPluginContext();
+        synchronized (pluginContext) {
+            Object goals = pluginContext.get(GOAL_METRICS_KEY);
+            if (goals == null) {
+                goals = new CopyOnWriteArrayList<JsonObject>();
+                pluginContext.put(GOAL_METRICS_KEY, goals);
+            }
+            return (List<JsonObject>) goals;
+        }
     }
 
     protected abstract void doExecute() throws MojoExecutionException, MojoFailureException;
 
+    /**
+     * Returns the scope that runs the tasks of this execution of the goal, see {@link TaskScope}.
+     */
+    TaskScope getTaskScope() {
+        return taskScope != null ? taskScope : TaskScope.platform();
+    }
+
     protected void registerStartedContainer(String containerId, ContainerInspectionResult container) {
-        StartedContainerInfo info = new StartedContainerInfo(containerId, container);
+        registerStartedContainer(containerId, container, ContainerStartConfiguration.DEFAULT_STOP_TIMEOUT);
+    }
+
+    protected void registerStartedContainer(String containerId, ContainerInspectionResult container,
+                                            int stopTimeout) {
+        StartedContainerInfo info = new StartedContainerInfo(containerId, container, stopTimeout);
         Map<String, StartedContainerInfo> startedContainers = obtainMapFromPluginContext(STARTED_CONTAINERS_KEY);
         startedContainers.put(containerId, info);
     }
 
     protected Collection<StartedContainerInfo> getStartedContainers() {
         Map<String, StartedContainerInfo> map = obtainMapFromPluginContext(STARTED_CONTAINERS_KEY);
-        return map.values();
+        synchronized (map) {
+            return new ArrayList<>(map.values());
+        }
     }
 
     protected Optional<StartedContainerInfo> getInfoForContainerStartId(String startId) {
@@ -151,7 +361,9 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
 
     protected Collection<BuiltImageInfo> getBuiltImages() {
         Map<String, BuiltImageInfo> builtImagesMap = obtainMapFromPluginContext(BUILT_IMAGES_KEY);
-        return Collections.unmodifiableCollection(builtImagesMap.values());
+        synchronized (builtImagesMap) {
+            return Collections.unmodifiableCollection(new ArrayList<>(builtImagesMap.values()));
+        }
     }
 
     protected void cleanUpStartedContainers() {
@@ -162,42 +374,154 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
             getLog().info("NOT writing docker container logs.");
         }
 
-        List<String> stoppedContainerIds = new ArrayList<>();
-        for (Iterator<StartedContainerInfo> it = getStartedContainers().iterator(); it.hasNext(); ) {
-            StartedContainerInfo startedContainerInfo = it.next();
-            String containerId = startedContainerInfo.getContainerInfo().getId();
-            String containerName = startedContainerInfo.getContainerId();
-            getLog().info(String.format("Stopping container '%s'..", containerId));
-            try {
-                if (logsDir.isPresent()) {
-                    Path logFile = logsDir.get().resolve(containerName + ".log");
-                    getLog().info("Writing logs to: " + logFile);
-                    String logs = getDockerProvider().getLogs(containerId);
-
-                    try {
-                        Files.copy(new ByteArrayInputStream(logs.getBytes()), logFile, REPLACE_EXISTING);
-                    } catch (IOException e) {
-                        if (getLog().isDebugEnabled()) {
-                            getLog().error("Failed to write docker logs to: " + logFile, e);
-                        } else {
-                            getLog().error("Failed to write docker logs to: " + logFile);
-                        }
-                    }
+        Collection<StartedContainerInfo> containers = getStartedContainers();
+        if (containers.isEmpty()) {
+            return;
+        }
+        DockerProvider provider = getDockerProvider();
+        // every container is stopped, has its logs written and is deleted on its own, so one container that takes
+        // long to stop doesn't hold up the others
+        TaskGraph<String, Void> removals = new TaskGraph<>();
+        for (StartedContainerInfo container : containers) {
+            removals.add(container.getContainerId(), Collections.<String>emptyList(), () -> {
+                removeContainer(provider, container, logsDir);
+                return null;
+            });
+        }
+        long start = System.nanoTime();
+        try {
+            removals.run(getTaskScope(), stopParallelism, "docker-stop", result -> {
+                if (result.getException().isPresent()) {
+                    getLog().error(String.format("Failed to remove container '%s'", result.getKey()),
+                            result.getException().get());
                 }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().error("Interrupted while removing containers, some containers may still be running");
+            return;
+        }
+        getLog().info(String.format(Locale.ROOT, "Removed %d container(s) in %.1f sec.", containers.size(),
+                (System.nanoTime() - start) / 1e9));
+    }
 
-                getDockerProvider().stopContainer(containerId);
-                it.remove();
-                stoppedContainerIds.add(containerId);
-            } catch (DockerException e) {
-                getLog().error("Failed to stop container (this means it also won't be deleted)", e);
+    /**
+     * Stops (or kills) a container, writes its logs when asked to and deletes it. Runs on a worker thread.
+     */
+    private void removeContainer(final DockerProvider provider, final StartedContainerInfo container,
+                                 final Optional<Path> logsDir) {
+        String containerId = container.getContainerInfo().getId();
+        try {
+            if (killContainers) {
+                getLog().info(String.format("Killing container '%s'..", containerId));
+                provider.killContainer(containerId);
+            } else {
+                getLog().info(String.format("Stopping container '%s' (max %d sec.)..", containerId,
+                        container.getStopTimeout()));
+                provider.stopContainer(containerId, container.getStopTimeout());
             }
+        } catch (DockerException e) {
+            getLog().error("Failed to stop container (this means it also won't be deleted)", e);
+            stopLogTail(container.getContainerId(), 0);
+            return;
         }
-        for (String containerId : stoppedContainerIds) {
-            getLog().info(String.format("Deleting container '%s'..", containerId));
+        Map<String, StartedContainerInfo> startedContainers = obtainMapFromPluginContext(STARTED_CONTAINERS_KEY);
+        startedContainers.remove(container.getContainerId());
+
+        // the container has stopped, so the logs include what it logged while shutting down
+        if (!stopLogTail(container.getContainerId(), LOG_TAIL_DRAIN_MILLIS)) {
+            logsDir.ifPresent(dir -> writeLogs(provider, containerId, dir, container.getContainerId()));
+        }
+
+        getLog().info(String.format("Deleting container '%s'..", containerId));
+        try {
+            provider.deleteContainer(containerId);
+        } catch (DockerException e) {
+            getLog().error("Failed to delete container", e);
+        }
+    }
+
+    /**
+     * Follows the logs of a started container into rotating files in the logs directory, when docker.tailLogs is set.
+     *
+     * @param provider      the provider that started the container
+     * @param containerName the id of the container in the plugin configuration
+     * @param containerId   the id docker gave the container
+     */
+    protected void startLogTail(final DockerProvider provider, final String containerName,
+                                final String containerId) {
+        if (!tailLogs) {
+            return;
+        }
+        Optional<Path> logsDir = Optional.ofNullable(stripToNull(logs)).map(this::getLogDirectory);
+        if (!logsDir.isPresent()) {
+            getLog().warn("Not following the logs of the containers, docker.tailLogs needs docker.logs to be set");
+            return;
+        }
+        Path logFile = getLogFile(logsDir.get(), containerName);
+        Path errorLogFile = getErrorLogFile(logsDir.get(), containerName);
+        long maxSize = logMaxSize * 1024L * 1024L;
+        List<RotatingLogChannel> files = new ArrayList<>(2);
+        try {
+            files.add(new RotatingLogChannel(logFile, maxSize, logRetention));
+            if (splitLogs) {
+                files.add(new RotatingLogChannel(errorLogFile, maxSize, logRetention));
+            }
+        } catch (IOException e) {
+            getLog().error(String.format("Cannot follow the logs of container '%s'", containerName), e);
             try {
-                getDockerProvider().deleteContainer(containerId);
-            } catch (DockerException e) {
-                getLog().error("Failed to delete container", e);
+                new LogTail(CompletableFuture.completedFuture(null), files).stop(0);
+            } catch (IOException ignored) {
+                // already reported that the logs can't be followed
+            }
+            return;
+        }
+        getLog().info(String.format("Following the logs of container '%s' into: %s", containerName, logFile));
+        CompletableFuture<Void> following = provider.tailLogs(containerId, files.get(0), files.get(files.size() - 1));
+        Map<String, LogTail> tails = obtainMapFromPluginContext(LOG_TAILS_KEY);
+        tails.put(containerName, new LogTail(following, files));
+    }
+
+    /**
+     * @return true when the logs of the container were followed, false when they still need to be downloaded
+     */
+    private boolean stopLogTail(final String containerName, final long waitMillis) {
+        Map<String, LogTail> tails = obtainMapFromPluginContext(LOG_TAILS_KEY);
+        LogTail tail = tails.remove(containerName);
+        if (tail == null) {
+            return false;
+        }
+        try {
+            tail.stop(waitMillis);
+            return true;
+        } catch (IOException e) {
+            getLog().warn(String.format("Failed to follow the logs of container '%s', downloading them instead",
+                    containerName), e);
+            return false;
+        }
+    }
+
+    private Path getLogFile(final Path logsDir, final String containerName) {
+        return logsDir.resolve(containerName + (splitLogs ? ".stdout.log" : ".log"));
+    }
+
+    private Path getErrorLogFile(final Path logsDir, final String containerName) {
+        return splitLogs ? logsDir.resolve(containerName + ".stderr.log") : getLogFile(logsDir, containerName);
+    }
+
+    private void writeLogs(final DockerProvider provider, final String containerId, final Path logsDir,
+                           final String containerName) {
+        Path logFile = getLogFile(logsDir, containerName);
+        Path errorLogFile = getErrorLogFile(logsDir, containerName);
+        getLog().info("Writing logs to: " + logFile + (splitLogs ? " and " + errorLogFile : ""));
+        try {
+            // streamed to disk frame by frame, so large logs don't need to fit in memory
+            provider.writeLogs(containerId, logFile, errorLogFile);
+        } catch (DockerException e) {
+            if (getLog().isDebugEnabled()) {
+                getLog().error("Failed to write docker logs to: " + logFile, e);
+            } else {
+                getLog().error("Failed to write docker logs to: " + logFile);
             }
         }
     }
@@ -212,15 +536,34 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
     }
 
     protected DockerProvider getDockerProvider() {
-        DockerProvider provider = new DockerProviderSupplier(providerName).get();
-        provider.setCredentials(getCredentials());
+        DockerProvider provider = getDockerProviderRegistry().getProvider(providerName, getCredentials(), p -> {
+            p.setRepositorySystem(repositorySystem);
+            p.setRepositorySystemSession(repositorySystemSession);
+            p.setRemoteRepositories(remoteRepositories);
+        });
         provider.setLogger(getLog());
-        provider.setRepositorySystem(repositorySystem);
-        provider.setRepositorySystemSession(repositorySystemSession);
-        provider.setRemoteRepositories(remoteRepositories);
         return provider;
     }
 
+    /**
+     * Returns the registry holding the docker providers of this build. It's kept in the plugin context, so all goals
+     * that run for a project share the same providers and their http clients.
+     *
+     * @return the {@link DockerProviderRegistry} for this build
+     */
+    @SuppressWarnings("unchecked")
+    protected DockerProviderRegistry getDockerProviderRegistry() {
+        Map pluginContext = getPluginContext();
+        synchronized (pluginContext) {
+            Object registry = pluginContext.get(PROVIDER_REGISTRY_KEY);
+            if (registry == null) {
+                registry = new DockerProviderRegistry(getLog());
+                pluginContext.put(PROVIDER_REGISTRY_KEY, registry);
+            }
+            return (DockerProviderRegistry) registry;
+        }
+    }
+
     protected Credentials getCredentials() {
         // priority to credentials from plugin configuration over the ones from settings
         return Stream.of(getCredentialsFromParameters(), getCredentialsFromSettings())
@@ -308,8 +651,7 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
     protected void enqueueForPushingToRegistry(final String imageId, final Optional<String> nameAndTag, final String registry) throws MojoFailureException {
         requireNonNull(nameAndTag.orElse(null), "When pushing to an explicit registry, name-and-tag must be set.");
 
-        // build extended tag by prepending registry to name and tag
-        String newNameAndTag = registry + "/" + nameAndTag.get();
+        String newNameAndTag = withRegistry(registry, nameAndTag.get());
 
         // apply extended tag
         attachTag(imageId, newNameAndTag);
@@ -318,13 +660,22 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         enqueueForPushing(imageId, of(newNameAndTag));
     }
 
+    /**
+     * Builds the extended tag of an image in a registry by prepending the registry to the name and tag.
+     */
+    protected static String withRegistry(final String registry, final String nameAndTag) {
+        return registry + "/" + nameAndTag;
+    }
+
     protected void enqueueForPushing(final String imageId, final Optional<String> nameAndTag) {
         getLog().info(String.format("Enqueuing image '%s' to be pushed with tag '%s'..", imageId, nameAndTag.orElse("<none>")));
 
         List<PushableImage> images = obtainListFromPluginContext(PUSHABLE_IMAGES_KEY);
         PushableImage newImage = new PushableImage(imageId, nameAndTag);
-        if (!images.contains(newImage)) {
-            images.add(newImage);
+        synchronized (images) {
+            if (!images.contains(newImage)) {
+                images.add(newImage);
+            }
         }
     }
 
@@ -360,27 +711,41 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         throw new MojoFailureException(exceptionMessage, e);
     }
 
+    /**
+     * Returns a list that is shared through the plugin context, creating it when needed. The list is thread safe, as
+     * goals can register things from more than one thread.
+     */
     @SuppressWarnings("unchecked")
     private <T> List<T> obtainListFromPluginContext(String name) {
-        Object obj = getPluginContext().get(name);
-        if (obj == null) {
-            ArrayList<T> list = new ArrayList<>();
-            getPluginContext().put(name, list);
-            return list;
-        } else {
-            return (List<T>) obj;
+        Map pluginContext = getPluginContext();
+        synchronized (pluginContext) {
+            Object obj = pluginContext.get(name);
+            if (obj == null) {
+                List<T> list = new CopyOnWriteArrayList<>();
+                pluginContext.put(name, list);
+                return list;
+            } else {
+                return (List<T>) obj;
+            }
         }
     }
 
+    /**
+     * Returns a map that is shared through the plugin context, creating it when needed. The map is thread safe, as
+     * goals can register things from more than one thread.
+     */
     @SuppressWarnings("unchecked")
     private <T> Map<String, T> obtainMapFromPluginContext(String name) {
-        Object obj = getPluginContext().get(name);
-        if (obj == null) {
-            Map<String, T> map = new HashMap<>();
-            getPluginContext().put(name, map);
-            return map;
-        } else {
-            return (Map<String, T>) obj;
+        Map pluginContext = getPluginContext();
+        synchronized (pluginContext) {
+            Object obj = pluginContext.get(name);
+            if (obj == null) {
+                Map<String, T> map = Collections.synchronizedMap(new HashMap<>());
+                pluginContext.put(name, map);
+                return map;
+            } else {
+                return (Map<String, T>) obj;
+            }
         }
     }
 }
@@ -0,0 +1,171 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class is responsible for holding on to log messages until they can be written without getting mixed up with
+ * the messages of work that runs at the same time. It can be written to from any thread. While messages are held
+ * back, {@link #getSummary()} tells how far the work got.
+ */
+class BufferedLog implements Log {
+
+    private static final int MAX_SUMMARY_LENGTH = 120;
+
+    private final Log target;
+    private final Queue<Consumer<Log>> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicLong heldBack = new AtomicLong();
+    private volatile long firstMessageNanos;
+    private volatile CharSequence lastMessage;
+
+    BufferedLog(final Log target) {
+        this.target = target;
+    }
+
+    /**
+     * Writes all messages logged so far to the target log and forgets them.
+     */
+    void flush() {
+        Consumer<Log> message;
+        while ((message = messages.poll()) != null) {
+            message.accept(target);
+        }
+        heldBack.set(0);
+        lastMessage = null;
+    }
+
+    /**
+     * Returns one line about the messages that are held back: since when messages are logged, how many there are and
+     * the last one.
+     *
+     * @return the summary, empty when no messages are held back
+     */
+    Optional<String> getSummary() {
+        CharSequence last = lastMessage;
+        long count = heldBack.get();
+        if (last == null || count == 0) {
+            return Optional.empty();
+        }
+        String line = last.toString().trim();
+        if (line.length() > MAX_SUMMARY_LENGTH) {
+            line = line.substring(0, MAX_SUMMARY_LENGTH) + "..";
+        }
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - firstMessageNanos);
+        return Optional.of(String.format(Locale.ROOT, "%d sec., %d line(s) of output, last: %s", seconds, count,
+                line));
+    }
+
+    private void add(final CharSequence content, final Consumer<Log> message) {
+        if (heldBack.getAndIncrement() == 0) {
+            firstMessageNanos = System.nanoTime();
+        }
+        if (content != null) {
+            lastMessage = content;
+        }
+        messages.add(message);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return target.isDebugEnabled();
+    }
+
+    @Override
+    public void debug(final CharSequence content) {
+        add(content, log -> log.debug(content));
+    }
+
+    @Override
+    public void debug(final CharSequence content, final Throwable error) {
+        add(content, log -> log.debug(content, error));
+    }
+
+    @Override
+    public void debug(final Throwable error) {
+        add(String.valueOf(error), log -> log.debug(error));
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return target.isInfoEnabled();
+    }
+
+    @Override
+    public void info(final CharSequence content) {
+        add(content, log -> log.info(content));
+    }
+
+    @Override
+    public void info(final CharSequence content, final Throwable error) {
+        add(content, log -> log.info(content, error));
+    }
+
+    @Override
+    public void info(final Throwable error) {
+        add(String.valueOf(error), log -> log.info(error));
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return target.isWarnEnabled();
+    }
+
+    @Override
+    public void warn(final CharSequence content) {
+        add(content, log -> log.warn(content));
+    }
+
+    @Override
+    public void warn(final CharSequence content, final Throwable error) {
+        add(content, log -> log.warn(content, error));
+    }
+
+    @Override
+    public void warn(final Throwable error) {
+        add(String.valueOf(error), log -> log.warn(error));
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return target.isErrorEnabled();
+    }
+
+    @Override
+    public void error(final CharSequence content) {
+        add(content, log -> log.error(content));
+    }
+
+    @Override
+    public void error(final CharSequence content, final Throwable error) {
+        add(content, log -> log.error(content, error));
+    }
+
+    @Override
+    public void error(final Throwable error) {
+        add(String.valueOf(error), log -> log.error(error));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * This class is responsible for remembering which image was built from which build context. It maps the digest of a
+ * build context to the id of the image docker built from it, and is stored in a properties file so it survives
+ * between builds. A corrupt or unreadable cache file is treated as an empty cache. Lookups and updates may come from
+ * several threads, when images are built in parallel.
+ */
+class BuildCache {
+
+    private final Path file;
+    private final Log log;
+    private final Properties entries = new Properties();
+    private volatile boolean changed;
+
+    private BuildCache(final Path file, final Log log) {
+        this.file = file;
+        this.log = log;
+    }
+
+    static BuildCache load(final Path file, final Log log) {
+        BuildCache cache = new BuildCache(file, log);
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                cache.entries.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn(String.format("Cannot read build cache %s, starting with an empty cache", file), e);
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Combines the digest of a build context with the ids of the images it is built FROM, so an image is rebuilt when
+     * one of its base images changed, even when its own build context didn't.
+     *
+     * @param contextDigest the digest of the build context
+     * @param baseImageIds  the ids of the base images, in the order of the FROM instructions
+     * @return the key to look the image up with
+     */
+    static String getKey(final String contextDigest, final List<String> baseImageIds) {
+        if (baseImageIds.isEmpty()) {
+            return contextDigest;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(contextDigest.getBytes(StandardCharsets.UTF_8));
+        for (String baseImageId : baseImageIds) {
+            digest.update((byte) 0);
+            digest.update(baseImageId.getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    Optional<String> getImageId(final String digest) {
+        return Optional.ofNullable(entries.getProperty(digest));
+    }
+
+    void put(final String digest, final String imageId) {
+        if (!imageId.equals(entries.setProperty(digest, imageId))) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Writes the cache to disk when it changed. The file is replaced atomically, so concurrent builds that share a
+     * cache file never see half a file.
+     */
+    void save() {
+        if (!changed) {
+            return;
+        }
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporaryFile = Files.createTempFile(directory, "docker-build-cache", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+                entries.store(out, "Build context digests and the ids of the docker images built from them");
+            }
+            try {
+                Files.move(temporaryFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.move(temporaryFile, file, REPLACE_EXISTING);
+            }
+            changed = false;
+        } catch (IOException e) {
+            log.warn(String.format("Cannot write build cache %s", file), e);
+        }
+    }
+}
@@ -17,18 +17,30 @@
 
 package net.wouterdanes.docker.maven;
 
+import net.wouterdanes.docker.provider.DockerProvider;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.InstantiationStrategy;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class is responsible for building docker images specified in the POM file. It runs by default during the
@@ -38,13 +50,50 @@ import java.util.Set;
         instantiationStrategy = InstantiationStrategy.PER_LOOKUP)
 public class BuildImageMojo extends AbstractPreVerifyDockerMojo {
 
+    private static final long PROGRESS_INTERVAL_MILLIS = 10000;
+
     @Parameter(required = true)
     private List<ImageBuildConfiguration> images;
 
+    /**
+     * Skips building an image when its build context (Dockerfile, artifacts, build arguments and name) is identical
+     * to the one of an image that docker still has.
+     */
+    @Parameter(defaultValue = "true", property = "docker.buildCache")
+    private boolean buildCache;
+
+    /**
+     * The file that maps build context digests to image ids.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/docker-build-cache.properties",
+            property = "docker.buildCacheFile")
+    private File buildCacheFile;
+
+    /**
+     * The maximum number of images that are built at the same time. Images that are built FROM another image in the
+     * same execution always wait for that image.
+     */
+    @Parameter(defaultValue = "4", property = "docker.buildParallelism")
+    private int buildParallelism;
+
+    private final Map<String, String> builtImageIds = new ConcurrentHashMap<>();
+
     public void setImages(final List<ImageBuildConfiguration> images) {
         this.images = images;
     }
 
+    public void setBuildCache(final boolean buildCache) {
+        this.buildCache = buildCache;
+    }
+
+    public void setBuildCacheFile(final File buildCacheFile) {
+        this.buildCacheFile = buildCacheFile;
+    }
+
+    public void setBuildParallelism(final int buildParallelism) {
+        this.buildParallelism = buildParallelism;
+    }
+
     @Override
     protected void doExecute() throws MojoExecutionException, MojoFailureException {
         if (images == null || images.isEmpty()) {
@@ -53,27 +102,197 @@ public class BuildImageMojo extends AbstractPreVerifyDockerMojo {
         }
 
         validateAllImages();
+        builtImageIds.clear();
+
+        Optional<BuildCache> cache = buildCache && buildCacheFile != null
+                ? Optional.of(BuildCache.load(buildCacheFile.toPath(), getLog()))
+                : Optional.empty();
+        DockerProvider provider = getDockerProvider();
 
+        TaskGraph<String, String> builds = new TaskGraph<>();
+        Map<String, ImageBuildConfiguration> imagesById = new HashMap<>();
+        Map<String, BufferedLog> logs = new HashMap<>();
         for (ImageBuildConfiguration image : images) {
-            try {
-                logImageConfig(image);
-                String imageId = getDockerProvider().buildImage(image);
-                getLog().info(String.format("Image '%s' has Id '%s'", image.getId(), imageId));
-                registerBuiltImage(imageId, image);
-            } catch (DockerException e) {
-                String errorMessage = String.format("Cannot build image '%s'", image.getId());
-                handleDockerException(errorMessage, e);
+            BufferedLog log = new BufferedLog(getLog());
+            List<String> baseImages = getBaseImages(image);
+            imagesById.put(image.getId(), image);
+            logs.put(image.getId(), log);
+            builds.add(image.getId(), getImagesToBuildFirst(image, baseImages),
+                    () -> buildImage(provider, image, baseImages, cache, log));
+        }
+
+        try {
+            builds.getOrder();
+        } catch (IllegalStateException e) {
+            throw new MojoExecutionException("Images are built FROM each other in a cycle: " + e.getMessage(), e);
+        }
+
+        List<TaskGraph.TaskResult<String, String>> builtImages = new ArrayList<>();
+        ExecutorService progressReporter = getTaskScope().newExecutor(1, "docker-build-progress");
+        progressReporter.submit(() -> reportProgress(logs));
+        try {
+            builds.run(getTaskScope(), buildParallelism, "docker-build", result -> {
+                // each image's log is written as a whole, in the same order no matter which build finished first
+                logs.get(result.getKey()).flush();
+                handleBuildResult(result, builtImages);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while building images", e);
+        } finally {
+            getTaskScope().shutdown(progressReporter);
+            cache.ifPresent(BuildCache::save);
+        }
+
+        for (TaskGraph.TaskResult<String, String> result : builtImages) {
+            registerBuiltImage(result.getValue(), imagesById.get(result.getKey()));
+        }
+    }
+
+    /**
+     * The output of a build is only written when the build finished, so until it is interrupted this logs a line for
+     * every image that is still building, every {@value #PROGRESS_INTERVAL_MILLIS} ms. A build that hangs then still
+     * shows where it is.
+     */
+    private void reportProgress(final Map<String, BufferedLog> logs) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(PROGRESS_INTERVAL_MILLIS);
+                for (ImageBuildConfiguration image : images) {
+                    logs.get(image.getId()).getSummary().ifPresent(summary -> getLog().info(
+                            String.format("Still building image '%s': %s", image.getId(), summary)));
+                }
+            }
+        } catch (InterruptedException e) {
+            // all builds are done
+        }
+    }
+
+    private void handleBuildResult(final TaskGraph.TaskResult<String, String> result,
+                                   final List<TaskGraph.TaskResult<String, String>> builtImages) {
+        String errorMessage = String.format("Cannot build image '%s'", result.getKey());
+        if (result.isSuccessful()) {
+            builtImages.add(result);
+        } else if (result.getFailedDependency().isPresent()) {
+            handleDockerException(errorMessage, new DockerException(String.format(
+                    "It is built FROM image '%s', which could not be built", result.getFailedDependency().get())));
+        } else {
+            Exception exception = result.getException().get();
+            if (exception instanceof DockerException) {
+                handleDockerException(errorMessage, (DockerException) exception);
+            } else if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            } else {
+                throw new IllegalStateException(errorMessage, exception);
             }
         }
     }
 
-    private void logImageConfig(final ImageBuildConfiguration image) {
+    /**
+     * Returns the normalized names of the images the Dockerfile of the passed image is built FROM.
+     */
+    private List<String> getBaseImages(final ImageBuildConfiguration image) {
+        if (image.getDockerFile() == null || !image.getDockerFile().isFile()) {
+            return Collections.emptyList();
+        }
+        try {
+            return DockerfileParser.getBaseImages(image.getDockerFile());
+        } catch (IOException e) {
+            getLog().debug(String.format("Cannot read the Dockerfile of image '%s'", image.getId()), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the ids of the images in this execution that the passed image is built FROM.
+     */
+    private Set<String> getImagesToBuildFirst(final ImageBuildConfiguration image, final List<String> baseImages) {
+        Set<String> dependencies = new LinkedHashSet<>();
+        for (String baseImage : baseImages) {
+            getImageBuiltAs(baseImage, image).ifPresent(other -> dependencies.add(other.getId()));
+        }
+        if (!dependencies.isEmpty()) {
+            getLog().debug(String.format("Image '%s' is built FROM image(s) %s", image.getId(), dependencies));
+        }
+        return dependencies;
+    }
+
+    /**
+     * Returns the image in this execution, other than the passed one, that gets the passed normalized name.
+     */
+    private Optional<ImageBuildConfiguration> getImageBuiltAs(final String baseImage,
+                                                              final ImageBuildConfiguration image) {
+        for (ImageBuildConfiguration other : images) {
+            if (other.getNameAndTag() != null && other != image
+                    && baseImage.equals(DockerfileParser.normalizeImageName(other.getNameAndTag()))) {
+                return Optional.of(other);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String buildImage(final DockerProvider provider, final ImageBuildConfiguration image,
+                              final List<String> baseImages, final Optional<BuildCache> cache, final Log log) {
+        logImageConfig(image, log);
+        String imageId = cache.isPresent()
+                ? buildImageUnlessCached(provider, image, baseImages, cache.get(), log)
+                : provider.buildImage(image, log);
+        log.info(String.format("Image '%s' has Id '%s'", image.getId(), imageId));
+        builtImageIds.put(image.getId(), imageId);
+        return imageId;
+    }
+
+    private String buildImageUnlessCached(final DockerProvider provider, final ImageBuildConfiguration image,
+                                          final List<String> baseImages, final BuildCache cache, final Log log) {
+        String contextDigest = provider.getBuildContextDigest(image);
+        if (contextDigest == null) {
+            return provider.buildImage(image, log);
+        }
+        List<String> baseImageIds = new ArrayList<>(baseImages.size());
+        for (String baseImage : baseImages) {
+            Optional<String> baseImageId = getBaseImageId(provider, baseImage, image);
+            if (!baseImageId.isPresent()) {
+                log.info(String.format("Docker doesn't have base image '%s' of image '%s' yet, not using the build "
+                        + "cache", baseImage, image.getId()));
+                return provider.buildImage(image, log);
+            }
+            baseImageIds.add(baseImageId.get());
+        }
+        String digest = BuildCache.getKey(contextDigest, baseImageIds);
+        Optional<String> cachedImageId = cache.getImageId(digest);
+        if (cachedImageId.isPresent() && provider.hasImage(cachedImageId.get())) {
+            log.info(String.format("Build context of image '%s' is unchanged, skipping the build", image.getId()));
+            if (image.getNameAndTag() != null) {
+                // the name may have been moved to another image since the last build
+                provider.tagImage(cachedImageId.get(), image.getNameAndTag());
+            }
+            return cachedImageId.get();
+        }
+        String imageId = provider.buildImage(image, log);
+        cache.put(digest, imageId);
+        return imageId;
+    }
+
+    /**
+     * Returns the id of a base image: the id it got in this execution when it is built here (its build always
+     * finished before this one starts), otherwise the id docker has for it.
+     */
+    private Optional<String> getBaseImageId(final DockerProvider provider, final String baseImage,
+                                            final ImageBuildConfiguration image) {
+        Optional<ImageBuildConfiguration> builtHere = getImageBuiltAs(baseImage, image);
+        if (builtHere.isPresent()) {
+            return Optional.ofNullable(builtImageIds.get(builtHere.get().getId()));
+        }
+        return provider.getImageId(baseImage);
+    }
+
+    private static void logImageConfig(final ImageBuildConfiguration image, final Log log) {
         StringBuilder builder = new StringBuilder(String.format("Building image '%s'", image.getId()));
         if (image.getNameAndTag() != null) {
             builder.append(String.format(", with name and tag '%s'", image.getNameAndTag()));
         }
         builder.append("..");
-        getLog().info(builder.toString());
+        log.info(builder.toString());
     }
 
     private void validateAllImages() throws MojoExecutionException {
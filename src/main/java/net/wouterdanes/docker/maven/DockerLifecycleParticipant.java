@@ -0,0 +1,42 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import net.wouterdanes.docker.provider.DockerProviderRegistry;
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Closes the docker providers of the build when the Maven session ends, instead of when the JVM exits. Maven only
+ * loads this participant when the plugin is declared with {@code <extensions>true</extensions>}.
+ */
+public class DockerLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    /**
+     * Called by Maven 3.2.1 and newer when the session ends. The plugin is compiled against an older Maven API that
+     * doesn't have this method yet, which is why it isn't marked as an override; older versions of Maven never call it
+     * and leave the closing to the shutdown hook of the registry.
+     *
+     * @param session the session that ended
+     * @throws MavenExecutionException never
+     */
+    public void afterSessionEnd(final MavenSession session) throws MavenExecutionException {
+        DockerProviderRegistry.closeAll();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import net.wouterdanes.docker.remoteapi.model.ImageDescriptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * This class is responsible for finding the images a Dockerfile builds on, by reading its FROM instructions.
+ */
+final class DockerfileParser {
+
+    private static final String DEFAULT_TAG = "latest";
+
+    private DockerfileParser() {
+    }
+
+    /**
+     * Returns the images the passed Dockerfile starts FROM, normalized with {@link #normalizeImageName(String)}.
+     * References to earlier build stages ("FROM builder") and images with variables in their name are left out.
+     *
+     * @param dockerFile the Dockerfile to read
+     * @return the normalized names of the base images, in order of appearance
+     * @throws IOException when the Dockerfile can't be read
+     */
+    static List<String> getBaseImages(final File dockerFile) throws IOException {
+        List<String> baseImages = new ArrayList<>();
+        Set<String> stageNames = new HashSet<>();
+        for (String instruction : getInstructions(Files.readAllLines(dockerFile.toPath(), StandardCharsets.UTF_8))) {
+            String[] words = instruction.trim().split("\\s+");
+            if (words.length < 2 || !"FROM".equalsIgnoreCase(words[0])) {
+                continue;
+            }
+            int imageIndex = 1;
+            while (imageIndex < words.length - 1 && words[imageIndex].startsWith("--")) {
+                imageIndex++;
+            }
+            String image = words[imageIndex];
+            if (imageIndex + 2 < words.length && "AS".equalsIgnoreCase(words[imageIndex + 1])) {
+                stageNames.add(words[imageIndex + 2].toLowerCase(Locale.ROOT));
+            }
+            if (!image.contains("$") && !stageNames.contains(image.toLowerCase(Locale.ROOT))
+                    && !"scratch".equals(image)) {
+                baseImages.add(normalizeImageName(image));
+            }
+        }
+        return baseImages;
+    }
+
+    /**
+     * Normalizes an image name, so "app" and "app:latest" are the same image.
+     *
+     * @param name the name of an image, with an optional registry, repository and tag
+     * @return the name with a tag
+     */
+    static String normalizeImageName(final String name) {
+        ImageDescriptor descriptor = new ImageDescriptor(name);
+        return descriptor.getRegistryRepositoryAndImage() + ":" + descriptor.getTag().orElse(DEFAULT_TAG);
+    }
+
+    /**
+     * Joins lines that end with a backslash and drops comments and empty lines.
+     */
+    private static List<String> getInstructions(final List<String> lines) {
+        List<String> instructions = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("#") || (trimmed.isEmpty() && current.length() == 0)) {
+                continue;
+            }
+            if (trimmed.endsWith("\\")) {
+                current.append(trimmed, 0, trimmed.length() - 1).append(' ');
+            } else {
+                current.append(trimmed);
+                instructions.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            instructions.add(current.toString());
+        }
+        return instructions;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class is responsible for the logs of a container that are followed into files while the container runs. The
+ * tail is started by the "start-containers" goal and stopped when the container is stopped.
+ */
+class LogTail {
+
+    private final CompletableFuture<Void> following;
+    private final List<WritableByteChannel> files;
+
+    LogTail(final CompletableFuture<Void> following, final List<? extends WritableByteChannel> files) {
+        this.following = following;
+        this.files = new ArrayList<>(files);
+    }
+
+    /**
+     * Waits for the last logs of a stopped container to arrive, then stops following the logs and closes the files.
+     *
+     * @param waitMillis how long to wait for the logs to end
+     * @throws IOException when following the logs failed or a file could not be closed
+     */
+    void stop(final long waitMillis) throws IOException {
+        IOException failure = null;
+        try {
+            following.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            failure = new IOException("Following the logs failed", e.getCause());
+        } catch (TimeoutException | CancellationException ignored) {
+            // the container is still writing, stop here
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            following.cancel(true);
+        }
+        for (WritableByteChannel file : files) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
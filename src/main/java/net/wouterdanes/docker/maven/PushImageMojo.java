@@ -18,15 +18,29 @@
 package net.wouterdanes.docker.maven;
 
 
+import net.wouterdanes.docker.provider.DockerProvider;
 import net.wouterdanes.docker.provider.model.PushableImage;
+import net.wouterdanes.docker.remoteapi.PushProgress;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.model.ImageDescriptor;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.InstantiationStrategy;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * This class is responsible for pushing docking images in the deploy phase of the maven build. The goal
@@ -36,22 +50,126 @@ import java.util.Iterator;
         instantiationStrategy = InstantiationStrategy.PER_LOOKUP)
 public class PushImageMojo extends AbstractDockerMojo {
 
+    /**
+     * The maximum number of images that are pushed at the same time.
+     */
+    @Parameter(defaultValue = "4", property = "docker.pushParallelism")
+    private int pushParallelism = 4;
+
+    /**
+     * Whether to skip pushing a tag when its registry already has it with the same digest as the local image.
+     */
+    @Parameter(defaultValue = "true", property = "docker.skipPushedImages")
+    private boolean skipPushedImages = true;
+
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
         ensureThatAllPushableImagesHaveAName();
+        // an image that is pushed with the same name and tag twice is only pushed once
+        Map<String, PushableImage> images = new LinkedHashMap<>();
         for (PushableImage image : getImagesToPush()) {
-            getLog().info(String.format("Pushing image '%s' with tag '%s'",
-                    image.getImageId(), image.getNameAndTag().orElse("<Unspecified>")));
-            try {
-                getDockerProvider().pushImage(image.getNameAndTag().get());
-            } catch (DockerException e) {
-                String message = String.format("Cannot push image '%s' with tag '%s'",
-                        image.getImageId(), image.getNameAndTag().orElse("<Unspecified>"));
-                handleDockerException(message, e);
+            images.putIfAbsent(image.getNameAndTag().get(), image);
+        }
+        if (images.isEmpty()) {
+            return;
+        }
+        DockerProvider provider = getDockerProvider();
+        TaskGraph<String, PushProgress> pushes = new TaskGraph<>();
+        Set<String> skipped = ConcurrentHashMap.newKeySet();
+        for (PushableImage image : images.values()) {
+            String nameAndTag = image.getNameAndTag().get();
+            pushes.add(nameAndTag, Collections.emptyList(), () -> {
+                if (skipPushedImages) {
+                    Optional<String> digest = getDigestInRegistry(provider, nameAndTag);
+                    if (digest.isPresent()) {
+                        getLog().info(String.format("Skipping push of image '%s' with tag '%s', the registry " +
+                                "already has it with digest %s", image.getImageId(), nameAndTag, digest.get()));
+                        skipped.add(nameAndTag);
+                        return null;
+                    }
+                }
+                getLog().info(String.format("Pushing image '%s' with tag '%s'", image.getImageId(), nameAndTag));
+                return provider.pushImage(nameAndTag);
+            });
+        }
+
+        List<TaskGraph.TaskResult<String, PushProgress>> failures = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            pushes.run(getTaskScope(), pushParallelism, "docker-push", result -> {
+                if (result.getException().isPresent()) {
+                    getLog().error(String.format("Cannot push image '%s': %s", result.getKey(),
+                            result.getException().get().getMessage()));
+                    failures.add(result);
+                } else if (result.getValue() != null) {
+                    logPush(result.getValue());
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while pushing images", e);
+        }
+        if (!failures.isEmpty()) {
+            TaskGraph.TaskResult<String, PushProgress> failure = failures.get(0);
+            handlePushFailure(images.get(failure.getKey()), failure.getException().get());
+        }
+        getLog().info(String.format(Locale.ROOT, "Pushed %d image(s) in %.1f sec., skipped %d that the registry " +
+                "already had", images.size() - skipped.size(), (System.nanoTime() - start) / 1e9, skipped.size()));
+    }
+
+    /**
+     * Finds the digest of a tag in its registry, when the local image was pushed to or pulled from that registry with
+     * the same digest. Comparing the digests needs a HEAD request to the registry, which is only made when the local
+     * image has a digest for the repository at all. Runs on a worker thread.
+     *
+     * @return the digest when the registry already has the image under the tag, empty when it has to be pushed
+     */
+    private Optional<String> getDigestInRegistry(final DockerProvider provider, final String nameAndTag) {
+        String repository = new ImageDescriptor(nameAndTag).getRegistryRepositoryAndImage();
+        try {
+            Set<String> localDigests = provider.getRepoDigests(nameAndTag).stream()
+                    .filter(repoDigest -> repoDigest.startsWith(repository + "@"))
+                    .map(repoDigest -> repoDigest.substring(repository.length() + 1))
+                    .collect(Collectors.toSet());
+            if (localDigests.isEmpty()) {
+                return Optional.empty();
             }
+            return provider.getRegistryDigest(nameAndTag).filter(localDigests::contains);
+        } catch (DockerException e) {
+            getLog().debug(String.format("Cannot compare the digests of '%s', pushing it: %s", nameAndTag,
+                    e.getMessage()));
+            return Optional.empty();
         }
     }
 
+    private void handlePushFailure(final PushableImage image, final Exception exception)
+            throws MojoFailureException {
+        String message = String.format("Cannot push image '%s' with tag '%s'",
+                image.getImageId(), image.getNameAndTag().orElse("<Unspecified>"));
+        if (exception instanceof DockerException) {
+            handleDockerException(message, (DockerException) exception);
+        } else if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        } else {
+            throw new IllegalStateException(message, exception);
+        }
+    }
+
+    private void logPush(final PushProgress push) {
+        getLog().info(String.format(Locale.ROOT, "Pushed image '%s' in %.1f sec.: %d layer(s) pushed, %d layer(s) " +
+                        "already existed%s", push.getNameAndTag(), push.getElapsedNanos() / 1e9,
+                push.getLayersPushed(), push.getLayersAlreadyExisting(),
+                push.getDigest().map(digest -> ", digest " + digest).orElse("")));
+    }
+
+    public void setPushParallelism(final int pushParallelism) {
+        this.pushParallelism = pushParallelism;
+    }
+
+    public void setSkipPushedImages(final boolean skipPushedImages) {
+        this.skipPushedImages = skipPushedImages;
+    }
+
     private void ensureThatAllPushableImagesHaveAName() throws MojoFailureException {
         Iterator<PushableImage> imagesWithoutNameAndTag = getImagesToPush().parallelStream()
                 .filter(image -> !image.getNameAndTag().isPresent()).iterator();
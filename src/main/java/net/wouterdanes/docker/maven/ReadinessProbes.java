@@ -0,0 +1,306 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import net.wouterdanes.docker.provider.DockerProvider;
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbe;
+import net.wouterdanes.docker.remoteapi.EventsService;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is responsible for running the readiness probes of started containers. A try of a tcp or http probe
+ * blocks while it connects, so the tries run on an executor of the goal that is sized to the probes in flight; only the
+ * waits between tries are timed by one scheduler that all goals share, so waiting for a probe doesn't hold on to a
+ * thread. Health probes don't poll at all, they wait for docker's health_status events.
+ */
+class ReadinessProbes {
+
+    /** The longest a single try may take, so one slow try doesn't hold up the probes of other containers */
+    private static final int MAX_TRY_MILLIS = 1000;
+    /** How long a tcp probe waits to see whether a new connection gets closed right away */
+    private static final int CLOSE_WAIT_MILLIS = 100;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ScheduledExecutorService SHARED_SCHEDULER = createScheduler();
+
+    private final ScheduledExecutorService scheduler;
+    private final Executor tryExecutor;
+
+    /**
+     * @param scheduler   times the waits between tries and the timeouts of health probes, its tasks never block
+     * @param tryExecutor runs the tries of tcp and http probes, which block for up to a second
+     */
+    ReadinessProbes(final ScheduledExecutorService scheduler, final Executor tryExecutor) {
+        this.scheduler = scheduler;
+        this.tryExecutor = tryExecutor;
+    }
+
+    /**
+     * @param tryExecutor runs the tries of tcp and http probes, it needs a thread for every probe that runs at the same
+     *                    time so the probes of containers that start in parallel don't wait for each other
+     * @return probes that share the scheduler of all goals
+     */
+    static ReadinessProbes runningTriesOn(final Executor tryExecutor) {
+        return new ReadinessProbes(SHARED_SCHEDULER, tryExecutor);
+    }
+
+    /**
+     * @return the number of the passed probes that poll, and need a thread while they try
+     */
+    static int countPollingProbes(final List<ReadinessProbe> probes) {
+        return (int) probes.stream().filter(probe -> probe.getType() != ReadinessProbe.Type.HEALTH).count();
+    }
+
+    /**
+     * Runs all passed probes at the same time.
+     *
+     * @param provider       the provider that started the container
+     * @param containerId    the id of the container
+     * @param exposedPorts   the ports of the container, to find the host and port that a probe should connect to
+     * @param probes         the probes to run
+     * @param defaultTimeout the timeout in seconds of probes that don't have one
+     * @return a future that completes when all probes succeeded, or fails with a {@link DockerException} as soon as
+     * one of them fails. Cancelling it stops all probes.
+     */
+    CompletableFuture<Void> awaitAll(final DockerProvider provider, final String containerId,
+                                     final List<ExposedPort> exposedPorts, final List<ReadinessProbe> probes,
+                                     final int defaultTimeout) {
+        CompletableFuture<Void> all = new CompletableFuture<>();
+        if (probes.isEmpty()) {
+            all.complete(null);
+            return all;
+        }
+        AtomicInteger remaining = new AtomicInteger(probes.size());
+        List<CompletableFuture<Void>> running = new ArrayList<>(probes.size());
+        for (ReadinessProbe probe : probes) {
+            CompletableFuture<Void> ready = await(provider, containerId, exposedPorts, probe, defaultTimeout);
+            running.add(ready);
+            ready.whenComplete((ignored, e) -> {
+                if (e != null) {
+                    all.completeExceptionally(e);
+                } else if (remaining.decrementAndGet() == 0) {
+                    all.complete(null);
+                }
+            });
+        }
+        all.whenComplete((ignored, e) -> running.forEach(ready -> ready.cancel(true)));
+        return all;
+    }
+
+    /**
+     * Runs a single probe.
+     *
+     * @return a future that completes when the probe succeeded, or fails with a {@link DockerException} when its
+     * timeout ran out or it can't succeed anymore
+     */
+    CompletableFuture<Void> await(final DockerProvider provider, final String containerId,
+                                  final List<ExposedPort> exposedPorts, final ReadinessProbe probe,
+                                  final int defaultTimeout) {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        try {
+            int timeout = probe.getTimeout(defaultTimeout);
+            if (probe.getType() == ReadinessProbe.Type.HEALTH) {
+                awaitHealthy(provider, containerId, probe, timeout, ready);
+            } else {
+                ExposedPort port = findPort(exposedPorts, probe);
+                Tries tries = new Tries(probe, port, timeout, ready);
+                submit(tries);
+            }
+        } catch (RuntimeException e) {
+            ready.completeExceptionally(e instanceof DockerException ? e : new DockerException(e.getMessage(), e));
+        }
+        return ready;
+    }
+
+    private void awaitHealthy(final DockerProvider provider, final String containerId, final ReadinessProbe probe,
+                              final int timeout, final CompletableFuture<Void> ready) {
+        CompletableFuture<String> event = provider.awaitContainerEvent(containerId,
+                EventsService.HEALTHY, EventsService.UNHEALTHY, EventsService.DIE);
+        event.whenComplete((status, e) -> {
+            if (e != null) {
+                ready.completeExceptionally(e);
+            } else if (EventsService.HEALTHY.equals(status)) {
+                ready.complete(null);
+            } else {
+                ready.completeExceptionally(new DockerException(String.format("The %s failed, docker reported the "
+                        + "container %s", probe, EventsService.DIE.equals(status) ? "stopped" : "unhealthy")));
+            }
+        });
+        ScheduledFuture<?> timer = scheduler.schedule(() -> ready.completeExceptionally(new DockerException(
+                String.format("The %s did not succeed within %d sec.", probe, timeout))), timeout, TimeUnit.SECONDS);
+        ready.whenComplete((ignored, e) -> {
+            timer.cancel(false);
+            event.cancel(true);
+        });
+    }
+
+    private void submit(final Tries tries) {
+        try {
+            tryExecutor.execute(() -> tryAgain(tries));
+        } catch (RejectedExecutionException e) {
+            // the goal is done
+            tries.ready.completeExceptionally(new DockerException(String.format("The %s was stopped", tries.probe), e));
+        }
+    }
+
+    private void tryAgain(final Tries tries) {
+        if (tries.ready.isDone()) {
+            return;
+        }
+        try {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(tries.deadline - System.nanoTime());
+            int tryMillis = (int) Math.max(1, Math.min(MAX_TRY_MILLIS, remainingMillis));
+            String failure = tries.probe.getType() == ReadinessProbe.Type.HTTP
+                    ? tryHttp(tries.probe, tries.port, tryMillis)
+                    : tryTcp(tries.port, tryMillis);
+            if (failure == null) {
+                tries.ready.complete(null);
+                return;
+            }
+            remainingMillis = TimeUnit.NANOSECONDS.toMillis(tries.deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                tries.ready.completeExceptionally(new DockerException(String.format(
+                        "The %s did not succeed within %d sec., last try: %s",
+                        tries.probe, tries.timeout, failure)));
+                return;
+            }
+            long delay = Math.min(tries.interval, remainingMillis);
+            tries.interval = Math.min((long) (tries.interval * tries.probe.getBackoff()),
+                    tries.probe.getMaxInterval());
+            scheduler.schedule(() -> submit(tries), delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            tries.ready.completeExceptionally(new DockerException(String.format("The %s failed", tries.probe), e));
+        }
+    }
+
+    /**
+     * Connects to the port and waits {@value #CLOSE_WAIT_MILLIS} ms for the other side to close the connection. When
+     * that wait times out, the connection is considered ready: a service that accepts connections doesn't need to send
+     * anything first. A connection that sends data right away is ready too.
+     *
+     * @return null when a connection could be made, why it couldn't otherwise
+     */
+    private static String tryTcp(final ExposedPort port, final int timeoutMillis) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(port.getHost(), port.getExternalPort()), timeoutMillis);
+            // docker's userland proxy accepts connections on a published port before anything listens on it in the
+            // container, it closes them right away though
+            socket.setSoTimeout(Math.min(CLOSE_WAIT_MILLIS, timeoutMillis));
+            try {
+                if (socket.getInputStream().read() == -1) {
+                    return "the connection was closed right away";
+                }
+            } catch (SocketTimeoutException ignored) {
+                // the connection stays open, something listens
+            }
+            return null;
+        } catch (IOException e) {
+            return e.toString();
+        }
+    }
+
+    /**
+     * @return null when the expected status was returned, why the probe failed otherwise
+     */
+    private static String tryHttp(final ReadinessProbe probe, final ExposedPort port, final int timeoutMillis) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL("http", port.getHost(), port.getExternalPort(), probe.getPath());
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setInstanceFollowRedirects(false);
+            int status = connection.getResponseCode();
+            boolean expected = probe.getStatus() == 0 ? status / 100 == 2 : status == probe.getStatus();
+            return expected ? null : "HTTP " + status;
+        } catch (IOException e) {
+            return e.toString();
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static ExposedPort findPort(final List<ExposedPort> exposedPorts, final ReadinessProbe probe) {
+        String port = probe.getPort();
+        if (port == null) {
+            throw new DockerException(String.format("A %s readiness probe needs a port",
+                    probe.getType().name().toLowerCase(Locale.ROOT)));
+        }
+        String containerPort = port.contains("/") ? port : port + "/tcp";
+        return exposedPorts.stream()
+                .filter(exposedPort -> containerPort.equals(exposedPort.getContainerPort()))
+                .findFirst()
+                .orElseThrow(() -> new DockerException(String.format(
+                        "The %s can't run, the container doesn't expose port %s", probe, port)));
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "docker-readiness-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setKeepAliveTime(10, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * The state of a polling probe, only touched by one try at a time
+     */
+    private static final class Tries {
+        private final ReadinessProbe probe;
+        private final ExposedPort port;
+        private final int timeout;
+        private final long deadline;
+        private final CompletableFuture<Void> ready;
+        private long interval;
+
+        private Tries(final ReadinessProbe probe, final ExposedPort port, final int timeout,
+                      final CompletableFuture<Void> ready) {
+            this.probe = probe;
+            this.port = port;
+            this.timeout = timeout;
+            this.deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+            this.ready = ready;
+            this.interval = probe.getInterval();
+        }
+    }
+}
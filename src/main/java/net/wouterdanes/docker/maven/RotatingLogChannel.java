@@ -0,0 +1,104 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * This class is responsible for writing a log to a file that is rotated when it gets too large. When the file
+ * reached its maximum size, it's renamed to file.1, an existing file.1 to file.2 and so on; only the configured
+ * number of rotated files is kept. A file can get larger than the maximum by the size of one write.
+ */
+class RotatingLogChannel implements WritableByteChannel {
+
+    private final Path file;
+    private final long maxSize;
+    private final int retention;
+    private FileChannel channel;
+
+    /**
+     * Opens the log file, emptying it and removing the files rotated by an earlier build.
+     *
+     * @param file      the log file
+     * @param maxSize   the size in bytes at which the file is rotated
+     * @param retention the number of rotated files to keep
+     * @throws IOException when the file can't be opened
+     */
+    RotatingLogChannel(final Path file, final long maxSize, final int retention) throws IOException {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.retention = retention;
+        for (int i = 1; Files.deleteIfExists(rotated(i)); i++) {
+            // removed a file of an earlier build
+        }
+        channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+    }
+
+    @Override
+    public synchronized int write(final ByteBuffer source) throws IOException {
+        if (channel == null) {
+            throw new ClosedChannelException();
+        }
+        if (channel.size() >= maxSize) {
+            rotate();
+        }
+        return channel.write(source);
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        Files.deleteIfExists(rotated(retention));
+        for (int i = retention - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i))) {
+                Files.move(rotated(i), rotated(i + 1), REPLACE_EXISTING);
+            }
+        }
+        if (retention > 0) {
+            Files.move(file, rotated(1), REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+    }
+
+    private Path rotated(final int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
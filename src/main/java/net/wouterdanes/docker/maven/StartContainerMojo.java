@@ -21,6 +21,8 @@ import net.wouterdanes.docker.provider.DockerProvider;
 import net.wouterdanes.docker.provider.model.BuiltImageInfo;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbe;
+import net.wouterdanes.docker.remoteapi.EventsService;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerLink;
@@ -35,7 +37,13 @@ import org.apache.maven.project.MavenProject;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * This class is responsible for starting docking containers in the pre-integration phase of the maven build. The goal
@@ -62,71 +70,196 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
     @Parameter(defaultValue = "${mojoExecution}", readonly = true)
     private MojoExecution mojoExecution;
 
+    /**
+     * The maximum number of containers that are started at the same time. A container that links to other containers
+     * is only started when those containers have finished startup.
+     */
+    @Parameter(defaultValue = "8", property = "docker.startParallelism")
+    private int startParallelism;
+
+    /**
+     * Whether to pull the images that docker doesn't have yet before any container is started, instead of pulling
+     * an image when creating its container fails.
+     */
+    @Parameter(defaultValue = "true", property = "docker.prePull")
+    private boolean prePull = true;
+
+    /**
+     * The maximum number of images that are pulled at the same time.
+     */
+    @Parameter(defaultValue = "4", property = "docker.pullParallelism")
+    private int pullParallelism = 4;
+
+    private ReadinessProbes readinessProbes;
+
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
-        if (hasDuplicateIds() || hasInvalidLinks()) {
+        if (hasDuplicateIds() || hasInvalidLinks() || hasInvalidReadinessProbes()) {
             return;
         }
         DockerProvider provider = getDockerProvider();
+        if (prePull) {
+            pullMissingImages(provider);
+        }
+        TaskGraph<String, ContainerInspectionResult> starts = new TaskGraph<>();
         for (ContainerStartConfiguration configuration : containers) {
-            for (ContainerLink link : configuration.getLinks()) {
-                String linkedContainerId = link.getContainerId();
-                ContainerStartConfiguration startConfiguration = getContainerStartConfiguration(linkedContainerId);
-                if (startConfiguration.getWaitForStartup() != null) {
-                    waitForContainerToFinishStartup(startConfiguration);
-                }
-            }
-            replaceImageWithBuiltImageIdIfInternalId(configuration);
-            replaceLinkedContainerIdsWithStartedNames(configuration);
-            try {
-                getLog().info(String.format("Starting container '%s'..", configuration.getId()));
-                ContainerInspectionResult container = provider.startContainer(configuration);
-                String containerId = container.getId();
-                List<ExposedPort> exposedPorts = provider.getExposedPorts(containerId);
-                exposePortsToProject(configuration, exposedPorts);
-                getLog().info(String.format("Started container with id '%s'", containerId));
-                registerStartedContainer(configuration.getId(), container);
-            } catch (DockerException e) {
-                String message = String.format("Failed to start container '%s'", configuration.getId());
-                handleDockerException(message, e);
-            }
+            List<String> linkedContainerIds = configuration.getLinks().stream()
+                    .map(ContainerLink::getContainerId)
+                    .collect(Collectors.toList());
+            starts.add(configuration.getId(), linkedContainerIds, () -> startContainer(provider, configuration));
         }
+
+        // the tries of the polling probes share at most startParallelism threads; a try times out after a second, so
+        // the probes of containers that start at the same time only queue up briefly when there are more of them
+        int pollingProbes = containers.stream()
+                .mapToInt(configuration -> ReadinessProbes.countPollingProbes(configuration.getReadinessProbes()))
+                .sum();
+        int probeThreads = Math.max(1, Math.min(pollingProbes, startParallelism));
+        ExecutorService probeTries = getTaskScope().newExecutor(probeThreads, "docker-readiness");
+        readinessProbes = ReadinessProbes.runningTriesOn(probeTries);
+
+        List<TaskGraph.TaskResult<String, ContainerInspectionResult>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            starts.run(getTaskScope(), startParallelism, "docker-start", result -> {
+                results.add(result);
+                handleStartResult(result);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while starting containers", e);
+        } finally {
+            getTaskScope().shutdown(probeTries);
+        }
+        logCriticalPath(starts.getCriticalPath(results), results, System.nanoTime() - start);
+
         getLog().debug("Properties after exposing ports: " + project.getProperties());
-        waitForContainersToFinishStartup();
         if (forceCleanup) {
             addShutdownHookToCleanUpContainers();
         }
     }
 
-    /** Avoid dangling containers if the build is interrupted (e.g. via Ctrl+C) before the StopContainer mojo runs. */
-    private void addShutdownHookToCleanUpContainers()
-    {
-        getLog().info("Started containers will be forcibly cleaned up when the build finishes");
-        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                cleanUpStartedContainers();
+    /**
+     * Pulls the images of the containers that docker doesn't have yet, at the same time, so starting a container
+     * never waits for a pull. Images built by the plugin are left alone. An image that can't be pulled here is only
+     * logged: it's pulled again when its container is created, which reports the error.
+     */
+    private void pullMissingImages(final DockerProvider provider) throws MojoExecutionException {
+        TaskGraph<String, Boolean> pulls = new TaskGraph<>();
+        containers.stream()
+                .map(ContainerStartConfiguration::getImage)
+                .filter(Objects::nonNull)
+                .filter(image -> !getBuiltImageForStartId(image).isPresent())
+                .distinct()
+                .forEach(image -> pulls.add(image, Collections.emptyList(), () -> pullIfMissing(provider, image)));
+
+        int[] pulled = {0};
+        long start = System.nanoTime();
+        try {
+            pulls.run(getTaskScope(), pullParallelism, "docker-pull", result -> {
+                if (result.getException().isPresent()) {
+                    getLog().warn(String.format("Cannot pull image '%s' before starting the containers: %s",
+                            result.getKey(), result.getException().get().getMessage()));
+                } else if (Boolean.TRUE.equals(result.getValue())) {
+                    pulled[0]++;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while pulling images", e);
+        }
+        if (pulled[0] > 0) {
+            getLog().info(String.format("Pulled %d image(s) in %s", pulled[0],
+                    formatSeconds(System.nanoTime() - start)));
+        }
+    }
+
+    /**
+     * @return true when the image was pulled, false when docker already had it
+     */
+    private boolean pullIfMissing(final DockerProvider provider, final String image) {
+        if (provider.hasImage(image)) {
+            return false;
+        }
+        getLog().info(String.format("Pulling image '%s'..", image));
+        provider.pullImage(image);
+        return true;
+    }
+
+    /**
+     * Starts a container and waits until it has finished startup. Runs on a worker thread, after all containers it
+     * links to have finished their startup.
+     */
+    private ContainerInspectionResult startContainer(final DockerProvider provider,
+                                                     final ContainerStartConfiguration configuration) {
+        replaceImageWithBuiltImageIdIfInternalId(configuration);
+        replaceLinkedContainerIdsWithStartedNames(configuration);
+        getLog().info(String.format("Starting container '%s'..", configuration.getId()));
+        ContainerInspectionResult container = provider.startContainer(configuration);
+        String containerId = container.getId();
+        List<ExposedPort> exposedPorts = provider.getExposedPorts(containerId);
+        exposePortsToProject(configuration, exposedPorts);
+        getLog().info(String.format("Started container with id '%s'", containerId));
+        registerStartedContainer(configuration.getId(), container, configuration.getStopTimeout());
+        startLogTail(provider, configuration.getId(), containerId);
+        if (configuration.getWaitForStartup() != null || !configuration.getReadinessProbes().isEmpty()) {
+            waitForContainerToFinishStartup(provider, configuration, exposedPorts);
+        }
+        return container;
+    }
+
+    private void handleStartResult(final TaskGraph.TaskResult<String, ContainerInspectionResult> result) {
+        String message = String.format("Failed to start container '%s'", result.getKey());
+        if (result.getFailedDependency().isPresent()) {
+            handleDockerException(message, new DockerException(String.format(
+                    "It links to container '%s', which could not be started", result.getFailedDependency().get())));
+        } else if (result.getException().isPresent()) {
+            Exception exception = result.getException().get();
+            if (exception instanceof DockerException) {
+                handleDockerException(String.format("%s: %s", message, exception.getMessage()),
+                        (DockerException) exception);
+            } else if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            } else {
+                throw new IllegalStateException(message, exception);
             }
-        }));
+        }
     }
 
-    private ContainerStartConfiguration getContainerStartConfiguration(String id) {
-        return containers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException(String.format("No container with ID '%s'", id)));
+    private void logCriticalPath(final List<TaskGraph.TaskResult<String, ContainerInspectionResult>> criticalPath,
+                                 final List<TaskGraph.TaskResult<String, ContainerInspectionResult>> results,
+                                 final long elapsedNanos) {
+        if (criticalPath.isEmpty()) {
+            return;
+        }
+        String path = criticalPath.stream()
+                .map(result -> String.format("'%s' (%s)", result.getKey(),
+                        formatSeconds(result.getEndNanos() - result.getStartNanos())))
+                .collect(Collectors.joining(" -> "));
+        long started = results.stream().filter(TaskGraph.TaskResult::isSuccessful).count();
+        getLog().info(String.format("Started %d container(s) in %s, critical path: %s",
+                started, formatSeconds(elapsedNanos), path));
     }
 
-    private void waitForContainersToFinishStartup() {
-        containers.stream()
-                .filter(input -> input.getWaitForStartup() != null)
-                .forEach(this::waitForContainerToFinishStartup);
+    private static String formatSeconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.1f sec.", nanos / 1e9);
     }
 
-    private void waitForContainerToFinishStartup(final ContainerStartConfiguration container) {
-        Pattern pattern = Pattern.compile(container.getWaitForStartup());
+    /** Avoid dangling containers if the build is interrupted (e.g. via Ctrl+C) before the StopContainer mojo runs. */
+    private void addShutdownHookToCleanUpContainers() {
+        getLog().info("Started containers will be forcibly cleaned up when the build finishes");
+        getDockerProviderRegistry().onSessionEnd(this::cleanUpStartedContainers);
+    }
+
+    /**
+     * Waits until the container logged its startup line and passed its readiness probes.
+     *
+     * @throws DockerException when the container stops or doesn't become ready in time, which fails its start task
+     *                         so the containers that link to it are skipped
+     */
+    private void waitForContainerToFinishStartup(final DockerProvider provider,
+                                                 final ContainerStartConfiguration container,
+                                                 final List<ExposedPort> exposedPorts) {
         Optional<StartedContainerInfo> startedContainerInfo = getInfoForContainerStartId(container.getId());
         if (!startedContainerInfo.isPresent()) {
             return;
@@ -134,27 +267,104 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
         StartedContainerInfo containerInfo = startedContainerInfo.get();
         String containerId = containerInfo.getContainerInfo().getId();
         long maxWait = System.currentTimeMillis() + 1000 * container.getStartupTimeout();
-        boolean finished = false;
+        getLog().info(String.format("Waiting for container '%s' to finish startup (max %s sec.)",
+                container.getId(), container.getStartupTimeout()));
+        // the probes run on their own threads while this thread follows the logs
+        CompletableFuture<Void> probes = readinessProbes.awaitAll(provider, containerId, exposedPorts,
+                container.getReadinessProbes(), container.getStartupTimeout());
+        try {
+            String failure = null;
+            if (container.getWaitForStartup() != null) {
+                failure = awaitStartupLogLine(provider, container, containerId, maxWait);
+            }
+            if (failure == null) {
+                failure = awaitReadinessProbes(container, probes, maxWait);
+            }
+            if (failure == null) {
+                getLog().info(String.format("Container '%s' has completed startup", container.getId()));
+                return;
+            }
+            throw new DockerException(failure);
+        } finally {
+            probes.cancel(true);
+        }
+    }
+
+    /**
+     * Follows the logs of a container until a line matches the waitForStartup pattern.
+     *
+     * @return null when a line matched, the reason why none did otherwise
+     */
+    private String awaitStartupLogLine(final DockerProvider provider, final ContainerStartConfiguration container,
+                                       final String containerId, final long maxWait) {
+        Pattern pattern = Pattern.compile(container.getWaitForStartup());
+        CompletableFuture<Boolean> logLine = provider.awaitLogLine(containerId, pattern);
+        try {
+            if (logLine.get(container.getStartupTimeout(), TimeUnit.SECONDS)) {
+                return null;
+            }
+            return String.format("Container %s stopped before it finished startup", container.getId());
+        } catch (ExecutionException e) {
+            getLog().debug(String.format("Cannot follow the logs of container '%s', polling them instead",
+                    container.getId()), e.getCause());
+            return pollForStartup(provider, container, containerId, pattern, maxWait);
+        } catch (TimeoutException | InterruptedException ignored) {
+            return String.format("Container %s did not finish startup in time", container.getId());
+        } finally {
+            logLine.cancel(true);
+        }
+    }
+
+    /**
+     * @return null when all readiness probes of the container succeeded, the reason why they didn't otherwise
+     */
+    private String awaitReadinessProbes(final ContainerStartConfiguration container,
+                                        final CompletableFuture<Void> probes, final long maxWait) {
+        try {
+            probes.get(Math.max(0, maxWait - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return String.format("Container %s did not become ready: %s", container.getId(),
+                    e.getCause().getMessage());
+        } catch (TimeoutException | InterruptedException ignored) {
+            return String.format("Container %s did not finish startup in time", container.getId());
+        }
+    }
+
+    /**
+     * Fetches the logs of a container every second until the pattern is found, for providers that can't follow logs.
+     *
+     * @return null when the container finished startup, the reason why it didn't otherwise
+     */
+    private String pollForStartup(final DockerProvider provider, final ContainerStartConfiguration container,
+                                  final String containerId, final Pattern pattern, final long maxWait) {
+        // docker's events wake this loop up right away when the container dies or becomes healthy
+        CompletableFuture<String> event = provider.awaitContainerEvent(containerId,
+                EventsService.DIE, EventsService.HEALTHY);
         while (System.currentTimeMillis() <= maxWait) {
-            String logs = getDockerProvider().getLogs(containerId);
+            String logs = provider.getLogs(containerId);
             if (logs != null && pattern.matcher(logs).find()) {
-                getLog().info(String.format("Container '%s' has completed startup", container.getId()));
-                finished = true;
-                break;
+                return null;
+            }
+            if (!event.isCompletedExceptionally() && EventsService.DIE.equals(event.getNow(null))) {
+                return String.format("Container %s stopped before it finished startup", container.getId());
+            }
+            if (event.isDone()) {
+                // it became healthy or the events stream ended, the logs were checked once more above
+                event = provider.awaitContainerEvent(containerId, EventsService.DIE);
+                continue;
             }
             try {
                 getLog().info(String.format("Waiting for container '%s' to finish startup (max %s sec.)",
                         container.getId(), container.getStartupTimeout()));
-                Thread.sleep(1000);
+                event.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException | ExecutionException ignored) {
+                // check the logs again
             } catch (InterruptedException ignored) {
                 break;
             }
         }
-        if (!finished) {
-            String message = String.format("Container %s did not finish startup in time", container.getId());
-            registerPluginError(new DockerPluginError(getMojoGoalName(), message));
-            getLog().error(message);
-        }
+        return String.format("Container %s did not finish startup in time", container.getId());
     }
 
     private boolean hasInvalidLinks() {
@@ -176,6 +386,24 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
         return hasInvalidLinks;
     }
 
+    private boolean hasInvalidReadinessProbes() {
+        boolean hasInvalidProbes = false;
+        for (ContainerStartConfiguration configuration : containers) {
+            for (ReadinessProbe probe : configuration.getReadinessProbes()) {
+                try {
+                    probe.getType();
+                } catch (IllegalArgumentException e) {
+                    String message = String.format("Container '%s' has an invalid readiness probe: %s",
+                            configuration.getId(), e.getMessage());
+                    getLog().error(message);
+                    registerPluginError(new DockerPluginError(mojoExecution.getGoal(), message));
+                    hasInvalidProbes = true;
+                }
+            }
+        }
+        return hasInvalidProbes;
+    }
+
     private boolean hasDuplicateIds() {
         Set<String> ids = new HashSet<>(containers.size());
         for (ContainerStartConfiguration configuration : containers) {
@@ -227,6 +455,18 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
         this.mojoExecution = mojoExecution;
     }
 
+    public void setStartParallelism(final int startParallelism) {
+        this.startParallelism = startParallelism;
+    }
+
+    public void setPrePull(final boolean prePull) {
+        this.prePull = prePull;
+    }
+
+    public void setPullParallelism(final int pullParallelism) {
+        this.pullParallelism = pullParallelism;
+    }
+
     private void addPropertyToProject(String key, String value) {
         getLog().info(String.format("Setting property '%s' to '%s'", key, value));
         project.getProperties().setProperty(key, value);
@@ -1,18 +1,27 @@
 package net.wouterdanes.docker.maven;
 
+import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 
 /**
- * Holds the information for a started container: it's starting id and an inspection result just after starting.
+ * Holds the information for a started container: it's starting id, an inspection result just after starting and the
+ * time it gets to stop.
  */
 public class StartedContainerInfo {
 
     private final String containerId;
     private final ContainerInspectionResult containerInfo;
+    private final int stopTimeout;
 
     public StartedContainerInfo(final String containerId, final ContainerInspectionResult containerInfo) {
+        this(containerId, containerInfo, ContainerStartConfiguration.DEFAULT_STOP_TIMEOUT);
+    }
+
+    public StartedContainerInfo(final String containerId, final ContainerInspectionResult containerInfo,
+                                final int stopTimeout) {
         this.containerId = containerId;
         this.containerInfo = containerInfo;
+        this.stopTimeout = stopTimeout;
     }
 
     public String getContainerId() {
@@ -22,4 +31,8 @@ public class StartedContainerInfo {
     public ContainerInspectionResult getContainerInfo() {
         return containerInfo;
     }
+
+    public int getStopTimeout() {
+        return stopTimeout;
+    }
 }
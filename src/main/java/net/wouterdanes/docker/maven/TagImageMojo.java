@@ -17,8 +17,10 @@
 
 package net.wouterdanes.docker.maven;
 
+import net.wouterdanes.docker.provider.DockerProvider;
 import net.wouterdanes.docker.provider.model.BuiltImageInfo;
 import net.wouterdanes.docker.provider.model.ImageTagConfiguration;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.InstantiationStrategy;
@@ -26,8 +28,14 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static java.util.Optional.ofNullable;
 
@@ -42,20 +50,33 @@ public class TagImageMojo extends AbstractDockerMojo {
     @Parameter(required = true)
     private List<ImageTagConfiguration> images;
 
+    /**
+     * The maximum number of tags that are applied to an image at the same time.
+     */
+    @Parameter(defaultValue = "8", property = "docker.tagParallelism")
+    private int tagParallelism = 8;
+
     public void setImages(final List<ImageTagConfiguration> images) {
         this.images = images;
     }
 
+    public void setTagParallelism(final int tagParallelism) {
+        this.tagParallelism = tagParallelism;
+    }
+
     @Override
     protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        DockerProvider provider = null;
         for (ImageTagConfiguration config : images) {
             if (!config.getTags().isEmpty()) {
-                applyTagsToImage(config);
+                provider = provider != null ? provider : getDockerProvider();
+                applyTagsToImage(provider, config);
             }
         }
     }
 
-    private void applyTagsToImage(ImageTagConfiguration config) throws MojoFailureException {
+    private void applyTagsToImage(final DockerProvider provider, final ImageTagConfiguration config)
+            throws MojoExecutionException, MojoFailureException {
         String imageId = config.getId();
         boolean push = config.isPush();
         Optional<String> registry = Optional.ofNullable(config.getRegistry());
@@ -66,12 +87,71 @@ public class TagImageMojo extends AbstractDockerMojo {
             registry = ofNullable(registry.orElse(builtInfo.get().getRegistry().orElse(null)));
         }
 
+        // images pushed to a registry get the tag with the registry in front of it as well
+        Set<String> tags = new LinkedHashSet<>(config.getTags());
+        List<String> tagsToPush = new ArrayList<>();
         for (String nameAndTag : config.getTags()) {
-            attachTag(imageId, nameAndTag);
-            if (push) {
-                enqueueForPushing(imageId, Optional.ofNullable(nameAndTag), registry);
+            String tagToPush = registry.isPresent() && push ? withRegistry(registry.get(), nameAndTag) : nameAndTag;
+            tags.add(tagToPush);
+            tagsToPush.add(tagToPush);
+        }
+
+        attachTags(provider, imageId, tags);
+
+        if (push) {
+            for (String nameAndTag : tagsToPush) {
+                enqueueForPushing(imageId, Optional.of(nameAndTag));
+            }
+        }
+    }
+
+    /**
+     * Applies all tags to an image at the same time and logs how long every tag took.
+     */
+    private void attachTags(final DockerProvider provider, final String imageId, final Set<String> tags)
+            throws MojoExecutionException, MojoFailureException {
+        TaskGraph<String, Void> tagging = new TaskGraph<>();
+        for (String nameAndTag : tags) {
+            tagging.add(nameAndTag, Collections.emptyList(), () -> {
+                getLog().info(String.format("Tagging image '%s' with tag '%s'..", imageId, nameAndTag));
+                provider.tagImage(imageId, nameAndTag);
+                return null;
+            });
+        }
+
+        List<TaskGraph.TaskResult<String, Void>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            tagging.run(getTaskScope(), tagParallelism, "docker-tag", results::add);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while tagging image " + imageId, e);
+        }
+
+        String latencies = results.stream()
+                .map(result -> String.format(Locale.ROOT, "'%s' (%d ms%s)", result.getKey(),
+                        (result.getEndNanos() - result.getStartNanos()) / 1000000,
+                        result.isSuccessful() ? "" : ", failed"))
+                .collect(Collectors.joining(", "));
+        getLog().info(String.format(Locale.ROOT, "Tagged image '%s' with %d tag(s) in %.1f sec.: %s", imageId,
+                results.size(), (System.nanoTime() - start) / 1e9, latencies));
+
+        for (TaskGraph.TaskResult<String, Void> result : results) {
+            if (result.getException().isPresent()) {
+                handleTagFailure(imageId, result.getKey(), result.getException().get());
             }
         }
     }
 
-}
\ No newline at end of file
+    private void handleTagFailure(final String imageId, final String nameAndTag, final Exception exception)
+            throws MojoFailureException {
+        String message = String.format("Failed to add tag '%s' to image '%s'", nameAndTag, imageId);
+        if (exception instanceof DockerException) {
+            handleDockerException(message, (DockerException) exception);
+        } else if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        } else {
+            throw new IllegalStateException(message, exception);
+        }
+    }
+}
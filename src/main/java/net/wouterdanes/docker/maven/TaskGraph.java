@@ -0,0 +1,388 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * This class is responsible for running tasks that may depend on each other, like images that are built FROM other
+ * images, with at most a given number of tasks running at the same time. A task starts as soon as all tasks it depends
+ * on have succeeded; when one of them fails, the task is skipped.
+ * <p>
+ * Results are handed out on the calling thread in a fixed order: the tasks in dependency order, ties broken by the
+ * order in which they were added. How the tasks are scheduled doesn't change that order, so anything done with the
+ * results (like logging) is deterministic.
+ *
+ * @param <K> the type of the keys that identify the tasks
+ * @param <V> the type of the results of the tasks
+ */
+class TaskGraph<K, V> {
+
+    private final Map<K, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * Adds a task to the graph.
+     *
+     * @param key          the key of the task
+     * @param dependencies the keys of the tasks that need to succeed before this task can run. Keys that are not in
+     *                     the graph are ignored.
+     * @param task         the task
+     * @throws IllegalArgumentException when a task with the same key was added before
+     */
+    void add(final K key, final Collection<K> dependencies, final Callable<V> task) {
+        if (nodes.containsKey(key)) {
+            throw new IllegalArgumentException(String.format("Task '%s' was added twice", key));
+        }
+        nodes.put(key, new Node(key, nodes.size(), new LinkedHashSet<>(dependencies), task));
+    }
+
+    /**
+     * Returns the order in which the results will be reported: dependencies first, otherwise in the order the tasks
+     * were added.
+     *
+     * @return the keys of all tasks, ordered
+     * @throws IllegalStateException when the tasks depend on each other in a cycle
+     */
+    List<K> getOrder() {
+        Map<K, Integer> remainingDependencies = new HashMap<>();
+        Map<K, List<Node>> dependents = getDependents();
+        PriorityQueue<Node> ready = new PriorityQueue<>((a, b) -> Integer.compare(a.index, b.index));
+        for (Node node : nodes.values()) {
+            int count = getKnownDependencies(node).size();
+            remainingDependencies.put(node.key, count);
+            if (count == 0) {
+                ready.add(node);
+            }
+        }
+        List<K> order = new ArrayList<>(nodes.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            order.add(node.key);
+            for (Node dependent : dependents.get(node.key)) {
+                if (remainingDependencies.merge(dependent.key, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (order.size() < nodes.size()) {
+            List<K> inCycle = new ArrayList<>(nodes.keySet());
+            inCycle.removeAll(order);
+            throw new IllegalStateException(String.format("These depend on each other in a cycle: %s", inCycle));
+        }
+        return order;
+    }
+
+    /**
+     * Runs all tasks and passes their results to the consumer, in the order of {@link #getOrder()}. Returns when all
+     * tasks have finished.
+     *
+     * @param parallelism the maximum number of tasks that run at the same time
+     * @param threadName  the prefix for the names of the worker threads
+     * @param results     receives the results, on the calling thread
+     * @throws IllegalStateException when the tasks depend on each other in a cycle
+     * @throws InterruptedException  when the calling thread is interrupted while waiting for tasks to finish
+     */
+    void run(final int parallelism, final String threadName, final Consumer<TaskResult<K, V>> results)
+            throws InterruptedException {
+        try (TaskScope scope = TaskScope.platform()) {
+            run(scope, parallelism, threadName, results);
+        }
+    }
+
+    /**
+     * Runs all tasks like {@link #run(int, String, Consumer)}, on the threads of the passed scope. With virtual threads
+     * every running task has a thread of its own, the parallelism still limits how many tasks run at the same time.
+     *
+     * @param scope       the scope of the goal that runs the tasks
+     * @param parallelism the maximum number of tasks that run at the same time
+     * @param threadName  the prefix for the names of the worker threads
+     * @param results     receives the results, on the calling thread
+     * @throws IllegalStateException when the tasks depend on each other in a cycle
+     * @throws InterruptedException  when the calling thread is interrupted while waiting for tasks to finish
+     */
+    void run(final TaskScope scope, final int parallelism, final String threadName,
+             final Consumer<TaskResult<K, V>> results) throws InterruptedException {
+        List<K> order = getOrder();
+        if (order.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(parallelism, order.size()));
+        ExecutorService executor = scope.newExecutor(threads, threadName);
+        try {
+            new Run(order, executor, scope, threads, results).execute();
+        } finally {
+            scope.shutdown(executor);
+        }
+    }
+
+    /**
+     * Returns the chain of tasks that determined how long a run took: the task that finished last, preceded by the
+     * dependency that finished last of that task, and so on. Only successful tasks are taken into account.
+     *
+     * @param results the results of a run of this graph
+     * @return the critical path, first task first, or an empty list when no task succeeded
+     */
+    List<TaskResult<K, V>> getCriticalPath(final Collection<TaskResult<K, V>> results) {
+        Map<K, TaskResult<K, V>> successful = new HashMap<>();
+        for (TaskResult<K, V> result : results) {
+            if (result.isSuccessful()) {
+                successful.put(result.getKey(), result);
+            }
+        }
+        List<TaskResult<K, V>> path = new ArrayList<>();
+        TaskResult<K, V> current = getLastFinished(successful.values());
+        while (current != null) {
+            path.add(0, current);
+            List<TaskResult<K, V>> dependencies = new ArrayList<>();
+            for (K dependency : getKnownDependencies(nodes.get(current.getKey()))) {
+                if (successful.containsKey(dependency)) {
+                    dependencies.add(successful.get(dependency));
+                }
+            }
+            current = getLastFinished(dependencies);
+        }
+        return path;
+    }
+
+    private static <K, V> TaskResult<K, V> getLastFinished(final Collection<TaskResult<K, V>> results) {
+        TaskResult<K, V> last = null;
+        for (TaskResult<K, V> result : results) {
+            if (last == null || result.getEndNanos() > last.getEndNanos()) {
+                last = result;
+            }
+        }
+        return last;
+    }
+
+    private Set<K> getKnownDependencies(final Node node) {
+        Set<K> known = new LinkedHashSet<>(node.dependencies);
+        known.retainAll(nodes.keySet());
+        known.remove(node.key);
+        return known;
+    }
+
+    private Map<K, List<Node>> getDependents() {
+        Map<K, List<Node>> dependents = new HashMap<>();
+        for (Node node : nodes.values()) {
+            dependents.put(node.key, new ArrayList<>());
+        }
+        for (Node node : nodes.values()) {
+            for (K dependency : getKnownDependencies(node)) {
+                dependents.get(dependency).add(node);
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * The state of one call to {@link #run(TaskScope, int, String, Consumer)}. Only used by the calling thread, the workers only
+     * run the tasks.
+     */
+    private final class Run {
+        private final List<K> order;
+        private final Map<K, Integer> positions = new HashMap<>();
+        private final Map<K, List<Node>> dependents = getDependents();
+        private final Map<K, Integer> remainingDependencies = new HashMap<>();
+        private final Map<K, TaskResult<K, V>> finished = new HashMap<>();
+        private final PriorityQueue<Node> ready;
+        private final ExecutorCompletionService<TaskResult<K, V>> completionService;
+        private final TaskScope scope;
+        private final int threads;
+        private final Consumer<TaskResult<K, V>> results;
+        private final long start = System.nanoTime();
+        private int running;
+        private int reported;
+
+        private Run(final List<K> order, final ExecutorService executor, final TaskScope scope, final int threads,
+                    final Consumer<TaskResult<K, V>> results) {
+            this.order = order;
+            this.scope = scope;
+            this.threads = threads;
+            this.results = results;
+            this.completionService = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < order.size(); i++) {
+                positions.put(order.get(i), i);
+            }
+            ready = new PriorityQueue<>((a, b) -> Integer.compare(positions.get(a.key), positions.get(b.key)));
+            for (Node node : nodes.values()) {
+                int count = getKnownDependencies(node).size();
+                remainingDependencies.put(node.key, count);
+                if (count == 0) {
+                    ready.add(node);
+                }
+            }
+        }
+
+        private void execute() throws InterruptedException {
+            while (reported < order.size()) {
+                while (running < threads && !ready.isEmpty()) {
+                    submit(ready.poll());
+                }
+                if (running == 0) {
+                    throw new IllegalStateException("No task can run, but not all tasks have finished");
+                }
+                TaskResult<K, V> result;
+                try {
+                    result = completionService.take().get();
+                } catch (ExecutionException e) {
+                    // can't happen, the submitted callable catches everything
+                    throw new IllegalStateException(e.getCause());
+                }
+                running--;
+                complete(result);
+                report();
+            }
+        }
+
+        private void submit(final Node node) {
+            running++;
+            completionService.submit(scope.track(() -> {
+                long started = System.nanoTime() - start;
+                try {
+                    V value = node.task.call();
+                    return TaskResult.success(node.key, value, started, System.nanoTime() - start);
+                } catch (Exception e) {
+                    return TaskResult.failure(node.key, e, started, System.nanoTime() - start);
+                }
+            }));
+        }
+
+        private void complete(final TaskResult<K, V> result) {
+            finished.put(result.getKey(), result);
+            for (Node dependent : dependents.get(result.getKey())) {
+                if (!result.isSuccessful()) {
+                    skip(dependent, result.getKey());
+                } else if (remainingDependencies.merge(dependent.key, -1, Integer::sum) == 0
+                        && !finished.containsKey(dependent.key)) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        private void skip(final Node node, final K failedDependency) {
+            if (finished.containsKey(node.key)) {
+                return;
+            }
+            long now = System.nanoTime() - start;
+            finished.put(node.key, TaskResult.skipped(node.key, failedDependency, now));
+            for (Node dependent : dependents.get(node.key)) {
+                skip(dependent, failedDependency);
+            }
+        }
+
+        private void report() {
+            while (reported < order.size() && finished.containsKey(order.get(reported))) {
+                results.accept(finished.get(order.get(reported)));
+                reported++;
+            }
+        }
+    }
+
+    private final class Node {
+        private final K key;
+        private final int index;
+        private final Set<K> dependencies;
+        private final Callable<V> task;
+
+        private Node(final K key, final int index, final Set<K> dependencies, final Callable<V> task) {
+            this.key = key;
+            this.index = index;
+            this.dependencies = Collections.unmodifiableSet(dependencies);
+            this.task = task;
+        }
+    }
+
+    /**
+     * The outcome of one task: a value, an exception, or skipped because a task it depends on failed. The times are
+     * relative to the start of the run.
+     */
+    static final class TaskResult<K, V> {
+        private final K key;
+        private final V value;
+        private final Exception exception;
+        private final K failedDependency;
+        private final long startNanos;
+        private final long endNanos;
+
+        private TaskResult(final K key, final V value, final Exception exception, final K failedDependency,
+                           final long startNanos, final long endNanos) {
+            this.key = key;
+            this.value = value;
+            this.exception = exception;
+            this.failedDependency = failedDependency;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+
+        static <K, V> TaskResult<K, V> success(final K key, final V value, final long start, final long end) {
+            return new TaskResult<>(key, value, null, null, start, end);
+        }
+
+        static <K, V> TaskResult<K, V> failure(final K key, final Exception exception, final long start,
+                                               final long end) {
+            return new TaskResult<>(key, null, exception, null, start, end);
+        }
+
+        static <K, V> TaskResult<K, V> skipped(final K key, final K failedDependency, final long time) {
+            return new TaskResult<>(key, null, null, failedDependency, time, time);
+        }
+
+        K getKey() {
+            return key;
+        }
+
+        boolean isSuccessful() {
+            return exception == null && failedDependency == null;
+        }
+
+        V getValue() {
+            return value;
+        }
+
+        Optional<Exception> getException() {
+            return Optional.ofNullable(exception);
+        }
+
+        Optional<K> getFailedDependency() {
+            return Optional.ofNullable(failedDependency);
+        }
+
+        long getStartNanos() {
+            return startNanos;
+        }
+
+        long getEndNanos() {
+            return endNanos;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is responsible for the threads that run the tasks of one execution of a goal, like the containers that
+ * are started or the images that are pushed. In the "virtual" execution mode every task gets a virtual thread, which
+ * needs Java 21 or newer; on older JVMs, and in the "platform" mode, the tasks run on a bounded pool of platform
+ * threads. Closing the scope interrupts the tasks that are still running, so no task outlives its goal.
+ * <p>
+ * Threads that have to outlive a goal don't run in a scope: the readers of followed logs (a log tail runs until the
+ * stop-containers goal) and of docker's events (which serve the whole build). They are daemon threads of the
+ * provider, and end when the stream they read is closed, at the latest when the provider is closed at the end of the
+ * build.
+ */
+final class TaskScope implements AutoCloseable {
+
+    static final String PLATFORM = "platform";
+    static final String VIRTUAL = "virtual";
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final boolean virtual;
+    private final Set<ExecutorService> executors = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicLong tasks = new AtomicLong();
+
+    private TaskScope(final boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * Opens a scope for the passed execution mode.
+     *
+     * @param executionMode {@value #PLATFORM} or {@value #VIRTUAL}
+     * @param log           to warn when virtual threads are asked for but not available
+     * @return the scope, which needs to be closed when the goal is done
+     */
+    static TaskScope open(final String executionMode, final Log log) {
+        String mode = executionMode != null ? executionMode.trim().toLowerCase(Locale.ROOT) : PLATFORM;
+        if (VIRTUAL.equals(mode)) {
+            if (newVirtualThreadFactory("docker-check").isPresent()) {
+                return new TaskScope(true);
+            }
+            log.warn(String.format("Virtual threads need Java 21 or newer, this is Java %s. Running the tasks on "
+                    + "platform threads.", System.getProperty("java.version")));
+        } else if (!PLATFORM.equals(mode)) {
+            log.warn(String.format("Unknown execution mode '%s', use '%s' or '%s'. Running the tasks on platform "
+                    + "threads.", executionMode, PLATFORM, VIRTUAL));
+        }
+        return new TaskScope(false);
+    }
+
+    /**
+     * @return a scope that runs the tasks on platform threads, for code that runs outside of a goal
+     */
+    static TaskScope platform() {
+        return new TaskScope(false);
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Creates an executor for one run of tasks. The caller shuts it down when the run is done, closing the scope shuts
+     * down the executors that are left.
+     *
+     * @param threads    the number of platform threads, virtual threads are created for every task instead
+     * @param threadName the prefix for the names of the threads
+     * @return the executor
+     */
+    ExecutorService newExecutor(final int threads, final String threadName) {
+        ExecutorService executor = virtual
+                ? newThreadPerTaskExecutor(newVirtualThreadFactory(threadName).get())
+                : Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, threadName + "-" + THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Shuts down an executor of this scope, interrupting the tasks that still run on it.
+     */
+    void shutdown(final ExecutorService executor) {
+        executor.shutdownNow();
+        executors.remove(executor);
+    }
+
+    /**
+     * Wraps a task so the scope counts it while it runs.
+     */
+    <V> Callable<V> track(final Callable<V> task) {
+        return () -> {
+            tasks.incrementAndGet();
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                return task.call();
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+    }
+
+    long getTasks() {
+        return tasks.get();
+    }
+
+    /**
+     * @return the highest number of tasks that ran at the same time
+     */
+    int getPeak() {
+        return peak.get();
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+        executors.clear();
+    }
+
+    /**
+     * Creates a factory for named virtual threads, with <code>Thread.ofVirtual().name(prefix, 1).factory()</code>.
+     * That API is called reflectively, the plugin is compiled for Java 8.
+     *
+     * @return the factory, empty when the JVM has no virtual threads
+     */
+    private static Optional<ThreadFactory> newVirtualThreadFactory(final String threadName) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadName + "-", 1L);
+            return Optional.of((ThreadFactory) builderClass.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            // also thrown on Java 19 and 20, where virtual threads are a preview feature that is disabled by default
+            return Optional.empty();
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(final ThreadFactory factory) {
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create an executor for virtual threads", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * A base class for {@link DockerProvider}s that were written against the interface before version 5.1.0. It
+ * implements the methods that were added since on top of the methods that were there before, or reports that the
+ * provider can't do it. The plugin then falls back to what it did before: it polls the logs of a starting container,
+ * always builds and pushes images and leaves pulling an image to {@link #startContainer}.
+ */
+public abstract class AbstractDockerProvider implements DockerProvider {
+
+    /**
+     * Stops the container with the provider's own timeout.
+     */
+    @Override
+    public void stopContainer(final String containerId, final int timeout) {
+        stopContainer(containerId);
+    }
+
+    /**
+     * Stops the container, the provider can't kill it.
+     */
+    @Override
+    public void killContainer(final String containerId) {
+        stopContainer(containerId);
+    }
+
+    /**
+     * Builds the image with {@link #buildImage(ImageBuildConfiguration)}, its output isn't written to the passed log.
+     */
+    @Override
+    public String buildImage(final ImageBuildConfiguration image, final Log buildLog) {
+        return buildImage(image);
+    }
+
+    /**
+     * @return null, the provider can't compute the digest so the image is always built
+     */
+    @Override
+    public String getBuildContextDigest(final ImageBuildConfiguration image) {
+        return null;
+    }
+
+    /**
+     * @return true, so the plugin doesn't try to pull the image: the provider pulls a missing image itself when it
+     * starts a container
+     */
+    @Override
+    public boolean hasImage(final String imageId) {
+        return true;
+    }
+
+    /**
+     * @return empty, the provider can't look up images
+     */
+    @Override
+    public Optional<String> getImageId(final String image) {
+        return Optional.empty();
+    }
+
+    /**
+     * @throws DockerException always, the provider can't pull images
+     */
+    @Override
+    public PullProgress pullImage(final String image) {
+        throw new DockerException(String.format("Cannot pull image '%s', the docker provider %s can't pull images",
+                image, getClass().getName()));
+    }
+
+    /**
+     * @return no digests, so the image is always pushed
+     */
+    @Override
+    public List<String> getRepoDigests(final String image) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return empty, the provider can't ask the registry
+     */
+    @Override
+    public Optional<String> getRegistryDigest(final String nameAndTag) {
+        return Optional.empty();
+    }
+
+    /**
+     * Writes the result of {@link #getLogs(String)} to stdout, a separate stderr file is left empty.
+     */
+    @Override
+    public void writeLogs(final String containerId, final Path stdout, final Path stderr) {
+        String logs = getLogs(containerId);
+        try {
+            Files.write(stdout, (logs != null ? logs : "").getBytes(StandardCharsets.UTF_8));
+            if (!stderr.equals(stdout)) {
+                Files.write(stderr, new byte[0]);
+            }
+        } catch (IOException e) {
+            throw new DockerException("Cannot write the logs of container " + containerId, e);
+        }
+    }
+
+    /**
+     * @return a failed future, the provider can't follow logs so the plugin polls them instead
+     */
+    @Override
+    public CompletableFuture<Boolean> awaitLogLine(final String containerId, final Pattern pattern) {
+        CompletableFuture<Boolean> matched = new CompletableFuture<>();
+        matched.completeExceptionally(new UnsupportedOperationException("This provider can't follow logs"));
+        return matched;
+    }
+
+    /**
+     * @return a failed future, the provider can't follow logs so the plugin downloads them when the container stopped
+     */
+    @Override
+    public CompletableFuture<Void> tailLogs(final String containerId, final WritableByteChannel stdout,
+                                            final WritableByteChannel stderr) {
+        CompletableFuture<Void> followed = new CompletableFuture<>();
+        followed.completeExceptionally(new UnsupportedOperationException("This provider can't follow logs"));
+        return followed;
+    }
+
+    /**
+     * @return a future that never completes, the provider can't follow docker's events
+     */
+    @Override
+    public CompletableFuture<String> awaitContainerEvent(final String containerId, final String... events) {
+        return new CompletableFuture<>();
+    }
+
+    /**
+     * @return empty, the provider doesn't keep metrics
+     */
+    @Override
+    public Optional<ApiMetrics> getApiMetrics() {
+        return Optional.empty();
+    }
+
+    /**
+     * Has nothing to release.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,106 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.PushProgress;
+import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * This interface offers the operations of a {@link DockerProvider} that take long as {@link CompletableFuture}s, so
+ * goals can compose them into pipelines, like build, then tag, then push, instead of managing threads themselves. The
+ * futures fail with the exception the blocking operation throws, usually a
+ * {@link net.wouterdanes.docker.remoteapi.exception.DockerException}.
+ */
+public interface AsyncDockerProvider {
+
+    /**
+     * Returns an {@link AsyncDockerProvider} that runs the operations of a blocking provider on the passed executor.
+     * The number of threads of the executor limits the number of operations that run at the same time.
+     *
+     * @param provider the provider to run the operations with
+     * @param executor the executor to run the operations on
+     * @return the asynchronous provider
+     */
+    static AsyncDockerProvider of(final DockerProvider provider, final Executor executor) {
+        return new ExecutorAsyncDockerProvider(provider, executor);
+    }
+
+    /**
+     * @return the blocking provider the operations run with, for operations that are quick or not offered here
+     */
+    DockerProvider getDockerProvider();
+
+    /**
+     * @see DockerProvider#startContainer(ContainerStartConfiguration)
+     */
+    CompletableFuture<ContainerInspectionResult> startContainer(ContainerStartConfiguration configuration);
+
+    /**
+     * @see DockerProvider#stopContainer(String, int)
+     */
+    CompletableFuture<Void> stopContainer(String containerId, int timeout);
+
+    /**
+     * @see DockerProvider#deleteContainer(String)
+     */
+    CompletableFuture<Void> deleteContainer(String containerId);
+
+    /**
+     * @see DockerProvider#getExposedPorts(String)
+     */
+    CompletableFuture<List<ExposedPort>> getExposedPorts(String containerId);
+
+    /**
+     * @see DockerProvider#buildImage(ImageBuildConfiguration, Log)
+     */
+    CompletableFuture<String> buildImage(ImageBuildConfiguration image, Log buildLog);
+
+    /**
+     * @see DockerProvider#pullImage(String)
+     */
+    CompletableFuture<PullProgress> pullImage(String image);
+
+    /**
+     * @see DockerProvider#tagImage(String, String)
+     */
+    CompletableFuture<Void> tagImage(String imageId, String nameAndTag);
+
+    /**
+     * @see DockerProvider#pushImage(String)
+     */
+    CompletableFuture<PushProgress> pushImage(String nameAndTag);
+
+    /**
+     * @see DockerProvider#removeImage(String)
+     */
+    CompletableFuture<Void> removeImage(String imageId);
+
+    /**
+     * @see DockerProvider#getLogs(String)
+     */
+    CompletableFuture<String> getLogs(String containerId);
+}
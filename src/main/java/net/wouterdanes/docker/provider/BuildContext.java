@@ -0,0 +1,261 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is responsible for writing the build context of an image (the Dockerfile and all artifacts) as a tar
+ * archive. The archive is never held in memory: it is written straight into the output stream it is given, walking
+ * directories while writing, so uploading a context of any size needs a constant amount of heap. All files are
+ * checked when they are added, so a missing file fails the build before anything is sent to docker.
+ * <p>
+ * Optionally, the archive is gzipped on all cores with a {@link ParallelGzipOutputStream}, which pays off when the
+ * link to docker is slower than the compression.
+ */
+public class BuildContext implements StreamingOutput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean compressed;
+    private long bytesWritten;
+    private long bytesSent;
+    private int compressionLevel;
+    private long writeNanos;
+
+    /**
+     * Adds a file or directory to the context. Directories are added recursively.
+     *
+     * @param file          the file or directory to add
+     * @param pathInContext the path of the file in the context
+     * @return this build context
+     * @throws FileNotFoundException when the file doesn't exist or can't be read
+     */
+    public BuildContext add(final File file, final String pathInContext) throws FileNotFoundException {
+        if (!file.exists() || !file.canRead()) {
+            throw new FileNotFoundException(String.format("Cannot read file %s. Are you sure it exists?",
+                    file.getAbsolutePath()));
+        }
+        entries.add(new Entry(file, pathInContext));
+        return this;
+    }
+
+    /**
+     * @param compressed whether to gzip the archive
+     * @return this build context
+     */
+    public BuildContext compressed(final boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the number of (uncompressed) bytes of the last archive written by {@link #write(OutputStream)}
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the number of bytes of the last archive that were sent, after compression
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return the gzip level the last archive ended with, or 0 when it wasn't compressed
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @return the time in nanoseconds it took to write the last archive, which includes the upload when writing to a
+     * request body
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * Writes the context as a (gzipped) tar archive to the passed stream. The stream is flushed but not closed.
+     *
+     * @param output the stream to write to, like the body of the build request
+     * @throws IOException when a file can't be read or the stream can't be written to
+     */
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        if (compressed) {
+            ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(output);
+            try {
+                bytesWritten = writeTar(gzip);
+                gzip.finish();
+            } catch (IOException | RuntimeException e) {
+                gzip.abort();
+                throw e;
+            }
+            bytesSent = gzip.getBytesOut();
+            compressionLevel = gzip.getLevel();
+        } else {
+            bytesWritten = writeTar(output);
+            bytesSent = bytesWritten;
+            compressionLevel = 0;
+        }
+        writeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Calculates a SHA-256 digest over the paths and contents of all files in the context and the passed extra values,
+     * like build arguments. Files in directories are visited in name order, so the digest only changes when the
+     * context does.
+     *
+     * @param extras extra values that influence the build, may contain nulls
+     * @return the digest as a hex string
+     * @throws IOException when a file can't be read
+     */
+    public String getDigest(final String... extras) throws IOException {
+        MessageDigest digest = createSha256Digest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Entry entry : entries) {
+            addToDigest(digest, entry.getFile(), entry.getPathInContext(), buffer);
+        }
+        for (String extra : extras) {
+            digest.update(String.valueOf(extra).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void addToDigest(final MessageDigest digest, final File file, final String fileNameAndPath,
+                                    final byte[] buffer) throws IOException {
+        if (file.isDirectory()) {
+            File[] filesInDirectory = file.listFiles();
+            if (filesInDirectory == null) {
+                throw new FileNotFoundException(String.format("Cannot list directory %s", file.getAbsolutePath()));
+            }
+            Arrays.sort(filesInDirectory);
+            String directoryPath = fileNameAndPath.endsWith("/") ? fileNameAndPath : fileNameAndPath + "/";
+            for (File fileInDirectory : filesInDirectory) {
+                addToDigest(digest, fileInDirectory, directoryPath + fileInDirectory.getName(), buffer);
+            }
+        } else {
+            digest.update(fileNameAndPath.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Long.toString(file.length()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (FileInputStream fis = new FileInputStream(file)) {
+                int read;
+                while ((read = fis.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    private static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JVM supports SHA-256", e);
+        }
+    }
+
+    private long writeTar(final OutputStream output) throws IOException {
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(output);
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+        for (Entry entry : entries) {
+            addToTar(tar, entry.getFile(), entry.getPathInContext());
+        }
+        tar.finish();
+        tar.flush();
+        return tar.getBytesWritten();
+    }
+
+    private static void addToTar(final TarArchiveOutputStream tar, final File file, final String fileNameAndPath)
+            throws IOException {
+        if (file.isDirectory()) {
+            File[] filesInDirectory = file.listFiles();
+            if (filesInDirectory == null) {
+                throw new FileNotFoundException(String.format("Cannot list directory %s", file.getAbsolutePath()));
+            }
+            String directoryPath = fileNameAndPath.endsWith("/") ? fileNameAndPath : fileNameAndPath + "/";
+            for (File fileInDirectory : filesInDirectory) {
+                addToTar(tar, fileInDirectory, directoryPath + fileInDirectory.getName());
+            }
+        } else {
+            ArchiveEntry entry = tar.createArchiveEntry(file, fileNameAndPath);
+            tar.putArchiveEntry(entry);
+            try (FileInputStream fis = new FileInputStream(file)) {
+                IOUtils.copy(fis, tar, BUFFER_SIZE);
+            }
+            tar.closeArchiveEntry();
+        }
+    }
+
+    /**
+     * A file or directory in the build context.
+     */
+    public static final class Entry {
+        private final File file;
+        private final String pathInContext;
+
+        private Entry(final File file, final String pathInContext) {
+            this.file = file;
+            this.pathInContext = pathInContext;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getPathInContext() {
+            return pathInContext;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * This class is responsible for keeping the last inspection of every container the provider started, so the ports of
+ * a container can be looked up without inspecting it again. An inspection is kept until the state of its container
+ * changes: when it's stopped, killed or removed, or when an event of the container was awaited.
+ */
+class ContainerInspectionCache {
+
+    private final Map<String, ContainerInspectionResult> inspections = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Keeps the inspection of a container that was just started.
+     */
+    void put(final String containerId, final ContainerInspectionResult inspection) {
+        inspections.put(containerId, inspection);
+    }
+
+    /**
+     * Gets the kept inspection of a container, or inspects it when there is none.
+     *
+     * @param containerId the id of the container
+     * @param inspector   inspects the container
+     * @return the inspection of the container
+     */
+    ContainerInspectionResult get(final String containerId,
+                                  final Function<String, ContainerInspectionResult> inspector) {
+        ContainerInspectionResult inspection = inspections.get(containerId);
+        if (inspection != null) {
+            hits.incrementAndGet();
+            return inspection;
+        }
+        misses.incrementAndGet();
+        inspection = inspector.apply(containerId);
+        inspections.put(containerId, inspection);
+        return inspection;
+    }
+
+    /**
+     * Forgets the inspection of a container whose state changed.
+     */
+    void invalidate(final String containerId) {
+        inspections.remove(containerId);
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+}
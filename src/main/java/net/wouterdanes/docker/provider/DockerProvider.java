@@ -21,14 +21,22 @@ import net.wouterdanes.docker.provider.model.ContainerCommitConfiguration;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.PushProgress;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
 import org.apache.maven.plugin.logging.Log;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 /**
  * This interface represents an implementation that provides Docker functionality. Examples are:
@@ -38,6 +46,8 @@ import java.util.List;
  *     <li>Remote (Boot2Docker) via TCP Socket</li>
  *     <li>tutum.co</li>
  * </ul>
+ * Providers that don't support everything can extend {@link AbstractDockerProvider}, which implements the methods that
+ * were added in version 5.1.0 with fallbacks.
  */
 public interface DockerProvider {
 
@@ -60,6 +70,19 @@ public interface DockerProvider {
      */
     void stopContainer(String containerId);
 
+    /**
+     * Stops a docker container, docker kills it when it didn't stop within the passed timeout
+     * @param containerId the Id of the container to stop
+     * @param timeout the number of seconds to give the container to stop
+     */
+    void stopContainer(String containerId, int timeout);
+
+    /**
+     * Kills a docker container right away, without giving it time to shut down
+     * @param containerId the Id of the container to kill
+     */
+    void killContainer(String containerId);
+
     /**
      * Delete a docker container
      * @param containerId the Id of the container to delete
@@ -80,6 +103,44 @@ public interface DockerProvider {
      */
     String buildImage(ImageBuildConfiguration image);
 
+    /**
+     * Builds a new Docker Image like {@link #buildImage(ImageBuildConfiguration)}, but writes the output of the build
+     * to the passed log instead of the console, so builds that run at the same time don't mix their output.
+     * @param image the image configuration to use
+     * @param buildLog the log to write the output of the build to
+     * @return the id of the new Docker Image
+     */
+    String buildImage(ImageBuildConfiguration image, Log buildLog);
+
+    /**
+     * Returns a digest over everything that goes into the build of an image: the Dockerfile, the contents of all
+     * artifacts, the build arguments and the name of the image. When the digest didn't change, neither did the image.
+     * @param image the image configuration to use
+     * @return the digest as a hex string
+     */
+    String getBuildContextDigest(ImageBuildConfiguration image);
+
+    /**
+     * Checks whether docker has the image with the passed id
+     * @param imageId the id of the image
+     * @return true when the image exists
+     */
+    boolean hasImage(String imageId);
+
+    /**
+     * Looks up the id of an image that docker has
+     * @param image the id or name of the image
+     * @return the id of the image, empty when docker doesn't have it
+     */
+    Optional<String> getImageId(String image);
+
+    /**
+     * Pulls an image from its registry, logging its progress while it runs
+     * @param image the name and optional tag of the image
+     * @return the report of the pull: how long it took and how many bytes were downloaded
+     */
+    PullProgress pullImage(String image);
+
     /**
      * Create a new image from a container's changes
      * @param configuration the configuration parameters
@@ -96,8 +157,23 @@ public interface DockerProvider {
     /**
      * Pushes an image from docker to a registry.
      * @param nameAndTag optional name and tag to be associated with pushed image
+     * @return the report of the push: which layers were pushed and the digest of the image in the registry
      */
-    void pushImage(String nameAndTag);
+    PushProgress pushImage(String nameAndTag);
+
+    /**
+     * Returns the digests of an image in the registries it was pushed to or pulled from.
+     * @param image the id or name of the image
+     * @return the digests, like <code>localhost:5000/app@sha256:0123abcd</code>
+     */
+    List<String> getRepoDigests(String image);
+
+    /**
+     * Asks the registry of an image which manifest digest a tag points to.
+     * @param nameAndTag the name and tag of the image, including its registry
+     * @return the digest, empty when the registry doesn't have the tag
+     */
+    Optional<String> getRegistryDigest(String nameAndTag);
 
     /**
      * Associates an image with a new repo/tag.
@@ -113,6 +189,44 @@ public interface DockerProvider {
      */
     String getLogs(String containerId);
 
+    /**
+     * Writes the logs of the specified container to files while they are downloaded, without loading them in memory
+     * @param containerId the Id of the container
+     * @param stdout the file to write stdout to
+     * @param stderr the file to write stderr to, may be the same file as stdout
+     */
+    void writeLogs(String containerId, Path stdout, Path stderr);
+
+    /**
+     * Follows the logs of a container until a line matches the passed pattern. Only new log frames are looked at, the
+     * logs aren't downloaded again and again.
+     * @param containerId the Id of the container
+     * @param pattern the pattern to find in a line of the logs
+     * @return a future that completes with true when a line matched, or with false when the container stopped before
+     * that. Cancelling it stops following the logs. It fails when the provider can't follow logs.
+     */
+    CompletableFuture<Boolean> awaitLogLine(String containerId, Pattern pattern);
+
+    /**
+     * Follows the logs of a container in the background and writes them to the passed channels as they arrive.
+     * @param containerId the Id of the container
+     * @param stdout the channel to write stdout to
+     * @param stderr the channel to write stderr to, may be the same channel as stdout
+     * @return a future that completes when the container stopped and all its logs were written. Cancelling it stops
+     * following the logs. It fails when the provider can't follow logs.
+     */
+    CompletableFuture<Void> tailLogs(String containerId, WritableByteChannel stdout, WritableByteChannel stderr);
+
+    /**
+     * Returns a future that completes when docker reports one of the passed events for a container, like
+     * {@link net.wouterdanes.docker.remoteapi.EventsService#DIE}. It completes right away when the event already
+     * happened. Providers that can't follow docker's events return a future that never completes.
+     * @param containerId the Id of the container
+     * @param events the events to wait for
+     * @return a future that completes with the event that happened
+     */
+    CompletableFuture<String> awaitContainerEvent(String containerId, String... events);
+
     /**
      * Sets the logger to use.
      * @param logger the Maven logger to use
@@ -136,4 +250,15 @@ public interface DockerProvider {
      * @param remoteRepositories the Maven remoteRepositories to use
      */
     void setRemoteRepositories(List<RemoteRepository> remoteRepositories);
+
+    /**
+     * Returns the metrics of the calls this provider made to docker so far, per endpoint of the remote api.
+     * @return the metrics, empty when the provider doesn't keep them
+     */
+    Optional<ApiMetrics> getApiMetrics();
+
+    /**
+     * Releases the resources held by this provider, like open http clients. The provider can't be used afterwards.
+     */
+    void close();
 }
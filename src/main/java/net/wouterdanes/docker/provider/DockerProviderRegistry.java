@@ -0,0 +1,208 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * This class is responsible for handing out long-lived {@link DockerProvider}s. There is one provider per provider
+ * name, docker endpoint and set of credentials. Providers are thread safe, so one provider can be shared by all
+ * goals that run during the build of a project. When the build finishes, the registry runs all tasks registered with
+ * {@link #onSessionEnd(Runnable)} and then closes all providers it handed out.
+ * <p>
+ * The end of the build is signalled by {@link #closeAll()}, which the plugin calls when the Maven session ends. A JVM
+ * shutdown hook is kept as a backstop, for builds where the plugin isn't loaded as an extension and that end is never
+ * signalled.
+ */
+public class DockerProviderRegistry {
+
+    private static final Set<DockerProviderRegistry> OPEN_REGISTRIES = ConcurrentHashMap.newKeySet();
+
+    private final Map<ProviderKey, DockerProvider> providers = new ConcurrentHashMap<>();
+    private final List<Runnable> sessionEndTasks = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean closing = new AtomicBoolean();
+    private final AtomicInteger createdClients = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile Thread shutdownHook;
+    private final Log log;
+
+    public DockerProviderRegistry(final Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Returns the provider for the passed name, the configured docker host and the passed credentials, creating it
+     * when it doesn't exist yet.
+     *
+     * @param providerName the name of the provider, see {@link DockerProviderSupplier}
+     * @param credentials  the credentials to use, may be null
+     * @param initializer  called once with a newly created provider, to set things like the repository system
+     * @return a shared {@link DockerProvider}
+     */
+    public DockerProvider getProvider(final String providerName, final Credentials credentials,
+                                      final Consumer<DockerProvider> initializer) {
+        if (closed) {
+            throw new IllegalStateException("The docker provider registry has already been closed");
+        }
+        ProviderKey key = new ProviderKey(providerName, getDockerApiRoot(), credentials);
+        return providers.computeIfAbsent(key, k -> {
+            DockerProvider provider = new DockerProviderSupplier(providerName).get();
+            provider.setCredentials(credentials);
+            initializer.accept(provider);
+            if (provider.getApiMetrics().isPresent()) {
+                // a provider that talks to the docker API has a client (and connections) of its own
+                createdClients.incrementAndGet();
+            }
+            track();
+            log.debug(String.format("Created docker provider '%s' for %s", providerName, k.dockerApiRoot));
+            return provider;
+        });
+    }
+
+    /**
+     * @return the metrics of the calls of all providers handed out so far, of the providers that keep them
+     */
+    public List<ApiMetrics> getApiMetrics() {
+        return providers.values().stream()
+                .map(DockerProvider::getApiMetrics)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the number of docker API clients the providers of this registry created during the build. Every client
+     * has its own connections (and, when TLS is enabled, its own parsed certificates), so this number should stay low.
+     *
+     * @return the number of created clients
+     */
+    public int getCreatedClientCount() {
+        return createdClients.get();
+    }
+
+    /**
+     * Registers a task to run when the build finishes, before the providers are closed.
+     *
+     * @param task the task to run, it can still use the providers of this registry
+     */
+    public void onSessionEnd(final Runnable task) {
+        sessionEndTasks.add(task);
+        track();
+    }
+
+    /**
+     * Closes all registries that handed out a provider or have a session end task and weren't closed yet. Called when
+     * the Maven session ends, so a long-lived JVM (like a Maven daemon) doesn't keep the connections, sockets and
+     * threads of the providers open from one build to the next.
+     */
+    public static void closeAll() {
+        for (DockerProviderRegistry registry : OPEN_REGISTRIES) {
+            registry.close();
+        }
+    }
+
+    /**
+     * Runs the session end tasks and closes all providers. Calling this method more than once has no effect.
+     */
+    public void close() {
+        if (!closing.compareAndSet(false, true)) {
+            return;
+        }
+        OPEN_REGISTRIES.remove(this);
+        removeShutdownHook();
+        for (Runnable task : sessionEndTasks) {
+            task.run();
+        }
+        closed = true;
+        providers.values().forEach(DockerProvider::close);
+        log.info(String.format("Closed %d docker provider(s), %d docker API client(s) were created during the build",
+                providers.size(), createdClients.get()));
+        providers.clear();
+    }
+
+    private synchronized void track() {
+        if (shutdownHook == null && !closing.get()) {
+            OPEN_REGISTRIES.add(this);
+            shutdownHook = new Thread(this::close, "docker-provider-registry-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    private synchronized void removeShutdownHook() {
+        if (shutdownHook == null || Thread.currentThread() == shutdownHook) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is already shutting down, the hook will find the registry closed
+        }
+    }
+
+    private static String getDockerApiRoot() {
+        return RemoteApiBasedDockerProvider.getDockerEndpoint(
+                RemoteApiBasedDockerProvider.getDockerHostFromEnvironment(),
+                RemoteApiBasedDockerProvider.getDockerPortFromEnvironment(),
+                RemoteApiBasedDockerProvider.getDockerSocketFromEnvironment());
+    }
+
+    private static final class ProviderKey {
+        private final String providerName;
+        private final String dockerApiRoot;
+        private final Credentials credentials;
+
+        private ProviderKey(final String providerName, final String dockerApiRoot, final Credentials credentials) {
+            this.providerName = providerName;
+            this.dockerApiRoot = dockerApiRoot;
+            this.credentials = credentials;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ProviderKey that = (ProviderKey) o;
+            return Objects.equals(providerName, that.providerName)
+                    && Objects.equals(dockerApiRoot, that.dockerApiRoot)
+                    && Objects.equals(credentials, that.credentials);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(providerName, dockerApiRoot, credentials);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.PushProgress;
+import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * This class is responsible for running the operations of a blocking {@link DockerProvider} on an executor. The
+ * transports of the providers are blocking, so every operation in flight takes a thread of the executor; callers
+ * don't need a thread of their own while they wait.
+ */
+class ExecutorAsyncDockerProvider implements AsyncDockerProvider {
+
+    private final DockerProvider provider;
+    private final Executor executor;
+
+    ExecutorAsyncDockerProvider(final DockerProvider provider, final Executor executor) {
+        this.provider = Objects.requireNonNull(provider);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public DockerProvider getDockerProvider() {
+        return provider;
+    }
+
+    @Override
+    public CompletableFuture<ContainerInspectionResult> startContainer(
+            final ContainerStartConfiguration configuration) {
+        return CompletableFuture.supplyAsync(() -> provider.startContainer(configuration), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> stopContainer(final String containerId, final int timeout) {
+        return CompletableFuture.runAsync(() -> provider.stopContainer(containerId, timeout), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteContainer(final String containerId) {
+        return CompletableFuture.runAsync(() -> provider.deleteContainer(containerId), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<ExposedPort>> getExposedPorts(final String containerId) {
+        return CompletableFuture.supplyAsync(() -> provider.getExposedPorts(containerId), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> buildImage(final ImageBuildConfiguration image, final Log buildLog) {
+        return CompletableFuture.supplyAsync(() -> provider.buildImage(image, buildLog), executor);
+    }
+
+    @Override
+    public CompletableFuture<PullProgress> pullImage(final String image) {
+        return CompletableFuture.supplyAsync(() -> provider.pullImage(image), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> tagImage(final String imageId, final String nameAndTag) {
+        return CompletableFuture.runAsync(() -> provider.tagImage(imageId, nameAndTag), executor);
+    }
+
+    @Override
+    public CompletableFuture<PushProgress> pushImage(final String nameAndTag) {
+        return CompletableFuture.supplyAsync(() -> provider.pushImage(nameAndTag), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeImage(final String imageId) {
+        return CompletableFuture.runAsync(() -> provider.removeImage(imageId), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> getLogs(final String containerId) {
+        return CompletableFuture.supplyAsync(() -> provider.getLogs(containerId), executor);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + provider + "}";
+    }
+}
@@ -0,0 +1,209 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.model.ImageInspectionResult;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * This class is responsible for knowing which images docker has during a build, so a container can be created from
+ * its image right away, or the image can be pulled first, without a failing create to find out. It's filled by one
+ * listing of the images at the first lookup and updated when the provider builds, pulls, tags or removes an image.
+ * <p>
+ * Images that are added or removed outside of the build are not noticed, so callers should still handle a missing
+ * image and tell the cache with {@link #removed(String)}. Pulls of the same image are coalesced: when an image is
+ * pulled while another thread pulls it already, the second thread waits for the first pull and gets its report.
+ */
+class ImagePresenceCache {
+
+    private static final String DOCKER_HUB = "docker.io/";
+    private static final String OFFICIAL_IMAGES = "library/";
+    private static final String ID_PREFIX = "sha256:";
+    private static final String UNKNOWN_ID = "";
+    private static final Pattern ID = Pattern.compile("(sha256:)?[0-9a-f]{12,64}");
+
+    private final Supplier<List<ImageInspectionResult>> listing;
+    private final Map<String, String> idsByName = new ConcurrentHashMap<>();
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<PullProgress>> pulls = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+    private volatile boolean available;
+
+    /**
+     * @param listing lists the images docker has, it's called once at the first lookup
+     */
+    ImagePresenceCache(final Supplier<List<ImageInspectionResult>> listing) {
+        this.listing = listing;
+    }
+
+    /**
+     * Tells whether docker has an image.
+     *
+     * @param image the name, name and tag, or (a prefix of) the id of the image
+     * @return whether docker has the image, empty when the images could not be listed
+     */
+    Optional<Boolean> isPresent(final String image) {
+        if (!load()) {
+            return Optional.empty();
+        }
+        if (idsByName.containsKey(normalize(image))) {
+            return Optional.of(true);
+        }
+        if (ID.matcher(image).matches()) {
+            String id = stripIdPrefix(image);
+            return Optional.of(ids.stream().anyMatch(known -> known.startsWith(id)));
+        }
+        return Optional.of(false);
+    }
+
+    /**
+     * Records that docker has an image, after it was built, committed or tagged.
+     *
+     * @param imageId the id of the image
+     * @param name    the name and tag the image got, if any
+     */
+    void added(final String imageId, final Optional<String> name) {
+        String id = stripIdPrefix(imageId);
+        ids.add(id);
+        if (name.isPresent()) {
+            idsByName.put(normalize(name.get()), id);
+        }
+    }
+
+    /**
+     * Records that docker no longer has an image, along with all the names that pointed to the same id.
+     *
+     * @param image the name or id of the image
+     */
+    void removed(final String image) {
+        String id = idsByName.remove(normalize(image));
+        if (id == null && ID.matcher(image).matches()) {
+            id = stripIdPrefix(image);
+        }
+        if (id != null && !UNKNOWN_ID.equals(id)) {
+            String removedId = id;
+            ids.removeIf(known -> known.startsWith(removedId));
+            idsByName.values().removeIf(known -> known.startsWith(removedId));
+        }
+    }
+
+    /**
+     * Pulls an image, or waits for the pull of another thread when that image is pulled already. The image is
+     * recorded as present when the pull reported no error.
+     *
+     * @param image  the name and optional tag of the image
+     * @param puller pulls the image
+     * @return the report of the pull
+     */
+    PullProgress pull(final String image, final Function<String, PullProgress> puller) {
+        String name = normalize(image);
+        CompletableFuture<PullProgress> pull = new CompletableFuture<>();
+        CompletableFuture<PullProgress> running = pulls.putIfAbsent(name, pull);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            PullProgress progress = puller.apply(image);
+            if (!progress.getError().isPresent()) {
+                idsByName.putIfAbsent(name, UNKNOWN_ID);
+            }
+            pull.complete(progress);
+            return progress;
+        } catch (RuntimeException e) {
+            pull.completeExceptionally(e);
+            throw e;
+        } finally {
+            pulls.remove(name, pull);
+        }
+    }
+
+    private boolean load() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    try {
+                        for (ImageInspectionResult image : listing.get()) {
+                            String id = stripIdPrefix(image.getId());
+                            ids.add(id);
+                            for (String name : image.getRepoTags()) {
+                                idsByName.putIfAbsent(normalize(name), id);
+                            }
+                            for (String name : image.getRepoDigests()) {
+                                idsByName.putIfAbsent(normalize(name), id);
+                            }
+                        }
+                        available = true;
+                    } catch (DockerException e) {
+                        available = false;
+                    }
+                    loaded = true;
+                }
+            }
+        }
+        return available;
+    }
+
+    private static PullProgress await(final CompletableFuture<PullProgress> pull) {
+        try {
+            return pull.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Brings a name in the form docker lists it: without the docker hub registry and the "library" repository of
+     * official images, and with the "latest" tag when it has no tag or digest.
+     */
+    static String normalize(final String image) {
+        String name = image;
+        if (name.startsWith(DOCKER_HUB)) {
+            name = name.substring(DOCKER_HUB.length());
+        }
+        if (name.startsWith(OFFICIAL_IMAGES)) {
+            name = name.substring(OFFICIAL_IMAGES.length());
+        }
+        String lastPart = name.substring(name.lastIndexOf('/') + 1);
+        if (!lastPart.contains(":") && !lastPart.contains("@") && !ID.matcher(name).matches()) {
+            name = name + ":latest";
+        }
+        return name;
+    }
+
+    private static String stripIdPrefix(final String id) {
+        String lowerCase = id.toLowerCase(Locale.ROOT);
+        return lowerCase.startsWith(ID_PREFIX) ? lowerCase.substring(ID_PREFIX.length()) : lowerCase;
+    }
+}
@@ -53,7 +53,7 @@ public class LocalDockerProvider extends RemoteApiBasedDockerProvider {
 
     @Override
     public List<ExposedPort> getExposedPorts(final String containerId) {
-        ContainerInspectionResult containerInspectionResult = getContainersService().inspectContainer(containerId);
+        ContainerInspectionResult containerInspectionResult = getContainerInspection(containerId);
         if (containerInspectionResult.getNetworkSettings().getPorts().isEmpty()) {
             return Collections.emptyList();
         }
@@ -0,0 +1,312 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip output stream that compresses on multiple cores, the way pigz does. The input is cut into blocks that are
+ * deflated independently (each primed with the last 32K of the block before it, so the ratio stays close to a single
+ * stream) and written out in order, so the result is one ordinary gzip stream.
+ * <p>
+ * The compression level adapts while writing: when the compressors can't keep up with the stream they write to, the
+ * level goes down, when writing to the stream is the bottleneck (a slow link to a remote docker), the level goes up to
+ * send fewer bytes.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int ADAPT_INTERVAL = 8;
+    private static final int INITIAL_LEVEL = 6;
+
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final OutputStream out;
+    private final int threads;
+    private final ExecutorService executor;
+    private final Deque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private byte[] dictionary;
+    private volatile int level = INITIAL_LEVEL;
+    private boolean finished;
+
+    private long bytesIn;
+    private long bytesOut;
+
+    private int windowBlocks;
+    private long windowIn;
+    private long windowCompressNanos;
+    private long windowWriteNanos;
+
+    /**
+     * Creates a stream that compresses on all available cores.
+     *
+     * @param out the stream to write the gzip stream to
+     */
+    public ParallelGzipOutputStream(final OutputStream out) {
+        this(out, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGzipOutputStream(final OutputStream out, final int threads) {
+        this.out = out;
+        this.threads = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(this.threads, this.threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "docker-gzip-" + THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (finished) {
+            throw new IOException("The gzip stream has already been finished");
+        }
+        if (bytesIn == 0 && bytesOut == 0) {
+            writeOut(GZIP_HEADER);
+        }
+        crc.update(b, off, len);
+        bytesIn += len;
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            int length = Math.min(remaining, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, offset, block, blockLength, length);
+            blockLength += length;
+            offset += length;
+            remaining -= length;
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses the pending input, waits for all blocks to be written and writes the gzip trailer. Doesn't close the
+     * underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            if (bytesIn == 0 && bytesOut == 0) {
+                writeOut(GZIP_HEADER);
+            }
+            submitBlock(true);
+            while (!pending.isEmpty()) {
+                drainOldestBlock();
+            }
+            byte[] trailer = new byte[8];
+            writeIntLittleEndian(trailer, 0, crc.getValue());
+            writeIntLittleEndian(trailer, 4, bytesIn);
+            writeOut(trailer);
+            out.flush();
+        } finally {
+            finished = true;
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops compressing without writing anything more, for when the stream can't be completed anyway.
+     */
+    public void abort() {
+        finished = true;
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of uncompressed bytes written to this stream
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return the number of compressed bytes written to the underlying stream, including gzip header and trailer
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return the compression level used for the last block
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] blockDictionary = dictionary;
+        final int blockLevel = level;
+        if (!last) {
+            dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+            block = new byte[BLOCK_SIZE];
+            blockLength = 0;
+        }
+        pending.addLast(executor.submit(() -> deflate(data, length, blockDictionary, blockLevel, last)));
+        // keeps memory bounded: a few blocks per thread in flight, the rest waits until the output catches up
+        while (pending.size() > threads * 2) {
+            drainOldestBlock();
+        }
+    }
+
+    private void drainOldestBlock() throws IOException {
+        CompressedBlock compressed;
+        try {
+            compressed = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing the build context");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress a block of the build context", e.getCause());
+        }
+        long start = System.nanoTime();
+        writeOut(compressed.data);
+        long writeNanos = System.nanoTime() - start;
+        adaptLevel(compressed.inputLength, compressed.nanos, writeNanos);
+    }
+
+    /**
+     * Compares how fast the compressors produce output with how fast the underlying stream takes it, and moves the
+     * level one step in the direction of the bottleneck every few blocks.
+     */
+    private void adaptLevel(final int inputLength, final long compressNanos, final long writeNanos) {
+        windowBlocks++;
+        windowIn += inputLength;
+        windowCompressNanos += compressNanos;
+        windowWriteNanos += writeNanos;
+        if (windowBlocks < ADAPT_INTERVAL) {
+            return;
+        }
+        double compressionRate = (double) windowIn * threads / Math.max(1, windowCompressNanos);
+        double outputRate = (double) windowIn / Math.max(1, windowWriteNanos);
+        if (outputRate < compressionRate / 2 && level < Deflater.BEST_COMPRESSION) {
+            level++;
+        } else if (outputRate > compressionRate && level > Deflater.BEST_SPEED) {
+            level--;
+        }
+        windowBlocks = 0;
+        windowIn = 0;
+        windowCompressNanos = 0;
+        windowWriteNanos = 0;
+    }
+
+    private void writeOut(final byte[] bytes) throws IOException {
+        out.write(bytes);
+        bytesOut += bytes.length;
+    }
+
+    private static CompressedBlock deflate(final byte[] data, final int length, final byte[] dictionary,
+                                           final int level, final boolean last) {
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[BLOCK_SIZE / 2];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+            } else {
+                // a sync flush ends the block on a byte boundary, so the blocks can simply be concatenated
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return new CompressedBlock(compressed.toByteArray(), length, System.nanoTime() - start);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeIntLittleEndian(final byte[] bytes, final int offset, final long value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static final class CompressedBlock {
+        private final byte[] data;
+        private final int inputLength;
+        private final long nanos;
+
+        private CompressedBlock(final byte[] data, final int inputLength, final long nanos) {
+            this.data = data;
+            this.inputLength = inputLength;
+            this.nanos = nanos;
+        }
+    }
+}
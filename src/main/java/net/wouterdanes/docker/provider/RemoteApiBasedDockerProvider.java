@@ -20,22 +20,28 @@ package net.wouterdanes.docker.provider;
 import net.wouterdanes.docker.provider.model.*;
 import net.wouterdanes.docker.remoteapi.BaseService;
 import net.wouterdanes.docker.remoteapi.ContainersService;
+import net.wouterdanes.docker.remoteapi.EventsService;
 import net.wouterdanes.docker.remoteapi.ImagesService;
+import net.wouterdanes.docker.remoteapi.LogDemultiplexer;
+import net.wouterdanes.docker.remoteapi.LogLineScanner;
 import net.wouterdanes.docker.remoteapi.MiscService;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.PushProgress;
+import net.wouterdanes.docker.remoteapi.RegistryClient;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.exception.ImageNotFoundException;
 import net.wouterdanes.docker.remoteapi.exception.MavenArtifactNotFoundException;
 import net.wouterdanes.docker.remoteapi.model.ContainerCreateRequest;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerStartRequest;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
+import net.wouterdanes.docker.remoteapi.transport.DockerTransport;
 import net.wouterdanes.docker.remoteapi.util.DockerHostFromEnvironmentSupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerHostFromPropertySupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerPortFromEnvironmentSupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerPortFromPropertySupplier;
-import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.archivers.ArchiveOutputStream;
-import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.apache.commons.compress.utils.IOUtils;
+import net.wouterdanes.docker.remoteapi.util.DockerSocketFromEnvironmentSupplier;
 import org.apache.maven.plugin.logging.Log;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
@@ -45,24 +51,43 @@ import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 
+import javax.ws.rs.ProcessingException;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
 
     private final String host;
     private final int port;
+    private final Optional<Path> socket;
 
+    private final DockerTransport transport;
     private final ContainersService containersService;
     private final ImagesService imagesService;
     private final MiscService miscService;
+    private final EventsService eventsService;
+    private final RegistryClient registryClient = new RegistryClient(REGISTRY_TIMEOUT_MILLIS);
+    private final ImagePresenceCache images;
+    private final ContainerInspectionCache inspections = new ContainerInspectionCache();
 
     private final Set<BaseService> services;
 
     private RepositorySystem repositorySystem;
     private RepositorySystemSession repositorySystemSession;
     private List<RemoteRepository> remoteRepositories;
-    private Log log;
+    private volatile Log log;
 
     private static final int DEFAULT_DOCKER_PORT = 2375;
     private static final String DEFAULT_DOCKER_HOST = "127.0.0.1";
@@ -71,9 +96,13 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
     public static final String DOCKER_PORT_PROPERTY = "docker.port";
 
     public static final String TCP_PROTOCOL = "tcp";
+    public static final String UNIX_PROTOCOL = "unix";
+
+    private static final long PULL_PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int REGISTRY_TIMEOUT_MILLIS = 10000;
 
     public RemoteApiBasedDockerProvider() {
-        this(getDockerHostFromEnvironment(), getDockerPortFromEnvironment());
+        this(getDockerHostFromEnvironment(), getDockerPortFromEnvironment(), getDockerSocketFromEnvironment());
     }
 
     @Override
@@ -81,48 +110,174 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         for (BaseService service : services) {
             service.setCredentials(credentials);
         }
+        registryClient.setCredentials(credentials);
     }
 
     @Override
     public void stopContainer(final String containerId) {
+        inspections.invalidate(containerId);
         getContainersService().stopContainer(containerId);
     }
 
+    @Override
+    public void stopContainer(final String containerId, final int timeout) {
+        inspections.invalidate(containerId);
+        getContainersService().stopContainer(containerId, timeout);
+    }
+
+    @Override
+    public void killContainer(final String containerId) {
+        inspections.invalidate(containerId);
+        getContainersService().killContainer(containerId);
+    }
+
     @Override
     public void deleteContainer(final String containerId) {
+        inspections.invalidate(containerId);
         getContainersService().deleteContainer(containerId);
     }
 
     @Override
     public String buildImage(final ImageBuildConfiguration image) {
-        byte[] bytes = getTgzArchiveForFiles(image);
-        return miscService.buildImage(bytes, Optional.ofNullable(image.getNameAndTag()), Optional.ofNullable(image.getBuildArguments()));
+        BuildContext buildContext = getBuildContext(image, log).compressed(image.isCompressBuildContext());
+        String imageId = miscService.buildImage(buildContext, Optional.ofNullable(image.getNameAndTag()),
+                Optional.ofNullable(image.getBuildArguments()));
+        logUpload(image, buildContext, log);
+        images.added(imageId, Optional.ofNullable(image.getNameAndTag()));
+        return imageId;
+    }
+
+    @Override
+    public String buildImage(final ImageBuildConfiguration image, final Log buildLog) {
+        BuildContext buildContext = getBuildContext(image, buildLog).compressed(image.isCompressBuildContext());
+        LineConsumer output = new LineConsumer(buildLog::info);
+        LineConsumer errors = new LineConsumer(buildLog::error);
+        try {
+            String imageId = miscService.buildImage(buildContext, Optional.ofNullable(image.getNameAndTag()),
+                    Optional.ofNullable(image.getBuildArguments()), output, errors);
+            images.added(imageId, Optional.ofNullable(image.getNameAndTag()));
+            return imageId;
+        } finally {
+            output.flush();
+            errors.flush();
+            logUpload(image, buildContext, buildLog);
+        }
+    }
+
+    @Override
+    public String getBuildContextDigest(final ImageBuildConfiguration image) {
+        try {
+            return getBuildContext(image, log).getDigest(image.getBuildArguments(), image.getNameAndTag());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the build context", e);
+        }
+    }
+
+    @Override
+    public boolean hasImage(final String imageId) {
+        return images.isPresent(imageId).orElseGet(() -> getImagesService().hasImage(imageId));
+    }
+
+    @Override
+    public Optional<String> getImageId(final String image) {
+        try {
+            return Optional.of(getImagesService().inspectImage(image).getId());
+        } catch (ImageNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Pulls an image, or waits for the pull that is running already when another thread pulls the same image.
+     */
+    @Override
+    public PullProgress pullImage(final String image) {
+        return images.pull(image, this::pullFromRegistry);
+    }
+
+    private PullProgress pullFromRegistry(final String image) {
+        long[] lastReport = {System.nanoTime()};
+        PullProgress report = imagesService.pullImage(image, progress -> {
+            long now = System.nanoTime();
+            if (log != null && now - lastReport[0] >= PULL_PROGRESS_INTERVAL_NANOS) {
+                lastReport[0] = now;
+                log.info(describePullProgress(progress));
+            }
+        });
+        if (log != null) {
+            if (report.getError().isPresent()) {
+                log.error(String.format("Pulling image %s failed: %s", image, report.getError().get()));
+            }
+            log.info(String.format(Locale.ROOT, "Pulled image %s in %.1f sec.: %.1f MB in %d layer(s) at %.1f MB/s",
+                    image, report.getElapsedNanos() / 1e9, toMegabytes(report.getBytesDownloaded()),
+                    report.getLayers().size(), toMegabytes(report.getBytesPerSecond())));
+        }
+        return report;
+    }
+
+    private static String describePullProgress(final PullProgress progress) {
+        String eta = progress.getEtaSeconds()
+                .map(seconds -> seconds + " sec.")
+                .orElse("unknown");
+        return String.format(Locale.ROOT, "Pulling image %s: %.1f of %.1f MB at %.1f MB/s, ETA %s, %d of %d " +
+                        "layer(s) done", progress.getImage(), toMegabytes(progress.getBytesDownloaded()),
+                toMegabytes(progress.getBytesTotal()), toMegabytes(progress.getBytesPerSecond()), eta,
+                progress.getLayersDone(), progress.getLayers().size());
+    }
+
+    private static double toMegabytes(final double bytes) {
+        return bytes / (1024.0 * 1024.0);
     }
 
     @Override
     public String commitContainer(final ContainerCommitConfiguration configuration) {
-        return miscService.commitContainer(
+        String imageId = miscService.commitContainer(
                 configuration.getId(),
                 Optional.ofNullable(configuration.getRepo()),
                 Optional.ofNullable(configuration.getTag()),
                 Optional.ofNullable(configuration.getComment()),
                 Optional.ofNullable(configuration.getAuthor())
         );
+        images.added(imageId, Optional.ofNullable(configuration.getRepo())
+                .map(repo -> configuration.getTag() != null ? repo + ":" + configuration.getTag() : repo));
+        return imageId;
     }
 
     @Override
     public void removeImage(final String imageId) {
         getImagesService().deleteImage(imageId);
+        images.removed(imageId);
+    }
+
+    @Override
+    public PushProgress pushImage(final String nameAndTag) {
+        return getImagesService().pushImage(nameAndTag);
+    }
+
+    @Override
+    public List<String> getRepoDigests(final String image) {
+        return getImagesService().inspectImage(image).getRepoDigests();
+    }
+
+    @Override
+    public Optional<String> getRegistryDigest(final String nameAndTag) {
+        try {
+            return registryClient.getManifestDigest(nameAndTag);
+        } catch (IOException e) {
+            throw new DockerException(String.format("Cannot get the digest of %s from its registry: %s", nameAndTag,
+                    e.getMessage()), e);
+        }
     }
 
     @Override
-    public void pushImage(final String nameAndTag) {
-        getImagesService().pushImage(nameAndTag);
+    public Optional<ApiMetrics> getApiMetrics() {
+        return Optional.of(transport.getMetrics());
     }
 
     @Override
     public void tagImage(final String imageId, final String nameAndTag) {
         getImagesService().tagImage(imageId, nameAndTag);
+        images.added(imageId, Optional.of(nameAndTag));
     }
 
     @Override
@@ -138,6 +293,73 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         return containersService.getLogs(containerId);
     }
 
+    @Override
+    public void writeLogs(final String containerId, final Path stdout, final Path stderr) {
+        boolean separateStderr = stderr != null && !stderr.equals(stdout);
+        try (InputStream logs = containersService.getLogStream(containerId);
+             FileChannel out = FileChannel.open(stdout, CREATE, TRUNCATE_EXISTING, WRITE);
+             FileChannel err = separateStderr ? FileChannel.open(stderr, CREATE, TRUNCATE_EXISTING, WRITE) : null) {
+            new LogDemultiplexer().demultiplex(logs, out, separateStderr ? err : out);
+        } catch (IOException e) {
+            throw new DockerException(String.format("Cannot write the logs of container %s", containerId), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> awaitLogLine(final String containerId, final Pattern pattern) {
+        Matcher matcher = pattern.matcher("");
+        return followLogs(containerId, logs -> new LogLineScanner(line -> matcher.reset(line).find()).scan(logs));
+    }
+
+    @Override
+    public CompletableFuture<Void> tailLogs(final String containerId, final WritableByteChannel stdout,
+                                            final WritableByteChannel stderr) {
+        return followLogs(containerId, logs -> {
+            new LogDemultiplexer().demultiplex(logs, stdout, stderr);
+            return null;
+        });
+    }
+
+    /**
+     * Follows the logs of a container on a daemon thread of its own, and completes the returned future with what the
+     * reader returns.
+     * <p>
+     * The follower isn't a task of the goal's TaskScope on purpose: a followed log tail outlives the start-containers
+     * goal and is only stopped by the stop-containers goal, while closing a scope interrupts its tasks when its goal
+     * ends. The follower is ended by cancelling the future or closing the provider, both close the stream it reads.
+     */
+    private <T> CompletableFuture<T> followLogs(final String containerId, final LogReader<T> reader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        InputStream logs;
+        try {
+            logs = containersService.followLogs(containerId, 0);
+        } catch (DockerException | ProcessingException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        // cancelling the future closes the stream, which ends the blocked read of the follower
+        result.whenComplete((value, e) -> closeQuietly(logs));
+        Thread follower = new Thread(() -> {
+            try {
+                result.complete(reader.read(logs));
+            } catch (IOException | ProcessingException e) {
+                result.completeExceptionally(e);
+            }
+        }, "docker-logs-" + containerId);
+        follower.setDaemon(true);
+        follower.start();
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<String> awaitContainerEvent(final String containerId, final String... events) {
+        // subscribes again when the stream of events ended since the last container was started
+        followEvents();
+        CompletableFuture<String> event = eventsService.awaitEvent(containerId, events);
+        event.thenAccept(ignored -> inspections.invalidate(containerId));
+        return event;
+    }
+
     @Override
     public void setLogger(final Log logger) {
         this.log = logger;
@@ -158,15 +380,42 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         this.remoteRepositories = remoteRepositories;
     }
 
+    @Override
+    public void close() {
+        for (BaseService service : services) {
+            service.close();
+        }
+        transport.close();
+        if (log != null) {
+            log.info(String.format("Connections to docker at %s: %s", getDockerEndpoint(host, port, socket),
+                    transport.getStatistics()));
+            log.debug(String.format("Container inspections: %d reused from the start of the container, %d requested "
+                    + "from docker", inspections.getHits(), inspections.getMisses()));
+        }
+    }
+
     protected RemoteApiBasedDockerProvider(final String host, final int port) {
+        this(host, port, Optional.empty());
+    }
+
+    /**
+     * Creates a provider that talks to docker over the passed unix socket, or over tcp on the passed host and port
+     * when there is no socket. The host is still used to reach the ports published by containers.
+     */
+    protected RemoteApiBasedDockerProvider(final String host, final int port, final Optional<Path> socket) {
         this.host = host;
         this.port = port;
-        String dockerApiRoot = String.format("%s:%s", host, port);
-        containersService = new ContainersService(dockerApiRoot);
-        imagesService = new ImagesService(dockerApiRoot);
-        miscService = new MiscService(dockerApiRoot);
+        this.socket = socket;
+        transport = socket.isPresent()
+                ? DockerTransport.forUnixSocket(socket.get())
+                : DockerTransport.forApiRoot(String.format("%s:%s", host, port));
+        containersService = new ContainersService(transport);
+        imagesService = new ImagesService(transport);
+        miscService = new MiscService(transport);
+        eventsService = new EventsService(transport);
+        images = new ImagePresenceCache(imagesService::listImages);
         services = new HashSet<>();
-        register(containersService, imagesService, miscService);
+        register(containersService, imagesService, miscService, eventsService);
     }
 
     protected ContainerInspectionResult startContainer(ContainerStartConfiguration configuration,
@@ -178,18 +427,71 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
                 .withHostname(configuration.getHostname())
                 .withMacAddress(configuration.getMacAddress());
 
+        followEvents();
+        // go straight to pulling when the image is known to be missing, a create that fails costs a round trip
+        boolean pulled = false;
+        if (!images.isPresent(imageId).orElse(true)) {
+            log.info(String.format("Pulling image %s...", imageId));
+            pullImage(imageId);
+            pulled = true;
+        }
         String containerId;
         try {
             containerId = containersService.createContainer(createRequest);
         } catch (ImageNotFoundException e) {
+            images.removed(imageId);
+            if (pulled) {
+                throw e;
+            }
             log.info(String.format("Pulling image %s...", imageId));
-            imagesService.pullImage(imageId);
+            pullImage(imageId);
             containerId = containersService.createContainer(createRequest);
         }
 
         containersService.startContainer(containerId, startRequest);
+        ContainerInspectionResult inspection = containersService.inspectContainer(containerId);
+        // the ports are published when the container starts, so this inspection can be reused to look them up
+        inspections.put(containerId, inspection);
+        return inspection;
+    }
+
+    /**
+     * Gets the inspection of a container, reusing the one of its start when the container didn't change since.
+     *
+     * @param containerId the id of the container
+     * @return the inspection of the container
+     */
+    protected ContainerInspectionResult getContainerInspection(final String containerId) {
+        return inspections.get(containerId, id -> {
+            if (log != null) {
+                log.debug(String.format("Inspecting container %s, its inspection of the start can't be reused", id));
+            }
+            return containersService.inspectContainer(id);
+        });
+    }
+
+    /**
+     * Subscribes to docker's events before the first container is started, so no event of a started container is
+     * missed. When that fails, the futures of {@link #awaitContainerEvent(String, String...)} never complete and
+     * callers only notice a container died when they poll it. When the stream of events ends, those futures fail.
+     */
+    private void followEvents() {
+        try {
+            eventsService.subscribe();
+        } catch (DockerException e) {
+            if (log != null) {
+                log.warn("Cannot follow docker events, containers that stop during startup won't be noticed right "
+                        + "away: " + e.getMessage());
+            }
+        }
+    }
 
-        return containersService.inspectContainer(containerId);
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // nothing left to do with it
+        }
     }
 
     protected ContainersService getContainersService() {
@@ -212,19 +514,35 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         return port;
     }
 
-    private byte[] getTgzArchiveForFiles(final ImageBuildConfiguration image) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (
-            TarArchiveOutputStream tar = new TarArchiveOutputStream(baos)
-        ) {
-            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
-            addToTar(tar, image.getDockerFile(), "Dockerfile");
+    private static void logUpload(final ImageBuildConfiguration image, final BuildContext buildContext,
+                                  final Log log) {
+        if (log == null || buildContext.getWriteNanos() == 0) {
+            return;
+        }
+        double megabytesSent = buildContext.getBytesSent() / (1024.0 * 1024.0);
+        double seconds = Math.max(buildContext.getWriteNanos(), 1) / 1e9;
+        if (buildContext.isCompressed()) {
+            log.info(String.format("Uploaded build context of image '%s': %.1f MB compressed to %.1f MB (%.0f%%, " +
+                            "gzip level %d) at %.1f MB/s", image.getId(),
+                    buildContext.getBytesWritten() / (1024.0 * 1024.0), megabytesSent,
+                    100.0 * buildContext.getBytesSent() / Math.max(buildContext.getBytesWritten(), 1),
+                    buildContext.getCompressionLevel(), megabytesSent / seconds));
+        } else {
+            log.debug(String.format("Uploaded build context of image '%s': %.1f MB at %.1f MB/s", image.getId(),
+                    megabytesSent, megabytesSent / seconds));
+        }
+    }
+
+    private BuildContext getBuildContext(final ImageBuildConfiguration image, final Log log) {
+        BuildContext buildContext = new BuildContext();
+        try {
+            buildContext.add(image.getDockerFile(), "Dockerfile");
 
             if (image.getArtifacts() != null) {
                 for (Artifact artifact : image.getArtifacts()) {
                     File file = artifact.getFile();
                     String pathInTar = artifact.getDest().orElse(file.getName());
-                    addToTar(tar, file, pathInTar);
+                    buildContext.add(file, pathInTar);
                 }
             }
 
@@ -247,51 +565,82 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
                     log.debug("Resolved artifact " + mavenArtifact.getDependency() + " to " + result.getArtifact().getFile() + " from " + result.getRepository());
 
                     String pathInTar = mavenArtifact.getDest().orElse(result.getArtifact().getFile().getName());
-                    addToTar(tar, result.getArtifact().getFile(), pathInTar);
+                    buildContext.add(result.getArtifact().getFile(), pathInTar);
                 }
             }
-
-            tar.flush();
-            baos.flush();
         } catch (IOException e) {
             throw new IllegalStateException("Unable to create output archive", e);
         }
-        return baos.toByteArray();
-    }
-
-    private static void addToTar(ArchiveOutputStream tar, File file, String fileNameAndPath) throws IOException {
-        if (!file.exists() || !file.canRead()) {
-            throw new FileNotFoundException(String.format("Cannot read file %s. Are you sure it exists?",
-                    file.getAbsolutePath()));
-        }
-        if (file.isDirectory()) {
-            for (File fileInDirectory : file.listFiles()) {
-                if (!fileNameAndPath.endsWith("/")) {
-                    fileNameAndPath = fileNameAndPath + "/";
-                }
-                addToTar(tar, fileInDirectory, fileNameAndPath + fileInDirectory.getName());
-            }
-        } else {
-            ArchiveEntry entry = tar.createArchiveEntry(file, fileNameAndPath);
-            tar.putArchiveEntry(entry);
-            try (FileInputStream fis = new FileInputStream(file)) {
-                IOUtils.copy(fis, tar);
-            }
-            tar.closeArchiveEntry();
-        }
+        return buildContext;
     }
 
-    private static Integer getDockerPortFromEnvironment() {
+    static Integer getDockerPortFromEnvironment() {
         return DockerPortFromPropertySupplier.INSTANCE.get()
                 .orElse(DockerPortFromEnvironmentSupplier.INSTANCE.get()
                         .orElse(DEFAULT_DOCKER_PORT)
                 );
     }
 
-    private static String getDockerHostFromEnvironment() {
+    /**
+     * Returns the unix socket to talk to docker on, but only when the docker host isn't overridden with the
+     * '{@value #DOCKER_HOST_PROPERTY}' property.
+     */
+    static Optional<Path> getDockerSocketFromEnvironment() {
+        if (DockerHostFromPropertySupplier.INSTANCE.get().isPresent()) {
+            return Optional.empty();
+        }
+        return DockerSocketFromEnvironmentSupplier.INSTANCE.get();
+    }
+
+    /**
+     * Returns a description of where the docker api lives, either unix://[path] or [host]:[port]
+     */
+    static String getDockerEndpoint(final String host, final int port, final Optional<Path> socket) {
+        return socket.map(path -> UNIX_PROTOCOL + "://" + path)
+                .orElse(String.format("%s:%s", host, port));
+    }
+
+    static String getDockerHostFromEnvironment() {
         return DockerHostFromPropertySupplier.INSTANCE.get()
                 .orElse(DockerHostFromEnvironmentSupplier.INSTANCE.get()
                         .orElse(DEFAULT_DOCKER_HOST)
                 );
     }
+
+    /**
+     * Cuts the pieces of build output docker sends into lines, to pass them to a log one line at a time.
+     */
+    private static final class LineConsumer implements Consumer<String> {
+        private final Consumer<String> lines;
+        private final StringBuilder pending = new StringBuilder();
+
+        private LineConsumer(final Consumer<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void accept(final String text) {
+            pending.append(text);
+            int lineBreak;
+            while ((lineBreak = pending.indexOf("\n")) >= 0) {
+                lines.accept(stripCarriageReturn(pending.substring(0, lineBreak)));
+                pending.delete(0, lineBreak + 1);
+            }
+        }
+
+        private void flush() {
+            if (pending.length() > 0) {
+                lines.accept(stripCarriageReturn(pending.toString()));
+                pending.setLength(0);
+            }
+        }
+
+        private static String stripCarriageReturn(final String line) {
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+    }
+
+    private interface LogReader<T> {
+        T read(InputStream logs) throws IOException;
+    }
 }
@@ -52,7 +52,7 @@ public class RemoteDockerProvider extends RemoteApiBasedDockerProvider {
 
     @Override
     public List<ExposedPort> getExposedPorts(final String containerId) {
-        ContainerInspectionResult containerInspectionResult = getContainersService().inspectContainer(containerId);
+        ContainerInspectionResult containerInspectionResult = getContainerInspection(containerId);
         if (containerInspectionResult.getNetworkSettings().getPorts().isEmpty()) {
             return Collections.emptyList();
         }
@@ -32,6 +32,7 @@ import net.wouterdanes.docker.remoteapi.model.ContainerLink;
 public class ContainerStartConfiguration {
 
     public static final int DEFAULT_STARTUP_TIMEOUT = 5 * 60;
+    public static final int DEFAULT_STOP_TIMEOUT = 10;
 
     private String image;
     private String id;
@@ -43,11 +44,21 @@ public class ContainerStartConfiguration {
      */
     private String waitForStartup;
 
+    /**
+     * Probes that all have to succeed before this container counts as started
+     */
+    private List<ReadinessProbe> readinessProbes;
+
     /**
      * The maximum time to wait for this container to start (seconds), default is 30 sec.
      */
     private int startupTimeout;
 
+    /**
+     * The time this container gets to stop before docker kills it (seconds), default is 10 sec.
+     */
+    private int stopTimeout;
+
     /**
      * Hostname to give to this container
      */
@@ -91,11 +102,24 @@ public class ContainerStartConfiguration {
         return this;
     }
 
+    public ContainerStartConfiguration withReadinessProbes(ReadinessProbe... probes) {
+        if (this.readinessProbes == null) {
+            this.readinessProbes = new ArrayList<>(probes.length);
+        }
+        Collections.addAll(this.readinessProbes, probes);
+        return this;
+    }
+
     public ContainerStartConfiguration withStartupTimeout(int timeout) {
         this.startupTimeout = timeout;
         return this;
     }
 
+    public ContainerStartConfiguration withStopTimeout(int timeout) {
+        this.stopTimeout = timeout;
+        return this;
+    }
+
     public ContainerStartConfiguration withEnv(Map<String, String> env) {
     	this.env = env;
     	return this;
@@ -139,7 +163,16 @@ public class ContainerStartConfiguration {
         return waitForStartup;
     }
 
+    public List<ReadinessProbe> getReadinessProbes() {
+        return readinessProbes != null ? Collections.unmodifiableList(readinessProbes)
+                : Collections.<ReadinessProbe>emptyList();
+    }
+
     public int getStartupTimeout() {
         return startupTimeout != 0 ? startupTimeout : DEFAULT_STARTUP_TIMEOUT;
     }
+
+    public int getStopTimeout() {
+        return stopTimeout != 0 ? stopTimeout : DEFAULT_STOP_TIMEOUT;
+    }
 }
@@ -46,6 +46,9 @@ public class ImageBuildConfiguration {
     @Parameter(defaultValue = "false")
     private boolean push;
 
+    @Parameter(defaultValue = "false")
+    private boolean compressBuildContext;
+
     @Parameter
     private String registry;
 
@@ -90,6 +93,14 @@ public class ImageBuildConfiguration {
         this.push = push;
     }
 
+    public boolean isCompressBuildContext() {
+        return compressBuildContext;
+    }
+
+    public void setCompressBuildContext(final boolean compressBuildContext) {
+        this.compressBuildContext = compressBuildContext;
+    }
+
     public String getRegistry() {
         return registry;
     }
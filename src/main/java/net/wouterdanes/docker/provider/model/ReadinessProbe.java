@@ -0,0 +1,198 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import java.util.Locale;
+
+/**
+ * This class is responsible for holding the configuration of a readiness probe: a check that has to succeed before a
+ * started container counts as started. A probe is tried again and again, with a growing interval between the tries,
+ * until it succeeds or its timeout runs out.
+ */
+public class ReadinessProbe {
+
+    public static final int DEFAULT_INTERVAL = 250;
+    public static final double DEFAULT_BACKOFF = 1.5;
+    public static final int DEFAULT_MAX_INTERVAL = 2000;
+
+    /**
+     * The kinds of probes
+     */
+    public enum Type {
+        /** Succeeds when a tcp connection to the port can be made */
+        TCP,
+        /** Succeeds when a GET request on the port returns the expected status */
+        HTTP,
+        /** Succeeds when docker reports the container healthy, needs a HEALTHCHECK in the image */
+        HEALTH
+    }
+
+    /**
+     * The kind of probe: tcp, http or health
+     */
+    private String type;
+
+    /**
+     * The port in the container to probe, like 8080 or 8080/tcp. Not used by health probes.
+     */
+    private String port;
+
+    /**
+     * The path to GET for http probes, default is /
+     */
+    private String path;
+
+    /**
+     * The http status that http probes expect, default is any 2xx status
+     */
+    private int status;
+
+    /**
+     * The time to wait after the first failed try (milliseconds), default is 250 ms.
+     */
+    private int interval;
+
+    /**
+     * The factor by which the interval grows after every failed try, default is 1.5
+     */
+    private double backoff;
+
+    /**
+     * The maximum time between two tries (milliseconds), default is 2000 ms.
+     */
+    private int maxInterval;
+
+    /**
+     * The maximum time for this probe to succeed (seconds), default is the startup timeout of the container.
+     */
+    private int timeout;
+
+    public ReadinessProbe withType(Type type) {
+        this.type = type.name();
+        return this;
+    }
+
+    /**
+     * Sets the type as it's written in the pom, it's only checked by {@link #getType()}.
+     */
+    public ReadinessProbe withType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public ReadinessProbe onPort(String port) {
+        this.port = port;
+        return this;
+    }
+
+    public ReadinessProbe withPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public ReadinessProbe expectingStatus(int status) {
+        this.status = status;
+        return this;
+    }
+
+    public ReadinessProbe withInterval(int interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    public ReadinessProbe withBackoff(double backoff) {
+        this.backoff = backoff;
+        return this;
+    }
+
+    public ReadinessProbe withMaxInterval(int maxInterval) {
+        this.maxInterval = maxInterval;
+        return this;
+    }
+
+    public ReadinessProbe withTimeout(int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @return the kind of probe
+     * @throws IllegalArgumentException when the configured type isn't tcp, http or health
+     */
+    public Type getType() {
+        if (type == null) {
+            throw new IllegalArgumentException("A readiness probe needs a type: tcp, http or health");
+        }
+        try {
+            return Type.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Unknown readiness probe type '%s', use tcp, http or health", type), e);
+        }
+    }
+
+    public String getPort() {
+        return port;
+    }
+
+    public String getPath() {
+        if (path == null) {
+            return "/";
+        }
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    /**
+     * @return the expected http status, or 0 for any 2xx status
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public int getInterval() {
+        return interval > 0 ? interval : DEFAULT_INTERVAL;
+    }
+
+    public double getBackoff() {
+        return backoff >= 1 ? backoff : DEFAULT_BACKOFF;
+    }
+
+    public int getMaxInterval() {
+        return maxInterval > 0 ? maxInterval : DEFAULT_MAX_INTERVAL;
+    }
+
+    /**
+     * @param defaultTimeout the timeout to use when none is configured
+     * @return the timeout in seconds
+     */
+    public int getTimeout(int defaultTimeout) {
+        return timeout > 0 ? timeout : defaultTimeout;
+    }
+
+    @Override
+    public String toString() {
+        switch (getType()) {
+            case HTTP:
+                return String.format("http probe on port %s%s", port, getPath());
+            case TCP:
+                return String.format("tcp probe on port %s", port);
+            default:
+                return "health probe";
+        }
+    }
+}
@@ -20,26 +20,22 @@ package net.wouterdanes.docker.remoteapi;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.exception.ImageNotFoundException;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
-import net.wouterdanes.docker.remoteapi.util.HttpsHelper;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import net.wouterdanes.docker.remoteapi.transport.DockerTransport;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status.Family;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.KeyStore;
-import java.security.Security;
 import java.util.Base64;
+import java.util.function.Supplier;
 
 /**
  * This class is responsible for holding the shared functionality of all Docker remoteapi services.
@@ -52,13 +48,22 @@ public abstract class BaseService {
     private static final String REGISTRY_AUTH_NULL_VALUE = "null";
 
     private static final String TARGET_DOCKER_API_VERSION = "v1.21";
-    private static final String ENV_DOCKER_TLS_VERIFY = "DOCKER_TLS_VERIFY";
 
     private final ObjectMapper objectMapper;
+    private final DockerTransport transport;
+    private final boolean ownsTransport;
     private final WebTarget serviceEndPoint;
-    private Credentials credentials = null;
+    private volatile Credentials credentials = null;
 
     public BaseService(String dockerApiRoot, String endPointPath) {
+        this(DockerTransport.forApiRoot(dockerApiRoot), true, endPointPath);
+    }
+
+    public BaseService(DockerTransport transport, String endPointPath) {
+        this(transport, false, endPointPath);
+    }
+
+    private BaseService(DockerTransport transport, boolean ownsTransport, String endPointPath) {
         objectMapper = new ObjectMapper();
         // Only send properties that are actually set, default values are often wrong
         objectMapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
@@ -66,11 +71,23 @@ public abstract class BaseService {
         DeserializationConfig deserializationConfig = objectMapper.getDeserializationConfig()
                 .without(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES);
         objectMapper.setDeserializationConfig(deserializationConfig);
-        serviceEndPoint = createDockerTarget(dockerApiRoot)
+        this.transport = transport;
+        this.ownsTransport = ownsTransport;
+        serviceEndPoint = transport.getRootTarget()
                 .path(TARGET_DOCKER_API_VERSION)
                 .path(endPointPath);
     }
 
+    /**
+     * Closes the transport of this service when the service created it itself. A transport that was passed in is
+     * owned by the caller, who should close it when all services using it are done.
+     */
+    public void close() {
+        if (ownsTransport) {
+            transport.close();
+        }
+    }
+
     public void setCredentials(Credentials credentials) {
         this.credentials = credentials;
     }
@@ -79,6 +96,36 @@ public abstract class BaseService {
         return serviceEndPoint;
     }
 
+    /**
+     * Gets a response that is read while docker is still writing it, see {@link DockerTransport#openStream(WebTarget)}.
+     *
+     * @param target the target to get
+     * @return the body of the response, closing it ends the request right away
+     */
+    protected InputStream openStream(WebTarget target) {
+        return execute(() -> transport.openStream(target));
+    }
+
+    /**
+     * Sends a request to docker. When no connection to docker came free in time, the request fails with a
+     * {@link DockerException} that says so; other failures to reach docker are passed on as they are.
+     *
+     * @param request sends the request and returns its response
+     * @return the response of the request
+     */
+    protected static <T> T execute(Supplier<T> request) {
+        try {
+            return request.get();
+        } catch (ProcessingException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof ConnectionPoolTimeoutException) {
+                    throw new DockerException(cause.getMessage(), e);
+                }
+            }
+            throw e;
+        }
+    }
+
     protected String getRegistryAuthHeaderValue() {
         if (credentials == null) {
             return REGISTRY_AUTH_NULL_VALUE;
@@ -125,48 +172,4 @@ public abstract class BaseService {
                 return new DockerException(statusInfo.getReasonPhrase(), cause);
         }
     }
-
-    private static WebTarget createDockerTarget(final String dockerApiRoot) {
-        String encrypted = System.getenv(ENV_DOCKER_TLS_VERIFY);
-        if (!"1".equals(encrypted)) {
-            return ClientBuilder.newClient()
-                    .target("http://" + dockerApiRoot);
-        }
-
-        Security.addProvider(new BouncyCastleProvider());
-
-        String certPath = System.getenv("DOCKER_CERT_PATH");
-        if (certPath == null) {
-            certPath = System.getProperty("USER_HOME") + File.separator + ".docker";
-        }
-
-        ensureThatCertificatesExist(certPath);
-
-        KeyStore keyStore;
-        KeyStore trustStore;
-        try {
-            keyStore = HttpsHelper.createKeyStore(certPath);
-            trustStore = HttpsHelper.createTrustStore(certPath);
-        } catch (Exception e) {
-            throw new DockerException("Can't load docker certificates", e);
-        }
-
-        return ClientBuilder.newBuilder()
-                .keyStore(keyStore, HttpsHelper.KEYSTORE_PWD)
-                .trustStore(trustStore)
-                .build()
-                .target("https://" + dockerApiRoot);
-    }
-
-    private static void ensureThatCertificatesExist(final String certPath) {
-        String[] files = {"ca.pem", "cert.pem", "key.pem"};
-        for (String file : files) {
-            Path path = Paths.get(certPath, file);
-            boolean exists = Files.exists(path);
-            if (!exists) {
-                throw new DockerException(String.format("%s not found in cert path (%s), make sure that ca.pem, " +
-                        "cert.pem and key.pem are available there.", file, certPath));
-            }
-        }
-    }
 }
@@ -23,15 +23,20 @@ import net.wouterdanes.docker.remoteapi.model.ContainerCreateRequest;
 import net.wouterdanes.docker.remoteapi.model.ContainerCreateResponse;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerStartRequest;
+import net.wouterdanes.docker.remoteapi.transport.DockerTransport;
 
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.Charset;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This class is responsible for talking to the Docker Remote API "containers" endpoint.<br> See <a
@@ -40,17 +45,23 @@ import java.nio.charset.Charset;
  */
 public class ContainersService extends BaseService {
 
+    public static final int DEFAULT_STOP_TIMEOUT = 10;
+
     public ContainersService(String dockerApiRoot) {
         super(dockerApiRoot, "/containers");
     }
 
+    public ContainersService(DockerTransport transport) {
+        super(transport, "/containers");
+    }
+
     public String createContainer(ContainerCreateRequest containerCreateRequest) {
         String createResponseStr;
         try {
-            createResponseStr = getServiceEndPoint()
+            createResponseStr = execute(() -> getServiceEndPoint()
                     .path("/create")
                     .request(MediaType.APPLICATION_JSON_TYPE)
-                    .post(Entity.entity(toJson(containerCreateRequest), MediaType.APPLICATION_JSON_TYPE), String.class);
+                    .post(Entity.entity(toJson(containerCreateRequest), MediaType.APPLICATION_JSON_TYPE), String.class));
         } catch (WebApplicationException e) {
             throw makeImageTargetingException(containerCreateRequest.getImage(), e);
         }
@@ -59,11 +70,11 @@ public class ContainersService extends BaseService {
     }
 
     public void deleteContainer(String id) {
-        Response response = getServiceEndPoint()
+        Response response = execute(() -> getServiceEndPoint()
                 .path(id)
                 .queryParam("v", 1)
                 .request()
-                .delete();
+                .delete());
 
         Response.StatusType statusInfo = response.getStatusInfo();
         response.close();
@@ -71,47 +82,84 @@ public class ContainersService extends BaseService {
         checkContainerTargetingResponse(id, statusInfo);
     }
 
+    /**
+     * Gets the logs a container wrote so far, stdout and stderr in the order they were written. The logs are
+     * streamed through a {@link LogDemultiplexer}, so only the text itself is kept in memory.
+     *
+     * @param containerId the id of the container
+     * @return the logs of the container
+     */
     public String getLogs(final String containerId) {
-        byte[] bytes = getServiceEndPoint()
+        ByteArrayOutputStream logs = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(logs);
+        try (InputStream in = getLogStream(containerId)) {
+            new LogDemultiplexer().demultiplex(in, channel, channel);
+        } catch (IOException e) {
+            throw new DockerException(String.format("Cannot read the logs of container %s", containerId), e);
+        }
+        return new String(logs.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens the log stream of a container: the logs it wrote since the passed time, followed by everything it writes
+     * until it stops. Use a {@link LogLineScanner} to read it.
+     *
+     * @param containerId the id of the container
+     * @param since       unix time in seconds of the oldest logs to return, 0 for all logs
+     * @return the multiplexed log stream, closing it stops following right away
+     */
+    public InputStream followLogs(final String containerId, final long since) {
+        return openLogStream(containerId, getServiceEndPoint()
                 .path(containerId)
                 .path("logs")
+                .queryParam("follow", 1)
                 .queryParam("stdout", 1)
                 .queryParam("stderr", 1)
-                .request("application/vnd.docker.raw-stream")
-                .get(byte[].class);
-
-        // To see how docker returns the logs and why it's parsed like this:
-        // http://docs.docker.com/v1.2/reference/api/docker_remote_api_v1.14/#attach-to-a-container
-        StringBuilder logs = new StringBuilder();
-        ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
-
-        while (bb.hasRemaining()) {
-            bb.position(bb.position() + 4);
-            int frameLength = Math.min(bb.getInt(), bb.remaining());
-            byte[] frame = new byte[frameLength];
-            bb.get(frame);
-            logs.append(new String(frame, Charset.forName("UTF-8")));
-        }
+                .queryParam("since", since));
+    }
+
+    /**
+     * Opens the log stream of a container with the logs it wrote so far, without loading them into memory. Use a
+     * {@link LogDemultiplexer} to write it somewhere.
+     *
+     * @param containerId the id of the container
+     * @return the multiplexed log stream, which ends after the last frame
+     */
+    public InputStream getLogStream(final String containerId) {
+        return openLogStream(containerId, getServiceEndPoint()
+                .path(containerId)
+                .path("logs")
+                .queryParam("stdout", 1)
+                .queryParam("stderr", 1));
+    }
 
-        return logs.toString();
+    private InputStream openLogStream(final String containerId, final WebTarget target) {
+        try {
+            return openStream(target);
+        } catch (WebApplicationException e) {
+            if (e.getResponse().getStatus() == 404) {
+                throw new ContainerNotFoundException(containerId);
+            }
+            throw new DockerException(e.getMessage(), e);
+        }
     }
 
     public ContainerInspectionResult inspectContainer(final String containerId) {
-        String json = getServiceEndPoint()
+        String json = execute(() -> getServiceEndPoint()
                 .path(containerId)
                 .path("json")
                 .request(MediaType.APPLICATION_JSON_TYPE)
-                .get(String.class);
+                .get(String.class));
 
         return toObject(json, ContainerInspectionResult.class);
     }
 
     public void killContainer(String id) {
-        Response response = getServiceEndPoint()
+        Response response = execute(() -> getServiceEndPoint()
                 .path(id)
                 .path("/kill")
                 .request()
-                .method(HttpMethod.POST);
+                .method(HttpMethod.POST));
 
         Response.StatusType statusInfo = response.getStatusInfo();
         response.close();
@@ -120,11 +168,11 @@ public class ContainersService extends BaseService {
     }
 
     public void startContainer(String id, ContainerStartRequest configuration) {
-        Response response = getServiceEndPoint()
+        Response response = execute(() -> getServiceEndPoint()
                 .path(id)
                 .path("/start")
                 .request()
-                .post(Entity.entity(toJson(configuration), MediaType.APPLICATION_JSON_TYPE));
+                .post(Entity.entity(toJson(configuration), MediaType.APPLICATION_JSON_TYPE)));
 
         Response.StatusType statusInfo = response.getStatusInfo();
         response.close();
@@ -133,12 +181,22 @@ public class ContainersService extends BaseService {
     }
 
     public void stopContainer(String id) {
-        Response response = getServiceEndPoint()
+        stopContainer(id, DEFAULT_STOP_TIMEOUT);
+    }
+
+    /**
+     * Stops a container, docker kills it when it didn't stop within the passed timeout.
+     *
+     * @param id      the id of the container
+     * @param timeout the number of seconds to wait for the container to stop
+     */
+    public void stopContainer(String id, int timeout) {
+        Response response = execute(() -> getServiceEndPoint()
                 .path(id)
                 .path("/stop")
-                .queryParam("t", 10)
+                .queryParam("t", timeout)
                 .request()
-                .method(HttpMethod.POST);
+                .method(HttpMethod.POST));
 
         Response.StatusType statusInfo = response.getStatusInfo();
         response.close();
@@ -0,0 +1,240 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonStreamParser;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.transport.DockerTransport;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class is responsible for following the Docker Remote API "events" endpoint. It holds one long-lived
+ * subscription and hands the container events it receives to the futures that wait for them, so waiting for a
+ * container doesn't need polling. The events of the last {@value #MAX_REMEMBERED_CONTAINERS} containers are
+ * remembered, so a future for an event that already happened completes right away.<br> See <a
+ * href="https://docs.docker.com/engine/reference/api/docker_remote_api_v1.21/#monitor-docker-s-events">
+ * https://docs.docker.com/engine/reference/api/docker_remote_api_v1.21/#monitor-docker-s-events</a>
+ */
+public class EventsService extends BaseService {
+
+    public static final String DIE = "die";
+    public static final String HEALTHY = "health_status: healthy";
+    public static final String UNHEALTHY = "health_status: unhealthy";
+
+    private static final int MAX_REMEMBERED_CONTAINERS = 256;
+    private static final int MAX_REMEMBERED_EVENTS = 16;
+
+    private final Object lock = new Object();
+    private final Map<String, List<String>> history = new LinkedHashMap<String, List<String>>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_REMEMBERED_CONTAINERS;
+        }
+    };
+    private final Map<String, List<Waiter>> waiters = new HashMap<>();
+    private boolean subscribed;
+    private volatile boolean closed;
+    private volatile InputStream subscription;
+
+    public EventsService(final String dockerApiRoot) {
+        super(dockerApiRoot, "/events");
+    }
+
+    public EventsService(final DockerTransport transport) {
+        super(transport, "/events");
+    }
+
+    /**
+     * Subscribes to the events of the docker daemon, unless there is a subscription already. Returns once docker has
+     * accepted the subscription, so events of containers that are started after this call are never missed. When the
+     * stream of events ends, the waiting futures fail and the next call subscribes again.
+     *
+     * @throws DockerException when docker doesn't accept the subscription
+     */
+    public void subscribe() {
+        synchronized (lock) {
+            if (subscribed || closed) {
+                return;
+            }
+            subscribed = true;
+        }
+        InputStream events;
+        try {
+            events = openStream(getServiceEndPoint());
+        } catch (WebApplicationException | ProcessingException | DockerException e) {
+            synchronized (lock) {
+                subscribed = false;
+            }
+            throw new DockerException("Cannot subscribe to docker events", e);
+        }
+        subscription = events;
+        // not a task of a goal: the subscription serves every goal of the build and ends when the service is closed
+        Thread reader = new Thread(() -> {
+            DockerException failure;
+            try {
+                dispatch(events);
+                failure = new DockerException("The stream of docker events ended");
+            } catch (JsonParseException e) {
+                failure = new DockerException("The stream of docker events broke off", e);
+            }
+            unsubscribe(failure);
+        }, "docker-events");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Returns a future that completes with the first of the passed events that docker reports for a container. When
+     * such an event was already received, the future is completed right away.
+     *
+     * @param containerId the id of the container
+     * @param events      the events to wait for, like {@link #DIE} or {@link #HEALTHY}
+     * @return a future that completes with the event that happened
+     */
+    public CompletableFuture<String> awaitEvent(final String containerId, final String... events) {
+        Waiter waiter = new Waiter(Arrays.asList(events));
+        synchronized (lock) {
+            for (String event : history.getOrDefault(containerId, Collections.emptyList())) {
+                if (waiter.events.contains(event)) {
+                    waiter.future.complete(event);
+                    return waiter.future;
+                }
+            }
+            waiters.computeIfAbsent(containerId, id -> new ArrayList<>()).add(waiter);
+        }
+        waiter.future.whenComplete((event, e) -> forget(containerId, waiter));
+        return waiter.future;
+    }
+
+    /**
+     * Reads the passed stream of events until it ends and hands out the container events in it.
+     *
+     * @param events the body of an events response
+     */
+    void dispatch(final InputStream events) {
+        JsonStreamParser parser = new JsonStreamParser(new InputStreamReader(events, StandardCharsets.UTF_8));
+        while (parser.hasNext()) {
+            JsonElement element = parser.next();
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject event = element.getAsJsonObject();
+            if (event.has("status") && event.has("id") && isContainerEvent(event)) {
+                dispatch(event.get("id").getAsString(), event.get("status").getAsString());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        InputStream events = subscription;
+        if (events != null) {
+            try {
+                events.close();
+            } catch (IOException ignored) {
+                // the reader stops either way
+            }
+        }
+        super.close();
+    }
+
+    private void dispatch(final String containerId, final String event) {
+        List<Waiter> completed = new ArrayList<>();
+        synchronized (lock) {
+            List<String> containerHistory = history.computeIfAbsent(containerId, id -> new ArrayList<>());
+            containerHistory.add(event);
+            if (containerHistory.size() > MAX_REMEMBERED_EVENTS) {
+                containerHistory.remove(0);
+            }
+            List<Waiter> containerWaiters = waiters.getOrDefault(containerId, Collections.emptyList());
+            for (Iterator<Waiter> it = containerWaiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (waiter.events.contains(event)) {
+                    completed.add(waiter);
+                    it.remove();
+                }
+            }
+        }
+        // complete outside the lock, callbacks may register new waiters
+        for (Waiter waiter : completed) {
+            waiter.future.complete(event);
+        }
+    }
+
+    /**
+     * Ends the subscription after its stream ended, and fails the futures that wait for its events: they would never
+     * complete otherwise. Events that are remembered stay, they did happen.
+     */
+    private void unsubscribe(final DockerException failure) {
+        List<Waiter> pending = new ArrayList<>();
+        synchronized (lock) {
+            subscribed = false;
+            subscription = null;
+            waiters.values().forEach(pending::addAll);
+            waiters.clear();
+        }
+        for (Waiter waiter : pending) {
+            waiter.future.completeExceptionally(failure);
+        }
+    }
+
+    private void forget(final String containerId, final Waiter waiter) {
+        synchronized (lock) {
+            List<Waiter> containerWaiters = waiters.get(containerId);
+            if (containerWaiters != null) {
+                containerWaiters.remove(waiter);
+                if (containerWaiters.isEmpty()) {
+                    waiters.remove(containerId);
+                }
+            }
+        }
+    }
+
+    private static boolean isContainerEvent(final JsonObject event) {
+        // daemons before api 1.22 only send container events with a status, newer ones also send a type
+        return !event.has("Type") || "container".equals(event.get("Type").getAsString());
+    }
+
+    private static final class Waiter {
+        private final List<String> events;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private Waiter(final List<String> events) {
+            this.events = events;
+        }
+    }
+}
@@ -18,18 +18,25 @@
 package net.wouterdanes.docker.remoteapi;
 
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonStreamParser;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ImageDescriptor;
+import net.wouterdanes.docker.remoteapi.model.ImageInspectionResult;
+import net.wouterdanes.docker.remoteapi.transport.DockerTransport;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * This class is responsible for talking to the Docker Remote API "images" endpoint.<br> See <a
@@ -42,18 +49,103 @@ public class ImagesService extends BaseService {
         super(dockerApiRoot, "/images");
     }
 
+    public ImagesService(DockerTransport transport) {
+        super(transport, "/images");
+    }
+
     public void deleteImage(final String imageId) {
         try {
-            getServiceEndPoint()
+            execute(() -> getServiceEndPoint()
                     .path(imageId)
                     .request(MediaType.APPLICATION_JSON_TYPE)
-                    .delete(String.class);
+                    .delete(String.class));
         } catch (WebApplicationException e) {
             throw makeImageTargetingException("Cannot remove image", e);
         }
     }
 
-    public String pullImage(final String image) {
+    /**
+     * Checks whether docker has the passed image
+     *
+     * @param image the id or name of the image
+     * @return true when the image exists, false when docker doesn't know it
+     */
+    public boolean hasImage(final String image) {
+        Response response = execute(() -> getServiceEndPoint()
+                .path(image)
+                .path("json")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get());
+
+        Response.StatusType statusInfo = response.getStatusInfo();
+
+        response.close();
+
+        if (statusInfo.getStatusCode() == Response.Status.NOT_FOUND.getStatusCode()) {
+            return false;
+        }
+        checkImageTargetingResponse(image, statusInfo);
+        return true;
+    }
+
+    /**
+     * Lists the images docker has, without the intermediate images of builds
+     *
+     * @return the ids of the images and the names they're known by
+     */
+    public List<ImageInspectionResult> listImages() {
+        String json;
+        try {
+            json = execute(() -> getServiceEndPoint()
+                    .path("json")
+                    .request(MediaType.APPLICATION_JSON_TYPE)
+                    .get(String.class));
+        } catch (WebApplicationException e) {
+            throw new DockerException("Cannot list images", e);
+        }
+        return Arrays.asList(toObject(json, ImageInspectionResult[].class));
+    }
+
+    /**
+     * Inspects an image
+     *
+     * @param image the id or name of the image
+     * @return the id of the image and the names it's known by
+     */
+    public ImageInspectionResult inspectImage(final String image) {
+        String json;
+        try {
+            json = execute(() -> getServiceEndPoint()
+                    .path(image)
+                    .path("json")
+                    .request(MediaType.APPLICATION_JSON_TYPE)
+                    .get(String.class));
+        } catch (WebApplicationException e) {
+            throw makeImageTargetingException(image, e);
+        }
+        return toObject(json, ImageInspectionResult.class);
+    }
+
+    /**
+     * Pulls an image from its registry.
+     *
+     * @param image the name and optional tag of the image
+     * @return the report of the pull
+     */
+    public PullProgress pullImage(final String image) {
+        return pullImage(image, progress -> { });
+    }
+
+    /**
+     * Pulls an image from its registry, passing the progress of the pull to a listener every time docker reports it.
+     *
+     * @param image    the name and optional tag of the image
+     * @param listener receives the progress after every status message, on the calling thread
+     * @return the report of the pull
+     * @throws DockerException when docker answers the pull with an error status, an
+     *                         {@link net.wouterdanes.docker.remoteapi.exception.ImageNotFoundException} for a 404
+     */
+    public PullProgress pullImage(final String image, final Consumer<PullProgress> listener) {
         ImageDescriptor descriptor = new ImageDescriptor(image);
 
         WebTarget target = getServiceEndPoint()
@@ -65,49 +157,83 @@ public class ImagesService extends BaseService {
             target = target.queryParam("tag", descriptor.getTag().get());
         }
 
-        Response response = target.request()
+        Invocation.Builder request = target.request()
                 .header(REGISTRY_AUTH_HEADER, getRegistryAuthHeaderValue())
-                .accept(MediaType.APPLICATION_JSON_TYPE)
-                .post(null);
+                .accept(MediaType.APPLICATION_JSON_TYPE);
+        Response response = execute(() -> request.post(null));
+
+        PullProgress progress = new PullProgress(image);
+        try {
+            checkImageTargetingResponse(image, response.getStatusInfo());
 
-        InputStream inputStream = (InputStream) response.getEntity();
+            InputStream inputStream = response.readEntity(InputStream.class);
 
-        parseStreamToDisplayImageDownloadStatus(inputStream);
+            parseStreamToTrackPullProgress(inputStream, progress, listener);
 
-        return response.readEntity(String.class);
+            return progress.finish();
+        } finally {
+            // hands the connection back to the pool
+            response.close();
+        }
     }
 
-    private static void parseStreamToDisplayImageDownloadStatus(final InputStream inputStream) {
-        InputStreamReader isr = new InputStreamReader(inputStream);
+    private static void parseStreamToTrackPullProgress(final InputStream inputStream, final PullProgress progress,
+                                                       final Consumer<PullProgress> listener) {
+        InputStreamReader isr = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
         BufferedReader reader = new BufferedReader(isr);
 
         JsonStreamParser parser = new JsonStreamParser(reader);
 
         while (parser.hasNext()) {
             JsonElement element = parser.next();
-            JsonObject object = element.getAsJsonObject();
-            if (object.has("status")) {
-                System.out.print(".");
-            }
-            if (object.has("error")) {
-                System.err.println("ERROR: " + object.get("error").getAsString());
+            if (element.isJsonObject()) {
+                progress.update(element.getAsJsonObject());
+                listener.accept(progress);
             }
         }
-        System.out.println("");
     }
 
-    public String pushImage(String nameAndTag) {
+    /**
+     * Pushes an image to its registry, reading docker's messages while the push runs. Docker reports a failed push
+     * with an error message in the stream instead of an http status, so the push fails as soon as that message
+     * arrives.
+     *
+     * @param nameAndTag the name and tag of the image
+     * @return the report of the push
+     * @throws DockerException when the push fails
+     */
+    public PushProgress pushImage(final String nameAndTag) {
+        Response response;
         try {
-            WebTarget target = createPushRequestFromTag(nameAndTag);
-
-            return target.request()
+            response = execute(() -> createPushRequestFromTag(nameAndTag).request()
                     .header(REGISTRY_AUTH_HEADER, getRegistryAuthHeaderValue())
                     .accept(MediaType.APPLICATION_JSON_TYPE)
-                    .post(null, String.class);
-
+                    .post(null));
         } catch (WebApplicationException e) {
             throw makeImageTargetingException(nameAndTag, e);
+        }
 
+        PushProgress progress = new PushProgress(nameAndTag);
+        try {
+            checkImageTargetingResponse(nameAndTag, response.getStatusInfo());
+
+            InputStream inputStream = response.readEntity(InputStream.class);
+            JsonStreamParser parser = new JsonStreamParser(
+                    new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+            while (parser.hasNext()) {
+                JsonElement element = parser.next();
+                if (element.isJsonObject()) {
+                    progress.update(element.getAsJsonObject());
+                }
+                if (progress.getError().isPresent()) {
+                    throw new DockerException(String.format("Cannot push image %s: %s", nameAndTag,
+                            progress.getError().get()));
+                }
+            }
+            return progress.finish();
+        } finally {
+            // hands the connection back to the pool
+            response.close();
         }
     }
 
@@ -125,9 +251,9 @@ public class ImagesService extends BaseService {
             target = target.queryParam("tag", targetTag.get());
         }
 
-        Response response = target.request()
-                .accept(MediaType.APPLICATION_JSON_TYPE)
-                .post(null);
+        Invocation.Builder request = target.request()
+                .accept(MediaType.APPLICATION_JSON_TYPE);
+        Response response = execute(() -> request.post(null));
 
         Response.StatusType statusInfo = response.getStatusInfo();
 
@@ -0,0 +1,71 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class is responsible for copying docker's multiplexed log stream to channels, like files, while it's being
+ * downloaded. The frames of stdout and stderr go to their own channel, the headers are left out. Only the buffer of
+ * one {@link LogFrameDecoder} is used however large the logs are, so writing gigabytes of logs doesn't need gigabytes
+ * of heap.
+ */
+public class LogDemultiplexer {
+
+    private final LogFrameDecoder decoder = new LogFrameDecoder();
+
+    /**
+     * Copies all frames until the stream ends.
+     *
+     * @param logs   a log stream, see {@link ContainersService#getLogStream(String)}
+     * @param stdout gets the frames of stdout (and stdin)
+     * @param stderr gets the frames of stderr, may be the same channel as stdout
+     * @return the number of bytes written to the channels
+     * @throws IOException when reading the stream or writing a channel fails
+     */
+    public long demultiplex(final InputStream logs, final WritableByteChannel stdout,
+                            final WritableByteChannel stderr) throws IOException {
+        return demultiplex(Channels.newChannel(logs), stdout, stderr);
+    }
+
+    /**
+     * Copies all frames until the channel ends.
+     *
+     * @param logs   a log stream
+     * @param stdout gets the frames of stdout (and stdin)
+     * @param stderr gets the frames of stderr, may be the same channel as stdout
+     * @return the number of bytes written to the channels
+     * @throws IOException when reading the stream or writing a channel fails
+     */
+    public long demultiplex(final ReadableByteChannel logs, final WritableByteChannel stdout,
+                            final WritableByteChannel stderr) throws IOException {
+        long[] written = {0};
+        decoder.decode(logs, (stream, payload) -> {
+            WritableByteChannel channel = stream == LogFrameDecoder.STDERR ? stderr : stdout;
+            while (payload.hasRemaining()) {
+                written[0] += channel.write(payload);
+            }
+            return false;
+        });
+        return written[0];
+    }
+}
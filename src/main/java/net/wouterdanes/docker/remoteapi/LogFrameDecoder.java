@@ -0,0 +1,133 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This class is responsible for decoding docker's multiplexed log stream: frames of an 8 byte header (the stream, 3
+ * unused bytes and the length of the payload) followed by the payload. See
+ * <a href="https://docs.docker.com/engine/api/v1.21/#attach-to-a-container">attach to a container</a>.
+ * <p>
+ * The stream is read incrementally into one direct buffer that is reused for every frame, and the payloads are handed
+ * out as slices of that buffer, so decoding allocates nothing per frame. A payload that is larger than the buffer, or
+ * that wasn't read completely yet, is handed out in more than one slice. An instance is not thread safe.
+ */
+public class LogFrameDecoder {
+
+    public static final int STDIN = 0;
+    public static final int STDOUT = 1;
+    public static final int STDERR = 2;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Gets the payloads of the frames.
+     */
+    public interface FrameHandler {
+        /**
+         * @param stream  the stream of the frame: {@link #STDIN}, {@link #STDOUT} or {@link #STDERR}
+         * @param payload (a part of) the payload, between its position and limit. The buffer is reused for the next
+         *                slice, so it must not be kept after this method returns.
+         * @return true to stop decoding, false to continue
+         * @throws IOException when handling the payload fails
+         */
+        boolean onFrame(int stream, ByteBuffer payload) throws IOException;
+    }
+
+    private final ByteBuffer buffer;
+
+    public LogFrameDecoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the buffer, the largest slice of a payload that is handed out at once
+     */
+    public LogFrameDecoder(final int bufferSize) {
+        if (bufferSize < HEADER_SIZE) {
+            throw new IllegalArgumentException("The buffer needs to hold at least a frame header");
+        }
+        buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Decodes frames until the handler asks to stop or the channel ends. A frame that is cut off at the end of the
+     * channel is handed out as far as it goes.
+     *
+     * @param channel the log stream
+     * @param handler gets the payloads of the frames
+     * @return true when the handler asked to stop, false when the channel ended
+     * @throws IOException when reading the channel or handling a payload fails
+     */
+    public boolean decode(final ReadableByteChannel channel, final FrameHandler handler) throws IOException {
+        buffer.clear().flip();
+        int stream = STDOUT;
+        long remainingInFrame = 0;
+        while (true) {
+            if (remainingInFrame == 0) {
+                if (!fill(channel, HEADER_SIZE)) {
+                    return false;
+                }
+                stream = buffer.get() & 0xff;
+                buffer.position(buffer.position() + 3);
+                remainingInFrame = buffer.getInt() & 0xffffffffL;
+                continue;
+            }
+            if (!buffer.hasRemaining() && !fill(channel, 1)) {
+                return false;
+            }
+            int start = buffer.position();
+            int limit = buffer.limit();
+            int length = (int) Math.min(buffer.remaining(), remainingInFrame);
+            buffer.limit(start + length);
+            boolean stop = handler.onFrame(stream, buffer);
+            buffer.limit(limit).position(start + length);
+            remainingInFrame -= length;
+            if (stop) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads until the buffer holds at least the passed number of bytes, keeping the bytes it already had.
+     *
+     * @return false when the channel ended before that
+     */
+    private boolean fill(final ReadableByteChannel channel, final int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) == -1) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * This class is responsible for reading docker's multiplexed log stream and handing out its lines as they arrive, so
+ * a log can be searched while it's being written instead of downloading all of it again. Every frame is only looked
+ * at once. stdout and stderr each keep their own unfinished line, which continues in the next frame of the same
+ * stream; an unfinished line is also handed out, so text without a line break is found right away.
+ * <p>
+ * The frames are read with a {@link LogFrameDecoder} and the lines are decoded into one reused buffer, so scanning
+ * doesn't allocate anything per frame or per line once the buffers are as large as the longest line.
+ */
+public class LogLineScanner {
+
+    private static final int INITIAL_LINE_SIZE = 256;
+
+    private final Predicate<CharSequence> lines;
+    private final LogFrameDecoder decoder = new LogFrameDecoder();
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer[] unfinishedLines = {
+            ByteBuffer.allocate(INITIAL_LINE_SIZE), ByteBuffer.allocate(INITIAL_LINE_SIZE),
+            ByteBuffer.allocate(INITIAL_LINE_SIZE)
+    };
+    private CharBuffer line = CharBuffer.allocate(INITIAL_LINE_SIZE);
+
+    /**
+     * @param lines gets every line (without its line break) until it returns true. The line is reused for the next
+     *              one, so call {@link CharSequence#toString()} to keep it.
+     */
+    public LogLineScanner(final Predicate<CharSequence> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Reads frames until a line is accepted or the stream ends.
+     *
+     * @param logs a log stream, see {@link ContainersService#followLogs(String, long)}
+     * @return true when a line was accepted, false when the stream ended before that
+     * @throws IOException when reading the stream fails
+     */
+    public boolean scan(final InputStream logs) throws IOException {
+        return scan(Channels.newChannel(logs));
+    }
+
+    /**
+     * Reads frames until a line is accepted or the channel ends.
+     *
+     * @param logs a log stream
+     * @return true when a line was accepted, false when the stream ended before that
+     * @throws IOException when reading the stream fails
+     */
+    public boolean scan(final ReadableByteChannel logs) throws IOException {
+        return decoder.decode(logs, this::scan);
+    }
+
+    private boolean scan(final int stream, final ByteBuffer payload) {
+        int index = stream % unfinishedLines.length;
+        int end = payload.limit();
+        for (int i = payload.position(); i < end; i++) {
+            if (payload.get(i) == '\n') {
+                payload.limit(i);
+                append(index, payload);
+                payload.limit(end).position(i + 1);
+                boolean accepted = test(unfinishedLines[index], true);
+                unfinishedLines[index].clear();
+                if (accepted) {
+                    return true;
+                }
+            }
+        }
+        append(index, payload);
+        return unfinishedLines[index].position() > 0 && test(unfinishedLines[index], false);
+    }
+
+    private void append(final int index, final ByteBuffer bytes) {
+        ByteBuffer unfinishedLine = unfinishedLines[index];
+        if (unfinishedLine.remaining() < bytes.remaining()) {
+            int size = Math.max(unfinishedLine.capacity() * 2, unfinishedLine.position() + bytes.remaining());
+            unfinishedLine.flip();
+            unfinishedLine = ByteBuffer.allocate(size).put(unfinishedLine);
+            unfinishedLines[index] = unfinishedLine;
+        }
+        unfinishedLine.put(bytes);
+    }
+
+    /**
+     * Decodes the bytes of a line and tests it, leaving the bytes where they were. Bytes of a character that's cut
+     * off at the end of an unfinished line are left out until the rest of the character arrives.
+     */
+    private boolean test(final ByteBuffer bytes, final boolean complete) {
+        int length = bytes.position();
+        if (line.capacity() < length) {
+            line = CharBuffer.allocate(Math.max(line.capacity() * 2, length));
+        }
+        bytes.flip();
+        line.clear();
+        utf8.reset();
+        utf8.decode(bytes, line, complete);
+        if (complete) {
+            utf8.flush(line);
+        }
+        bytes.limit(bytes.capacity()).position(length);
+        line.flip();
+        if (line.hasRemaining() && line.get(line.limit() - 1) == '\r') {
+            line.limit(line.limit() - 1);
+        }
+        return lines.test(line);
+    }
+}
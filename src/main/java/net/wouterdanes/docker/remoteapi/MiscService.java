@@ -23,6 +23,9 @@ import com.google.gson.JsonStreamParser;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerCommitResponse;
 import net.wouterdanes.docker.remoteapi.model.DockerVersionInfo;
+import net.wouterdanes.docker.remoteapi.transport.DockerTransport;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 import org.glassfish.jersey.uri.UriComponent;
 
 import javax.ws.rs.HttpMethod;
@@ -30,10 +33,12 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,16 +66,20 @@ public class MiscService extends BaseService {
         super(dockerApiRoot, "/");
     }
 
+    public MiscService(final DockerTransport transport) {
+        super(transport, "/");
+    }
+
     /**
      * Returns the Docker version information
      *
      * @return a {@link DockerVersionInfo} instance describing this docker installation.
      */
     public DockerVersionInfo getVersionInfo() {
-        String json = getServiceEndPoint()
+        String json = execute(() -> getServiceEndPoint()
                 .path("/version")
                 .request(MediaType.APPLICATION_JSON_TYPE)
-                .get(String.class);
+                .get(String.class));
 
         return toObject(json, DockerVersionInfo.class);
     }
@@ -101,9 +110,9 @@ public class MiscService extends BaseService {
                 .queryParam("comment", comment.orElse(null))
                 .queryParam("author", author.orElse(null));
 
-        String json = request
+        String json = execute(() -> request
                 .request(MediaType.APPLICATION_JSON_TYPE)
-                .method(HttpMethod.POST, String.class);
+                .method(HttpMethod.POST, String.class));
 
         ContainerCommitResponse result = toObject(json, ContainerCommitResponse.class);
 
@@ -119,7 +128,43 @@ public class MiscService extends BaseService {
      * @return the ID of the created image
      */
     public String buildImage(byte[] tarArchive, Optional<String> name, Optional<String> buildArguments) {
-        Response response = getServiceEndPoint()
+        return buildImage(Entity.entity(tarArchive, "application/tar"), name, buildArguments, System.out::print,
+                System.err::print);
+    }
+
+    /**
+     * Builds an image based on a tar archive that is written while it is being uploaded. The request body is sent
+     * chunked, so the archive never has to be held in memory and docker starts receiving it right away.
+     *
+     * @param tarArchive        writes the tar archive to use as a source for the image
+     * @param name              the name and optional tag of the image.
+     * @param buildArguments    a list of optional build arguments made available to the Dockerfile.
+     * @return the ID of the created image
+     */
+    public String buildImage(StreamingOutput tarArchive, Optional<String> name, Optional<String> buildArguments) {
+        return buildImage(Entity.entity(tarArchive, "application/tar"), name, buildArguments, System.out::print,
+                System.err::print);
+    }
+
+    /**
+     * Builds an image based on a tar archive that is written while it is being uploaded, passing the output of the
+     * build to the passed consumers instead of the console.
+     *
+     * @param tarArchive        writes the tar archive to use as a source for the image
+     * @param name              the name and optional tag of the image.
+     * @param buildArguments    a list of optional build arguments made available to the Dockerfile.
+     * @param output            receives the output of the build, in pieces that end with a line break
+     * @param errors            receives the errors of the build, in pieces that end with a line break
+     * @return the ID of the created image
+     */
+    public String buildImage(StreamingOutput tarArchive, Optional<String> name, Optional<String> buildArguments,
+                             Consumer<String> output, Consumer<String> errors) {
+        return buildImage(Entity.entity(tarArchive, "application/tar"), name, buildArguments, output, errors);
+    }
+
+    private String buildImage(Entity<?> tarArchive, Optional<String> name, Optional<String> buildArguments,
+                              Consumer<String> output, Consumer<String> errors) {
+        Response response = execute(() -> getServiceEndPoint()
                 .path("/build")
                 .queryParam("q", true)
                 .queryParam("t", name.orElse(null))
@@ -127,20 +172,27 @@ public class MiscService extends BaseService {
                 .queryParam("forcerm")
                 .request(MediaType.APPLICATION_JSON_TYPE)
                 .header(REGISTRY_AUTH_HEADER, getRegistryAuthHeaderValue())
-                .post(Entity.entity(tarArchive, "application/tar"));
+                .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED)
+                .post(tarArchive));
 
-        InputStream inputStream = (InputStream) response.getEntity();
+        try {
+            InputStream inputStream = response.readEntity(InputStream.class);
 
-        String imageId = parseSteamForImageId(inputStream);
+            String imageId = parseSteamForImageId(inputStream, output, errors);
 
-        if (imageId == null) {
-            throw new DockerException("Can't obtain ID from build output stream.");
-        }
+            if (imageId == null) {
+                throw new DockerException("Can't obtain ID from build output stream.");
+            }
 
-        return imageId;
+            return imageId;
+        } finally {
+            // hands the connection back to the pool
+            response.close();
+        }
     }
 
-    private static String parseSteamForImageId(final InputStream inputStream) {
+    private static String parseSteamForImageId(final InputStream inputStream, final Consumer<String> output,
+                                               final Consumer<String> errors) {
         InputStreamReader isr = new InputStreamReader(inputStream);
         BufferedReader reader = new BufferedReader(isr);
 
@@ -153,17 +205,17 @@ public class MiscService extends BaseService {
             JsonObject object = element.getAsJsonObject();
             if (object.has("stream")) {
                 String text = object.get("stream").getAsString();
-                System.out.print(text);
+                output.accept(text);
                 Matcher matcher = BUILD_IMAGE_ID_EXTRACTION_PATTERN.matcher(text);
                 if (matcher.matches()) {
                     imageId = matcher.group(2);
                 }
             }
             if (object.has("status")) {
-                System.out.println(object.get("status").getAsString());
+                output.accept(object.get("status").getAsString() + System.lineSeparator());
             }
             if (object.has("error")) {
-                System.err.println("ERROR: " + object.get("error").getAsString());
+                errors.accept("ERROR: " + object.get("error").getAsString() + System.lineSeparator());
             }
         }
         return imageId;
@@ -0,0 +1,216 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * This class is responsible for keeping track of the progress of an image pull, from the status messages docker sends
+ * while pulling: one record per layer with its phase and the bytes downloaded so far, and the totals of all layers.
+ * When the pull has finished, it's the report of the pull. The sizes of layers docker hasn't started downloading yet
+ * are unknown, so the total grows while the pull goes on.
+ */
+public class PullProgress {
+
+    private static final String DOWNLOADING = "Downloading";
+    private static final String PULL_COMPLETE = "Pull complete";
+    private static final String ALREADY_EXISTS = "Already exists";
+    private static final String PULLING_FROM = "Pulling from";
+    private static final Set<String> DOWNLOADED = new HashSet<>(Arrays.asList(
+            "Verifying Checksum", "Download complete", "Extracting", PULL_COMPLETE));
+
+    private final String image;
+    private final LongSupplier clock;
+    private final long startNanos;
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+    private long endNanos = -1;
+    private String error;
+
+    public PullProgress(final String image) {
+        this(image, System::nanoTime);
+    }
+
+    PullProgress(final String image, final LongSupplier clock) {
+        this.image = image;
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+    }
+
+    /**
+     * Applies a status message of the pull stream, like
+     * <code>{"status":"Downloading","progressDetail":{"current":1024,"total":4096},"id":"a3ed95caeb02"}</code>
+     *
+     * @param message a message of the pull stream
+     */
+    public void update(final JsonObject message) {
+        if (message.has("error")) {
+            error = message.get("error").getAsString();
+            return;
+        }
+        if (!message.has("id") || !message.has("status")) {
+            return;
+        }
+        String id = message.get("id").getAsString();
+        String status = message.get("status").getAsString();
+        if (status.startsWith(PULLING_FROM)) {
+            // the first message names the repository and has the tag as its id, it's not a layer
+            return;
+        }
+        Layer layer = layers.computeIfAbsent(id, Layer::new);
+        layer.phase = status;
+        if (DOWNLOADING.equals(status)) {
+            JsonElement detail = message.get("progressDetail");
+            if (detail != null && detail.isJsonObject()) {
+                JsonObject progress = detail.getAsJsonObject();
+                if (progress.has("current")) {
+                    layer.current = progress.get("current").getAsLong();
+                }
+                if (progress.has("total")) {
+                    layer.total = progress.get("total").getAsLong();
+                }
+            }
+        } else if (DOWNLOADED.contains(status)) {
+            layer.current = Math.max(layer.current, layer.total);
+        }
+        layer.done = layer.done || PULL_COMPLETE.equals(status) || ALREADY_EXISTS.equals(status);
+    }
+
+    /**
+     * Marks the pull as finished, which stops the clock of the report.
+     *
+     * @return this progress, which is now the report of the pull
+     */
+    public PullProgress finish() {
+        if (endNanos < 0) {
+            endNanos = clock.getAsLong();
+        }
+        return this;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    /**
+     * @return the layers in the order docker first mentioned them
+     */
+    public List<Layer> getLayers() {
+        return Collections.unmodifiableList(new ArrayList<>(layers.values()));
+    }
+
+    /**
+     * @return the number of layers that were pulled or already existed
+     */
+    public int getLayersDone() {
+        return (int) layers.values().stream().filter(Layer::isDone).count();
+    }
+
+    public long getBytesDownloaded() {
+        return layers.values().stream().mapToLong(Layer::getCurrent).sum();
+    }
+
+    /**
+     * @return the size of all layers that are downloaded, as far as docker reported their sizes
+     */
+    public long getBytesTotal() {
+        return layers.values().stream().mapToLong(layer -> Math.max(layer.getTotal(), layer.getCurrent())).sum();
+    }
+
+    public long getElapsedNanos() {
+        return (endNanos < 0 ? clock.getAsLong() : endNanos) - startNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return getBytesDownloaded() / (Math.max(getElapsedNanos(), 1) / 1e9);
+    }
+
+    /**
+     * @return the estimated number of seconds until the layers of which the size is known are downloaded, empty when
+     * nothing was downloaded yet
+     */
+    public Optional<Long> getEtaSeconds() {
+        double bytesPerSecond = getBytesPerSecond();
+        if (bytesPerSecond <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of((long) Math.ceil((getBytesTotal() - getBytesDownloaded()) / bytesPerSecond));
+    }
+
+    /**
+     * @return the error docker reported for the pull, if any
+     */
+    public Optional<String> getError() {
+        return Optional.ofNullable(error);
+    }
+
+    /**
+     * The progress of one layer of the image.
+     */
+    public static final class Layer {
+        private final String id;
+        private String phase;
+        private long current;
+        private long total;
+        private boolean done;
+
+        private Layer(final String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the last status docker reported for the layer, like "Downloading", "Extracting" or "Pull complete"
+         */
+        public String getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return the bytes of the layer downloaded so far
+         */
+        public long getCurrent() {
+            return current;
+        }
+
+        /**
+         * @return the size of the layer, 0 when docker didn't report it (yet)
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+}
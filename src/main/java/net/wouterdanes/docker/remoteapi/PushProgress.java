@@ -0,0 +1,159 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class is responsible for keeping track of a push, from the status messages docker sends while pushing: the
+ * phase of every layer, whether the registry already had it, the digest the registry gave the image and the error
+ * that ended the push. Docker answers a failed push with status 200 and an error message in the stream, so the error
+ * has to be read from here. When the push has finished, it's the report of the push.
+ */
+public class PushProgress {
+
+    public static final String PUSHED = "Pushed";
+    public static final String ALREADY_EXISTS = "Layer already exists";
+
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("digest: (\\S+:[0-9a-f]+)");
+
+    private final String nameAndTag;
+    private final LongSupplier clock;
+    private final long startNanos;
+    private final Map<String, String> layers = new LinkedHashMap<>();
+    private long endNanos = -1;
+    private String digest;
+    private String error;
+
+    public PushProgress(final String nameAndTag) {
+        this(nameAndTag, System::nanoTime);
+    }
+
+    PushProgress(final String nameAndTag, final LongSupplier clock) {
+        this.nameAndTag = nameAndTag;
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+    }
+
+    /**
+     * Applies a message of the push stream, like <code>{"status":"Pushed","progressDetail":{},"id":"5f70bf18a086"}</code>
+     *
+     * @param message a message of the push stream
+     */
+    public void update(final JsonObject message) {
+        if (message.has("error")) {
+            error = message.get("error").getAsString();
+            return;
+        }
+        JsonElement aux = message.get("aux");
+        if (aux != null && aux.isJsonObject() && aux.getAsJsonObject().has("Digest")) {
+            digest = aux.getAsJsonObject().get("Digest").getAsString();
+        }
+        if (!message.has("status")) {
+            return;
+        }
+        String status = message.get("status").getAsString();
+        if (message.has("id")) {
+            layers.put(message.get("id").getAsString(), status);
+        } else if (digest == null) {
+            Matcher matcher = DIGEST_PATTERN.matcher(status);
+            if (matcher.find()) {
+                digest = matcher.group(1);
+            }
+        }
+    }
+
+    /**
+     * Marks the push as finished, which stops the clock of the report.
+     *
+     * @return this progress, which is now the report of the push
+     */
+    public PushProgress finish() {
+        if (endNanos < 0) {
+            endNanos = clock.getAsLong();
+        }
+        return this;
+    }
+
+    public String getNameAndTag() {
+        return nameAndTag;
+    }
+
+    /**
+     * @return the ids of the layers in the order docker first mentioned them
+     */
+    public List<String> getLayers() {
+        return Collections.unmodifiableList(new ArrayList<>(layers.keySet()));
+    }
+
+    /**
+     * @param layer the id of a layer
+     * @return the last status docker reported for the layer, like "Preparing", "Pushing", {@link #PUSHED} or
+     * {@link #ALREADY_EXISTS}
+     */
+    public Optional<String> getPhase(final String layer) {
+        return Optional.ofNullable(layers.get(layer));
+    }
+
+    /**
+     * @return the number of layers that were sent to the registry
+     */
+    public int getLayersPushed() {
+        return count(PUSHED);
+    }
+
+    /**
+     * @return the number of layers that the registry already had
+     */
+    public int getLayersAlreadyExisting() {
+        return count(ALREADY_EXISTS);
+    }
+
+    public long getElapsedNanos() {
+        return (endNanos < 0 ? clock.getAsLong() : endNanos) - startNanos;
+    }
+
+    /**
+     * @return the digest of the image in the registry, once the push has finished
+     */
+    public Optional<String> getDigest() {
+        return Optional.ofNullable(digest);
+    }
+
+    /**
+     * @return the error docker reported for the push, if any
+     */
+    public Optional<String> getError() {
+        return Optional.ofNullable(error);
+    }
+
+    private int count(final String phase) {
+        return (int) layers.values().stream().filter(phase::equals).count();
+    }
+}
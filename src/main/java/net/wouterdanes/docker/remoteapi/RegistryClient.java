@@ -0,0 +1,189 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.model.ImageDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class is responsible for asking a registry which manifest digest a tag points to, with a HEAD request on the
+ * manifest as described in <a href="https://docs.docker.com/registry/spec/api/#pulling-an-image-manifest">the
+ * registry api</a>. Registries that want a token get one from the realm of their challenge, with the credentials
+ * when there are any. A registry on a loopback address is spoken to over http, like docker does, others over https.
+ */
+public class RegistryClient {
+
+    public static final String DOCKER_HUB_REGISTRY = "registry-1.docker.io";
+
+    private static final String DIGEST_HEADER = "Docker-Content-Digest";
+    private static final String MANIFEST_TYPES = "application/vnd.docker.distribution.manifest.v2+json, "
+            + "application/vnd.docker.distribution.manifest.list.v2+json, "
+            + "application/vnd.oci.image.manifest.v1+json, application/vnd.oci.image.index.v1+json";
+    private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    private final int timeoutMillis;
+    private volatile Credentials credentials;
+
+    /**
+     * @param timeoutMillis the connect and read timeout of a request
+     */
+    public RegistryClient(final int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void setCredentials(final Credentials credentials) {
+        this.credentials = credentials;
+    }
+
+    /**
+     * Gets the digest of the manifest a tag points to in its registry.
+     *
+     * @param nameAndTag the name of an image and its tag, like <code>localhost:5000/app:1.0</code>
+     * @return the digest, empty when the registry doesn't have the tag
+     * @throws IOException when the registry can't be reached or refuses the request
+     */
+    public Optional<String> getManifestDigest(final String nameAndTag) throws IOException {
+        URL manifest = getManifestUrl(new ImageDescriptor(nameAndTag));
+        HttpURLConnection connection = head(manifest, null);
+        try {
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                String challenge = connection.getHeaderField("WWW-Authenticate");
+                connection.disconnect();
+                connection = head(manifest, authorize(challenge));
+            }
+            switch (connection.getResponseCode()) {
+                case HttpURLConnection.HTTP_OK:
+                    return Optional.ofNullable(connection.getHeaderField(DIGEST_HEADER));
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    return Optional.empty();
+                default:
+                    throw new IOException(String.format("Registry answered %d %s for %s",
+                            connection.getResponseCode(), connection.getResponseMessage(), manifest));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    static URL getManifestUrl(final ImageDescriptor image) throws IOException {
+        String registry = image.getRegistry().orElse(DOCKER_HUB_REGISTRY);
+        String repository = image.getRepositoryAndImage();
+        if (!image.getRegistry().isPresent() && !image.getRepository().isPresent()) {
+            // official images live in the library repository of docker hub
+            repository = "library/" + repository;
+        }
+        String scheme = isLoopback(registry) ? "http" : "https";
+        return new URL(String.format("%s://%s/v2/%s/manifests/%s", scheme, registry, repository,
+                image.getTag().orElse("latest")));
+    }
+
+    private static boolean isLoopback(final String registry) {
+        String host = registry.replaceFirst(":\\d+$", "");
+        return host.equals("localhost") || host.startsWith("127.") || host.equals("[::1]");
+    }
+
+    private HttpURLConnection head(final URL url, final String authorization) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("HEAD");
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestProperty("Accept", MANIFEST_TYPES);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        return connection;
+    }
+
+    /**
+     * Answers the challenge of a registry: with a token from its realm for "Bearer", with the credentials for "Basic".
+     */
+    private String authorize(final String challenge) throws IOException {
+        if (challenge == null) {
+            throw new IOException("Registry asks for authorization without a challenge");
+        }
+        if (challenge.regionMatches(true, 0, "Basic", 0, 5)) {
+            if (credentials == null) {
+                throw new IOException("Registry asks for credentials, but there are none");
+            }
+            return basicAuthorization();
+        }
+        Map<String, String> parameters = new HashMap<>();
+        Matcher matcher = CHALLENGE_PARAMETER.matcher(challenge);
+        while (matcher.find()) {
+            parameters.put(matcher.group(1), matcher.group(2));
+        }
+        String realm = parameters.remove("realm");
+        if (realm == null) {
+            throw new IOException("Registry asks for a token without a realm: " + challenge);
+        }
+        StringBuilder tokenUrl = new StringBuilder(realm);
+        char separator = realm.contains("?") ? '&' : '?';
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            tokenUrl.append(separator).append(parameter.getKey()).append('=').append(encode(parameter.getValue()));
+            separator = '&';
+        }
+        return "Bearer " + getToken(new URL(tokenUrl.toString()));
+    }
+
+    private String getToken(final URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        if (credentials != null) {
+            connection.setRequestProperty("Authorization", basicAuthorization());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            JsonElement response = new JsonParser().parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+            JsonObject object = response.getAsJsonObject();
+            JsonElement token = object.has("token") ? object.get("token") : object.get("access_token");
+            if (token == null) {
+                throw new IOException("The token service of the registry didn't return a token");
+            }
+            return token.getAsString();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private String basicAuthorization() {
+        String userAndPassword = credentials.getUserName() + ":" + credentials.getPassword();
+        return "Basic " + Base64.getEncoder().encodeToString(userAndPassword.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encode(final String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+}
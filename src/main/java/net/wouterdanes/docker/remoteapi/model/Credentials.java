@@ -19,6 +19,8 @@ package net.wouterdanes.docker.remoteapi.model;
 
 import org.codehaus.jackson.annotate.JsonProperty;
 
+import java.util.Objects;
+
 import static java.util.Optional.ofNullable;
 import static org.apache.commons.lang3.Validate.notBlank;
 
@@ -62,6 +64,26 @@ public class Credentials {
         return serverAddress;
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Credentials that = (Credentials) o;
+        return Objects.equals(userName, that.userName)
+                && Objects.equals(password, that.password)
+                && Objects.equals(email, that.email)
+                && Objects.equals(serverAddress, that.serverAddress);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userName, password, email, serverAddress);
+    }
+
     @Override
     public String toString() {
         return "Credentials [userName=" + userName
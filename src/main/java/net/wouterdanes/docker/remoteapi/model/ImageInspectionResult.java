@@ -0,0 +1,53 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.model;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds a part of the inspect result on an image: its id and the names it's known by
+ */
+@SuppressWarnings("unused")
+public class ImageInspectionResult {
+
+    @JsonProperty("Id")
+    private String id;
+    @JsonProperty("RepoTags")
+    private List<String> repoTags;
+    @JsonProperty("RepoDigests")
+    private List<String> repoDigests;
+
+    public String getId() {
+        return id;
+    }
+
+    public List<String> getRepoTags() {
+        return repoTags != null ? repoTags : Collections.emptyList();
+    }
+
+    /**
+     * @return the digests of the image in the registries it was pushed to or pulled from, like
+     * <code>localhost:5000/app@sha256:0123abcd</code>
+     */
+    public List<String> getRepoDigests() {
+        return repoDigests != null ? repoDigests : Collections.emptyList();
+    }
+}
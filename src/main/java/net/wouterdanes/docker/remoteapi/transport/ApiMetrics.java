@@ -0,0 +1,266 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is responsible for the metrics of the calls a {@link DockerTransport} made, per endpoint of the remote
+ * api: the number of calls and errors, the bytes sent and received and the latency. The latency is the time until
+ * the head of the response arrived, so for streamed responses like pulls it's the time to the first byte. Endpoints
+ * are named by their method and path, with the ids and names of containers and images replaced by placeholders, like
+ * <code>POST /containers/{id}/start</code>.
+ */
+public class ApiMetrics {
+
+    private static final Set<String> NAMED_RESOURCES = new HashSet<>(Arrays.asList(
+            "containers", "images", "exec", "networks", "volumes"));
+    private static final Set<String> COLLECTION_ACTIONS = new HashSet<>(Arrays.asList(
+            "create", "json", "search", "load", "prune", "get"));
+    private static final Set<String> ACTIONS = new HashSet<>(Arrays.asList(
+            "archive", "attach", "changes", "export", "get", "history", "json", "kill", "logs", "pause", "push",
+            "rename", "resize", "restart", "start", "stats", "stop", "tag", "top", "unpause", "update", "wait",
+            "exec"));
+
+    private final String daemon;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * @param daemon where the docker daemon is, like a host and port or the path of a socket
+     */
+    public ApiMetrics(final String daemon) {
+        this.daemon = daemon;
+    }
+
+    public String getDaemon() {
+        return daemon;
+    }
+
+    /**
+     * Records a call to an endpoint.
+     *
+     * @param endpoint     the endpoint, see {@link #getEndpoint(String, String)}
+     * @param latencyNanos the time until the head of the response arrived
+     * @param error        whether docker answered with an error status
+     */
+    void recordCall(final String endpoint, final long latencyNanos, final boolean error) {
+        getOrCreate(endpoint).recordCall(latencyNanos, error);
+    }
+
+    void recordBytesSent(final String endpoint, final long bytes) {
+        getOrCreate(endpoint).bytesSent.addAndGet(bytes);
+    }
+
+    void recordBytesReceived(final String endpoint, final long bytes) {
+        getOrCreate(endpoint).bytesReceived.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of calls made so far, to all endpoints
+     */
+    public long getCalls() {
+        return endpoints.values().stream().mapToLong(Endpoint::getCalls).sum();
+    }
+
+    /**
+     * @return a copy of the metrics so far, which doesn't change with later calls
+     */
+    public ApiMetrics snapshot() {
+        ApiMetrics copy = new ApiMetrics(daemon);
+        endpoints.forEach((name, endpoint) -> copy.endpoints.put(name, endpoint.since(null)));
+        return copy;
+    }
+
+    /**
+     * Returns the metrics of the calls made after an earlier snapshot, like the calls of one goal.
+     *
+     * @param snapshot a snapshot of these metrics, see {@link #snapshot()}
+     * @return the metrics of the endpoints that were called since the snapshot
+     */
+    public ApiMetrics since(final ApiMetrics snapshot) {
+        ApiMetrics delta = new ApiMetrics(daemon);
+        endpoints.forEach((name, endpoint) -> {
+            Endpoint calledSince = endpoint.since(snapshot.endpoints.get(name));
+            if (calledSince.getCalls() > 0) {
+                delta.endpoints.put(name, calledSince);
+            }
+        });
+        return delta;
+    }
+
+    /**
+     * Returns the metrics so far as json: for every endpoint the number of calls and errors, the bytes sent and
+     * received and the 50th, 95th and 99th percentile and maximum of the latency in milliseconds.
+     *
+     * @return the metrics of all endpoints, sorted by endpoint
+     */
+    public JsonObject toJson() {
+        JsonArray endpointsJson = new JsonArray();
+        for (Map.Entry<String, Endpoint> endpoint : new TreeMap<>(endpoints).entrySet()) {
+            endpointsJson.add(endpoint.getValue().toJson(endpoint.getKey()));
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("daemon", daemon);
+        json.add("endpoints", endpointsJson);
+        return json;
+    }
+
+    /**
+     * Names the endpoint of a call: the method and the path without the api version, with the ids and names of
+     * containers, images and the like replaced by <code>{id}</code> or <code>{name}</code>. A path that doesn't end
+     * with a known action, like <code>DELETE /images/org/app:1.0</code>, is all name.
+     *
+     * @param method the http method
+     * @param path   the raw path of the uri
+     * @return the name of the endpoint, like <code>POST /images/{name}/push</code>
+     */
+    static String getEndpoint(final String method, final String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        if (!segments.isEmpty() && segments.get(0).matches("v\\d+(\\.\\d+)*")) {
+            segments.remove(0);
+        }
+        if (segments.size() >= 2 && NAMED_RESOURCES.contains(segments.get(0))) {
+            String resource = segments.get(0);
+            String placeholder = "containers".equals(resource) || "exec".equals(resource) ? "{id}" : "{name}";
+            if (segments.size() == 2) {
+                if (!COLLECTION_ACTIONS.contains(segments.get(1))) {
+                    segments.set(1, placeholder);
+                }
+            } else if (ACTIONS.contains(segments.get(segments.size() - 1))) {
+                // image names can hold slashes, everything between the resource and the action is the name
+                segments = Arrays.asList(resource, placeholder, segments.get(segments.size() - 1));
+            } else {
+                segments = Arrays.asList(resource, placeholder);
+            }
+        }
+        return method + " /" + String.join("/", segments);
+    }
+
+    /**
+     * @return the names of the endpoints that were called, sorted
+     */
+    List<String> getEndpoints() {
+        List<String> names = new ArrayList<>(endpoints.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d call(s) to %d endpoint(s) of %s", getCalls(), endpoints.size(), daemon);
+    }
+
+    private Endpoint getOrCreate(final String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new Endpoint());
+    }
+
+    private static final class Endpoint {
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private long[] latencies = new long[16];
+        private int calls;
+        private int errors;
+
+        private synchronized void recordCall(final long latencyNanos, final boolean error) {
+            if (calls == latencies.length) {
+                latencies = Arrays.copyOf(latencies, calls * 2);
+            }
+            latencies[calls++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        private synchronized long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @param before an earlier copy of this endpoint, null for a copy of everything so far
+         * @return a copy of the calls, errors and bytes since the earlier copy
+         */
+        private Endpoint since(final Endpoint before) {
+            Endpoint delta = new Endpoint();
+            synchronized (this) {
+                int callsBefore = before != null ? before.calls : 0;
+                delta.latencies = Arrays.copyOfRange(latencies, callsBefore, Math.max(callsBefore + 1, calls));
+                delta.calls = calls - callsBefore;
+                delta.errors = errors - (before != null ? before.errors : 0);
+            }
+            delta.bytesSent.set(bytesSent.get() - (before != null ? before.bytesSent.get() : 0));
+            delta.bytesReceived.set(bytesReceived.get() - (before != null ? before.bytesReceived.get() : 0));
+            return delta;
+        }
+
+        private JsonObject toJson(final String name) {
+            long[] sorted;
+            int errorCount;
+            synchronized (this) {
+                sorted = Arrays.copyOf(latencies, calls);
+                errorCount = errors;
+            }
+            Arrays.sort(sorted);
+            JsonObject latency = new JsonObject();
+            latency.addProperty("p50", toMillis(percentile(sorted, 50)));
+            latency.addProperty("p95", toMillis(percentile(sorted, 95)));
+            latency.addProperty("p99", toMillis(percentile(sorted, 99)));
+            latency.addProperty("max", toMillis(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+
+            JsonObject json = new JsonObject();
+            json.addProperty("endpoint", name);
+            json.addProperty("calls", sorted.length);
+            json.addProperty("errors", errorCount);
+            json.addProperty("bytesSent", bytesSent.get());
+            json.addProperty("bytesReceived", bytesReceived.get());
+            json.add("latencyMillis", latency);
+            return json;
+        }
+
+        /**
+         * The nearest-rank percentile of sorted values.
+         */
+        private static long percentile(final long[] sorted, final int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        private static double toMillis(final long nanos) {
+            return Math.round(nanos / 1e4) / 100.0;
+        }
+    }
+}
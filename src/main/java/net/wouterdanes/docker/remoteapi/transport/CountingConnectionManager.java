@@ -0,0 +1,147 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link HttpClientConnectionManager} and counts how many connections were leased from it, how many of
+ * those had to be newly opened and how many were leased at the same time at most.
+ */
+class CountingConnectionManager implements HttpClientConnectionManager {
+
+    private final HttpClientConnectionManager delegate;
+    private final TransportSettings settings;
+    private final int maxConnections;
+    private final String maxConnectionsProperty;
+    private final AtomicLong leasedConnections;
+    private final AtomicLong openedConnections;
+    private final InFlightCounter inFlight;
+
+    CountingConnectionManager(final HttpClientConnectionManager delegate, final TransportSettings settings) {
+        this(delegate, settings, settings.getMaxConnections(), TransportSettings.MAX_CONNECTIONS_PROPERTY,
+                new AtomicLong(), new AtomicLong(), new InFlightCounter());
+    }
+
+    private CountingConnectionManager(final HttpClientConnectionManager delegate, final TransportSettings settings,
+                                      final int maxConnections, final String maxConnectionsProperty,
+                                      final AtomicLong leasedConnections, final AtomicLong openedConnections,
+                                      final InFlightCounter inFlight) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsProperty = maxConnectionsProperty;
+        this.leasedConnections = leasedConnections;
+        this.openedConnections = openedConnections;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Wraps the pool of the followed streams, its connections are counted together with the ones of this manager.
+     *
+     * @param streamPool the pool that holds the connections of followed streams
+     * @return the wrapped pool
+     */
+    CountingConnectionManager forStreams(final HttpClientConnectionManager streamPool) {
+        return new CountingConnectionManager(streamPool, settings, settings.getMaxStreams(),
+                TransportSettings.MAX_STREAMS_PROPERTY, leasedConnections, openedConnections, inFlight);
+    }
+
+    TransportStatistics getStatistics() {
+        return new TransportStatistics(leasedConnections.get(), openedConnections.get(), inFlight.getPeak());
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+        leasedConnections.incrementAndGet();
+        ConnectionRequest request = delegate.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(final long timeout, final TimeUnit timeUnit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                HttpClientConnection connection;
+                try {
+                    connection = request.get(timeout, timeUnit);
+                } catch (ConnectionPoolTimeoutException e) {
+                    throw new ConnectionPoolTimeoutException(String.format("Timed out after %d sec. waiting for a "
+                            + "connection to docker, all %d connections are in use. Raise %s or %s to allow more "
+                            + "concurrent calls.", settings.getConnectionRequestTimeout(), maxConnections,
+                            maxConnectionsProperty, TransportSettings.CONNECTION_REQUEST_TIMEOUT_PROPERTY));
+                }
+                inFlight.started();
+                return connection;
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(final HttpClientConnection conn, final Object newState, final long validDuration,
+                                  final TimeUnit timeUnit) {
+        inFlight.finished();
+        delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+    }
+
+    @Override
+    public void connect(final HttpClientConnection conn, final HttpRoute route, final int connectTimeout,
+                        final HttpContext context) throws IOException {
+        openedConnections.incrementAndGet();
+        delegate.connect(conn, route, connectTimeout, context);
+    }
+
+    @Override
+    public void upgrade(final HttpClientConnection conn, final HttpRoute route, final HttpContext context)
+            throws IOException {
+        delegate.upgrade(conn, route, context);
+    }
+
+    @Override
+    public void routeComplete(final HttpClientConnection conn, final HttpRoute route, final HttpContext context)
+            throws IOException {
+        delegate.routeComplete(conn, route, context);
+    }
+
+    @Override
+    public void closeIdleConnections(final long idletime, final TimeUnit timeUnit) {
+        delegate.closeIdleConnections(idletime, timeUnit);
+    }
+
+    @Override
+    public void closeExpiredConnections() {
+        delegate.closeExpiredConnections();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.WebTarget;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * This class represents the connection layer to a single docker daemon. One transport is shared by all remote api
+ * services that talk to the same daemon, so they also share its http client and connections.
+ */
+public abstract class DockerTransport {
+
+    /**
+     * Creates the transport for a docker daemon listening on a tcp socket.
+     *
+     * @param dockerApiRoot the host and port of the daemon, formatted as host:port
+     * @return a new {@link DockerTransport}, the caller is responsible for closing it
+     */
+    public static DockerTransport forApiRoot(final String dockerApiRoot) {
+        return new PooledHttpTransport(dockerApiRoot, TransportSettings.fromSystemProperties());
+    }
+
+    /**
+     * Creates the transport for a docker daemon listening on a unix domain socket, like /var/run/docker.sock.
+     *
+     * @param socketPath the path of the socket
+     * @return a new {@link DockerTransport}, the caller is responsible for closing it
+     */
+    public static DockerTransport forUnixSocket(final Path socketPath) {
+        return new UnixSocketTransport(socketPath, TransportSettings.fromSystemProperties());
+    }
+
+    /**
+     * @return the target pointing at the root of the docker daemon, without the api version
+     */
+    public abstract WebTarget getRootTarget();
+
+    /**
+     * Sends a GET request for a response that is read while docker is still writing it, like followed logs or events.
+     * Closing the returned stream ends the request right away. Closing a response of the root target would make the
+     * http client read the rest of the body first, which never ends for a followed stream.
+     *
+     * @param target the target to get, created from {@link #getRootTarget()}
+     * @return the body of the response, the caller has to close it
+     * @throws WebApplicationException when docker answers with an error status
+     * @throws ProcessingException     when docker can't be reached
+     */
+    public abstract InputStream openStream(WebTarget target);
+
+    /**
+     * @return the connection statistics of this transport so far
+     */
+    public abstract TransportStatistics getStatistics();
+
+    /**
+     * @return the metrics of the calls made through the root target so far, per endpoint. Streams opened with
+     * {@link #openStream(WebTarget)} bypass the filters of the root target and are not part of them.
+     */
+    public abstract ApiMetrics getMetrics();
+
+    /**
+     * Closes the http client and all connections of this transport, it can't be used afterwards.
+     */
+    public abstract void close();
+}
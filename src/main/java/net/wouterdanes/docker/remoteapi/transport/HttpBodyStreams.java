@@ -0,0 +1,238 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams that frame http/1.1 message bodies on top of a raw connection: fixed length bodies, chunked bodies and the
+ * request and status lines and headers in front of them.
+ */
+final class HttpBodyStreams {
+
+    private HttpBodyStreams() {
+    }
+
+    /**
+     * Reads a single CRLF (or LF) terminated line.
+     *
+     * @return the line without line terminator, or null when the stream ended before any character was read
+     */
+    static String readLine(final InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    static void writeLine(final OutputStream out, final String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.ISO_8859_1));
+        out.write('\r');
+        out.write('\n');
+    }
+
+    /**
+     * Reads a body of which the length is known up front, reporting end of stream after the last byte.
+     */
+    static class FixedLengthInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(final InputStream in, final long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed before the end of the response body");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed before the end of the response body");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        /**
+         * @return the number of bytes of the body that weren't read yet
+         */
+        long getRemaining() {
+            return remaining;
+        }
+    }
+
+    /**
+     * Decodes a body sent with "Transfer-Encoding: chunked".
+     */
+    static class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private long remainingInChunk;
+        private boolean finished;
+
+        ChunkedInputStream(final InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (!ensureChunkData()) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remainingInChunk));
+            if (read == -1) {
+                throw new EOFException("Connection closed in the middle of a chunk");
+            }
+            remainingInChunk -= read;
+            if (remainingInChunk == 0) {
+                readLine(in);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return finished ? 0 : (int) Math.min(in.available(), remainingInChunk);
+        }
+
+        private boolean ensureChunkData() throws IOException {
+            if (finished) {
+                return false;
+            }
+            if (remainingInChunk > 0) {
+                return true;
+            }
+            String sizeLine = readLine(in);
+            if (sizeLine == null) {
+                throw new EOFException("Connection closed before the last chunk");
+            }
+            int extension = sizeLine.indexOf(';');
+            String size = (extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim();
+            remainingInChunk = Long.parseLong(size, 16);
+            if (remainingInChunk == 0) {
+                String trailer;
+                do {
+                    trailer = readLine(in);
+                } while (trailer != null && !trailer.isEmpty());
+                finished = true;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Encodes everything written to it as chunks. Closing the stream writes the last chunk, but leaves the underlying
+     * connection open.
+     */
+    static class ChunkedOutputStream extends FilterOutputStream {
+        private boolean closed;
+
+        ChunkedOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            writeLine(out, Integer.toHexString(len));
+            out.write(b, off, len);
+            writeLine(out, "");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                writeLine(out, "0");
+                writeLine(out, "");
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Passes everything on, but only flushes on close so the connection stays open for the response.
+     */
+    static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests that are in flight: sent, but their response not completely read or closed yet. It remembers
+ * the highest number of requests that were in flight at the same time.
+ */
+class InFlightCounter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    void started() {
+        int current = inFlight.incrementAndGet();
+        peak.accumulateAndGet(current, Math::max);
+    }
+
+    void finished() {
+        inFlight.decrementAndGet();
+    }
+
+    int getPeak() {
+        return peak.get();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A Jersey client filter that records the calls of a http client in {@link ApiMetrics}: the latency in the filters,
+ * the bytes sent and received by counting the entity streams while they're written and read. Calls that fail before
+ * docker answers, like when it can't be reached, never get to the response filter and are not recorded.
+ */
+class MetricsFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor, ReaderInterceptor {
+
+    private static final String ENDPOINT = MetricsFilter.class.getName() + ".endpoint";
+    private static final String START = MetricsFilter.class.getName() + ".start";
+
+    private final ApiMetrics metrics;
+
+    MetricsFilter(final ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(final ClientRequestContext request) {
+        request.setProperty(ENDPOINT, ApiMetrics.getEndpoint(request.getMethod(), request.getUri().getRawPath()));
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(final ClientRequestContext request, final ClientResponseContext response) {
+        Object endpoint = request.getProperty(ENDPOINT);
+        Object start = request.getProperty(START);
+        if (endpoint != null && start != null) {
+            metrics.recordCall((String) endpoint, System.nanoTime() - (Long) start, response.getStatus() >= 400);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        Object endpoint = context.getProperty(ENDPOINT);
+        if (endpoint != null) {
+            context.setOutputStream(new FilterOutputStream(context.getOutputStream()) {
+                @Override
+                public void write(final int b) throws IOException {
+                    out.write(b);
+                    metrics.recordBytesSent((String) endpoint, 1);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    out.write(b, off, len);
+                    metrics.recordBytesSent((String) endpoint, len);
+                }
+            });
+        }
+        context.proceed();
+    }
+
+    @Override
+    public Object aroundReadFrom(final ReaderInterceptorContext context) throws IOException {
+        Object endpoint = context.getProperty(ENDPOINT);
+        if (endpoint != null) {
+            context.setInputStream(new FilterInputStream(context.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = in.read();
+                    if (b != -1) {
+                        metrics.recordBytesReceived((String) endpoint, 1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    int read = in.read(b, off, len);
+                    if (read > 0) {
+                        metrics.recordBytesReceived((String) endpoint, read);
+                    }
+                    return read;
+                }
+            });
+        }
+        return context.proceed();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.util.HttpsHelper;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.glassfish.jersey.SslConfigurator;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.security.Security;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DockerTransport} that talks http(s) to a docker daemon on a tcp socket. Connections are kept alive and
+ * pooled, so consecutive calls don't pay for setting up a new tcp connection and TLS session every time. Connections
+ * that have been idle for longer than the configured idle timeout are closed in the background. Followed streams hold
+ * on to their connection for as long as they are open, so they get a pool of their own: a build that follows the logs
+ * of many containers can't use up the connections that the other calls need.
+ */
+class PooledHttpTransport extends DockerTransport {
+
+    private static final String ENV_DOCKER_TLS_VERIFY = "DOCKER_TLS_VERIFY";
+
+    private final PoolingHttpClientConnectionManager connectionPool;
+    private final PoolingHttpClientConnectionManager streamPool;
+    private final CountingConnectionManager connectionManager;
+    private final ScheduledExecutorService idleConnectionEvictor;
+    private final Client client;
+    private final CloseableHttpClient streamingClient;
+    private final WebTarget rootTarget;
+    private final ApiMetrics metrics;
+
+    PooledHttpTransport(final String dockerApiRoot, final TransportSettings settings) {
+        boolean tlsEnabled = "1".equals(System.getenv(ENV_DOCKER_TLS_VERIFY));
+
+        connectionPool = new PoolingHttpClientConnectionManager(createSocketFactoryRegistry(tlsEnabled));
+        connectionPool.setMaxTotal(settings.getMaxConnections());
+        connectionPool.setDefaultMaxPerRoute(settings.getMaxConnections());
+        connectionManager = new CountingConnectionManager(connectionPool, settings);
+        streamPool = new PoolingHttpClientConnectionManager(createSocketFactoryRegistry(tlsEnabled));
+        streamPool.setMaxTotal(settings.getMaxStreams());
+        streamPool.setDefaultMaxPerRoute(settings.getMaxStreams());
+        // no socket timeout: builds, pulls and followed streams can be silent for a long time
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(settings.getConnectTimeout()))
+                .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(settings.getConnectionRequestTimeout()))
+                .build();
+
+        ClientConfig config = new ClientConfig()
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
+        metrics = new ApiMetrics(dockerApiRoot);
+        client = ClientBuilder.newClient(config)
+                .register(new MetricsFilter(metrics));
+        // only used for streams that may have to be aborted, they are closed rather than handed back to the pool
+        streamingClient = HttpClients.custom()
+                .setConnectionManager(connectionManager.forStreams(streamPool))
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        rootTarget = client.target((tlsEnabled ? "https://" : "http://") + dockerApiRoot);
+
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "docker-idle-connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int idleTimeout = settings.getIdleTimeout();
+        long evictionInterval = Math.max(1, idleTimeout / 2);
+        idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            connectionPool.closeExpiredConnections();
+            connectionPool.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+            streamPool.closeExpiredConnections();
+            streamPool.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+        }, evictionInterval, evictionInterval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public WebTarget getRootTarget() {
+        return rootTarget;
+    }
+
+    @Override
+    public ApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public InputStream openStream(final WebTarget target) {
+        HttpGet request = new HttpGet(target.getUri());
+        CloseableHttpResponse response;
+        InputStream body;
+        try {
+            response = streamingClient.execute(request);
+            StatusLine status = response.getStatusLine();
+            if (status.getStatusCode() >= HttpStatus.SC_MULTIPLE_CHOICES) {
+                request.abort();
+                throw new WebApplicationException(status.getReasonPhrase(), status.getStatusCode());
+            }
+            body = response.getEntity() != null
+                    ? response.getEntity().getContent()
+                    : new ByteArrayInputStream(new byte[0]);
+        } catch (IOException e) {
+            request.abort();
+            throw new ProcessingException("Cannot get " + target.getUri(), e);
+        }
+        return new FilterInputStream(body) {
+            @Override
+            public void close() {
+                // aborting closes the connection, closing the response would read the rest of the body first
+                request.abort();
+            }
+        };
+    }
+
+    @Override
+    public TransportStatistics getStatistics() {
+        return connectionManager.getStatistics();
+    }
+
+    @Override
+    public void close() {
+        idleConnectionEvictor.shutdownNow();
+        client.close();
+        connectionPool.shutdown();
+        streamPool.shutdown();
+    }
+
+    private static Registry<ConnectionSocketFactory> createSocketFactoryRegistry(final boolean tlsEnabled) {
+        RegistryBuilder<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory());
+        if (tlsEnabled) {
+            registry.register("https", new SSLConnectionSocketFactory(createSslContext(),
+                    SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER));
+        }
+        return registry.build();
+    }
+
+    private static SSLContext createSslContext() {
+        Security.addProvider(new BouncyCastleProvider());
+
+        String certPath = System.getenv("DOCKER_CERT_PATH");
+        if (certPath == null) {
+            certPath = System.getProperty("USER_HOME") + File.separator + ".docker";
+        }
+
+        ensureThatCertificatesExist(certPath);
+
+        KeyStore keyStore;
+        KeyStore trustStore;
+        try {
+            keyStore = HttpsHelper.createKeyStore(certPath);
+            trustStore = HttpsHelper.createTrustStore(certPath);
+        } catch (Exception e) {
+            throw new DockerException("Can't load docker certificates", e);
+        }
+
+        return SslConfigurator.newInstance()
+                .keyStore(keyStore)
+                .keyPassword(HttpsHelper.KEYSTORE_PWD)
+                .trustStore(trustStore)
+                .createSSLContext();
+    }
+
+    private static void ensureThatCertificatesExist(final String certPath) {
+        String[] files = {"ca.pem", "cert.pem", "key.pem"};
+        for (String file : files) {
+            Path path = Paths.get(certPath, file);
+            boolean exists = Files.exists(path);
+            if (!exists) {
+                throw new DockerException(String.format("%s not found in cert path (%s), make sure that ca.pem, " +
+                        "cert.pem and key.pem are available there.", file, certPath));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import java.util.Optional;
+
+/**
+ * Holds the connection pool settings of a {@link DockerTransport}. The settings can be changed on the command line
+ * like such:
+ * <pre>-D{@value #MAX_CONNECTIONS_PROPERTY}=[connections] -D{@value #IDLE_TIMEOUT_PROPERTY}=[seconds]
+ * -D{@value #CONNECT_TIMEOUT_PROPERTY}=[seconds] -D{@value #CONNECTION_REQUEST_TIMEOUT_PROPERTY}=[seconds]
+ * -D{@value #MAX_STREAMS_PROPERTY}=[connections]</pre>
+ */
+public class TransportSettings {
+
+    public static final String MAX_CONNECTIONS_PROPERTY = "docker.maxConnections";
+    public static final String IDLE_TIMEOUT_PROPERTY = "docker.connectionIdleTimeout";
+    public static final String CONNECT_TIMEOUT_PROPERTY = "docker.connectTimeout";
+    public static final String CONNECTION_REQUEST_TIMEOUT_PROPERTY = "docker.connectionRequestTimeout";
+    public static final String MAX_STREAMS_PROPERTY = "docker.maxStreams";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int DEFAULT_IDLE_TIMEOUT = 30;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10;
+    public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 120;
+    public static final int DEFAULT_MAX_STREAMS = 100;
+
+    private final int maxConnections;
+    private final int idleTimeout;
+    private final int connectTimeout;
+    private final int connectionRequestTimeout;
+    private final int maxStreams;
+
+    public TransportSettings(final int maxConnections, final int idleTimeout) {
+        this(maxConnections, idleTimeout, DEFAULT_CONNECT_TIMEOUT, DEFAULT_CONNECTION_REQUEST_TIMEOUT);
+    }
+
+    public TransportSettings(final int maxConnections, final int idleTimeout, final int connectTimeout,
+                             final int connectionRequestTimeout) {
+        this(maxConnections, idleTimeout, connectTimeout, connectionRequestTimeout, DEFAULT_MAX_STREAMS);
+    }
+
+    public TransportSettings(final int maxConnections, final int idleTimeout, final int connectTimeout,
+                             final int connectionRequestTimeout, final int maxStreams) {
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.connectTimeout = connectTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.maxStreams = maxStreams;
+    }
+
+    public static TransportSettings fromSystemProperties() {
+        return new TransportSettings(
+                getIntegerProperty(MAX_CONNECTIONS_PROPERTY).orElse(DEFAULT_MAX_CONNECTIONS),
+                getIntegerProperty(IDLE_TIMEOUT_PROPERTY).orElse(DEFAULT_IDLE_TIMEOUT),
+                getIntegerProperty(CONNECT_TIMEOUT_PROPERTY).orElse(DEFAULT_CONNECT_TIMEOUT),
+                getIntegerProperty(CONNECTION_REQUEST_TIMEOUT_PROPERTY).orElse(DEFAULT_CONNECTION_REQUEST_TIMEOUT),
+                getIntegerProperty(MAX_STREAMS_PROPERTY).orElse(DEFAULT_MAX_STREAMS));
+    }
+
+    /**
+     * @return the maximum number of connections that are kept open to one docker daemon
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return the number of seconds after which an unused connection gets closed
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @return the number of seconds to wait for a new connection to docker to be set up
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return the number of seconds a request waits for a free connection when all connections of the pool are in use
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * @return the maximum number of followed streams, like log tails and events, that are open to one docker daemon at
+     * the same time. Streams have their own connections, so they never use up the connections of other calls.
+     */
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+
+    private static Optional<Integer> getIntegerProperty(final String name) {
+        Optional<String> value = Optional.ofNullable(System.getProperty(name));
+        return value.isPresent() ? Optional.of(Integer.valueOf(value.get())) : Optional.empty();
+    }
+}
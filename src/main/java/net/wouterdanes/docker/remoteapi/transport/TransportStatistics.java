@@ -0,0 +1,65 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+/**
+ * Holds the number of requests a {@link DockerTransport} made, how many new connections it had to open for them and
+ * how many requests were in flight at the same time at most.
+ */
+public class TransportStatistics {
+
+    private final long requests;
+    private final long openedConnections;
+    private final int peakInFlightRequests;
+
+    public TransportStatistics(final long requests, final long openedConnections) {
+        this(requests, openedConnections, 0);
+    }
+
+    public TransportStatistics(final long requests, final long openedConnections, final int peakInFlightRequests) {
+        this.requests = requests;
+        this.openedConnections = openedConnections;
+        this.peakInFlightRequests = peakInFlightRequests;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getOpenedConnections() {
+        return openedConnections;
+    }
+
+    /**
+     * @return the highest number of requests that were sent but whose responses weren't read completely yet, at the
+     * same time. Followed logs and events count as in flight for as long as they're followed.
+     */
+    public int getPeakInFlightRequests() {
+        return peakInFlightRequests;
+    }
+
+    public long getReusedConnections() {
+        return Math.max(0, requests - openedConnections);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d request(s), %d new connection(s), %d reused connection(s), at most %d request(s) "
+                + "in flight", requests, openedConnections, getReusedConnections(), peakInFlightRequests);
+    }
+}
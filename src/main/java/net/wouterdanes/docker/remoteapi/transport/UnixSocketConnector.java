@@ -0,0 +1,418 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Jersey {@link Connector} that speaks http/1.1 over a unix domain socket, like /var/run/docker.sock. Connections
+ * are kept alive and reused as long as the daemon allows it. Unix domain socket channels are only available from
+ * Java 16 on, so they are opened reflectively; this way the plugin still runs on older JVMs when using tcp.
+ */
+class UnixSocketConnector implements Connector {
+
+    private static final int BUFFER_SIZE = 8192;
+    /** The most of an unread body that is skipped to keep its connection, more than that costs more than a new one */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final Path socketPath;
+    private final TransportSettings settings;
+    private final Deque<Connection> idleConnections = new ArrayDeque<>();
+    private final Set<Connection> openConnections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong openedConnections = new AtomicLong();
+    private final InFlightCounter inFlight = new InFlightCounter();
+    private boolean closed;
+
+    UnixSocketConnector(final Path socketPath, final TransportSettings settings) {
+        this.socketPath = socketPath;
+        this.settings = settings;
+    }
+
+    TransportStatistics getStatistics() {
+        return new TransportStatistics(requests.get(), openedConnections.get(), inFlight.getPeak());
+    }
+
+    @Override
+    public ClientResponse apply(final ClientRequest request) {
+        requests.incrementAndGet();
+        inFlight.started();
+        try {
+            return send(request);
+        } catch (RuntimeException e) {
+            inFlight.finished();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request and reads the head of the response, the request is in flight until its body is done.
+     */
+    private ClientResponse send(final ClientRequest request) {
+        Connection connection = leaseConnection();
+        try {
+            return execute(request, connection);
+        } catch (IOException e) {
+            if (connection.reused && !request.hasEntity()) {
+                // the daemon may have closed the idle connection in the meantime, try once more on a new one
+                try {
+                    return execute(request, openConnection());
+                } catch (IOException retryException) {
+                    throw new ProcessingException(retryException);
+                }
+            }
+            throw new ProcessingException(e);
+        }
+    }
+
+    @Override
+    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+        try {
+            callback.response(apply(request));
+        } catch (Throwable t) {
+            callback.failure(t);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public String getName() {
+        return "Unix domain socket connector (" + socketPath + ")";
+    }
+
+    @Override
+    public void close() {
+        synchronized (idleConnections) {
+            closed = true;
+            idleConnections.clear();
+        }
+        // this includes connections that are still reading a response, like a stream of events
+        openConnections.forEach(Connection::close);
+    }
+
+    private ClientResponse execute(final ClientRequest request, final Connection connection) throws IOException {
+        try {
+            writeRequest(request, connection);
+            return readResponse(request, connection);
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static void writeRequest(final ClientRequest request, final Connection connection) throws IOException {
+        URI uri = request.getUri();
+        String target = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        String requestLine = request.getMethod() + " " + target + " HTTP/1.1";
+        if (request.hasEntity()) {
+            request.setStreamProvider(contentLength -> {
+                writeHead(connection.out, requestLine, request.getStringHeaders(), contentLength);
+                return contentLength >= 0
+                        ? new HttpBodyStreams.NonClosingOutputStream(connection.out)
+                        : new HttpBodyStreams.ChunkedOutputStream(connection.out);
+            });
+            request.writeEntity();
+        } else {
+            boolean sendsBody = HttpMethod.POST.equals(request.getMethod()) || HttpMethod.PUT.equals(request.getMethod());
+            writeHead(connection.out, requestLine, request.getStringHeaders(), sendsBody ? 0 : -2);
+        }
+        connection.out.flush();
+    }
+
+    /**
+     * Writes the request line and headers.
+     *
+     * @param contentLength the length of the body, -1 for a chunked body or -2 for no body at all
+     */
+    private static void writeHead(final OutputStream out, final String requestLine,
+                                  final MultivaluedMap<String, String> headers, final int contentLength)
+            throws IOException {
+        HttpBodyStreams.writeLine(out, requestLine);
+        HttpBodyStreams.writeLine(out, "Host: docker");
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                HttpBodyStreams.writeLine(out, header.getKey() + ": " + value);
+            }
+        }
+        if (contentLength >= 0) {
+            HttpBodyStreams.writeLine(out, HttpHeaders.CONTENT_LENGTH + ": " + contentLength);
+        } else if (contentLength == -1) {
+            HttpBodyStreams.writeLine(out, "Transfer-Encoding: chunked");
+        }
+        HttpBodyStreams.writeLine(out, "");
+    }
+
+    private ClientResponse readResponse(final ClientRequest request, final Connection connection) throws IOException {
+        String statusLine = HttpBodyStreams.readLine(connection.in);
+        if (statusLine == null) {
+            throw new IOException("Docker closed the connection without sending a response");
+        }
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid status line from docker: " + statusLine);
+        }
+        int statusCode = Integer.parseInt(statusParts[1]);
+        String reasonPhrase = statusParts.length > 2 ? statusParts[2] : "";
+
+        ClientResponse response = new ClientResponse(Statuses.from(statusCode, reasonPhrase), request);
+        String line;
+        while ((line = HttpBodyStreams.readLine(connection.in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                response.getHeaders().add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+
+        boolean keepAlive = "HTTP/1.1".equals(statusParts[0])
+                && !"close".equalsIgnoreCase(response.getHeaderString("Connection"));
+        String transferEncoding = response.getHeaderString("Transfer-Encoding");
+        String contentLength = response.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+
+        InputStream body;
+        if (HttpMethod.HEAD.equals(request.getMethod()) || statusCode == 204 || statusCode == 304
+                || statusCode / 100 == 1) {
+            body = new HttpBodyStreams.FixedLengthInputStream(connection.in, 0);
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            body = new HttpBodyStreams.ChunkedInputStream(connection.in);
+        } else if (contentLength != null) {
+            body = new HttpBodyStreams.FixedLengthInputStream(connection.in, Long.parseLong(contentLength.trim()));
+        } else {
+            // the body ends when the daemon closes the connection
+            body = connection.in;
+            keepAlive = false;
+        }
+        response.setEntityStream(new ResponseBodyInputStream(body, connection, keepAlive));
+        return response;
+    }
+
+    private Connection leaseConnection() {
+        synchronized (idleConnections) {
+            long now = System.nanoTime();
+            Connection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                if (now - connection.idleSince < TimeUnit.SECONDS.toNanos(settings.getIdleTimeout())) {
+                    connection.reused = true;
+                    return connection;
+                }
+                connection.close();
+            }
+        }
+        try {
+            return openConnection();
+        } catch (IOException e) {
+            throw new ProcessingException("Cannot connect to docker on " + socketPath, e);
+        }
+    }
+
+    private void releaseConnection(final Connection connection) {
+        synchronized (idleConnections) {
+            if (closed || idleConnections.size() >= settings.getMaxConnections()) {
+                connection.close();
+                return;
+            }
+            connection.idleSince = System.nanoTime();
+            idleConnections.addFirst(connection);
+        }
+    }
+
+    private Connection openConnection() throws IOException {
+        SocketChannel channel = openUnixSocketChannel(socketPath);
+        openedConnections.incrementAndGet();
+        Connection connection = new Connection(channel, openConnections);
+        openConnections.add(connection);
+        return connection;
+    }
+
+    private static SocketChannel openUnixSocketChannel(final Path path) throws IOException {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            SocketAddress address = (SocketAddress) addressClass.getMethod("of", Path.class).invoke(null, path);
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            SocketChannel channel = (SocketChannel) SocketChannel.class
+                    .getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unix);
+            try {
+                channel.connect(address);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return channel;
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | IllegalArgumentException e) {
+            throw new DockerException("Connecting to docker over a unix socket requires Java 16 or newer. " +
+                    "Use a tcp DOCKER_HOST on older Java versions.", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new DockerException("Cannot open unix socket " + path, e.getCause());
+        }
+    }
+
+    private static class Connection {
+        private final SocketChannel channel;
+        private final Set<Connection> openConnections;
+        private final InputStream in;
+        private final OutputStream out;
+        private boolean reused;
+        private long idleSince;
+
+        private Connection(final SocketChannel channel, final Set<Connection> openConnections) {
+            this.channel = channel;
+            this.openConnections = openConnections;
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        }
+
+        private void close() {
+            openConnections.remove(this);
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing we can do about it
+            }
+        }
+    }
+
+    /**
+     * Hands the connection back to the pool once the body has been read completely. A body that is closed before that,
+     * like the one of a call that only looks at the status, is skipped when the rest of it is short and has already
+     * arrived (or is known to be short), so its connection can be reused too. Otherwise, like for a followed stream,
+     * the connection is closed without waiting for the rest.
+     */
+    private class ResponseBodyInputStream extends InputStream {
+        private final InputStream body;
+        private final Connection connection;
+        private final boolean keepAlive;
+        private boolean done;
+
+        private ResponseBodyInputStream(final InputStream body, final Connection connection, final boolean keepAlive) {
+            this.body = body;
+            this.connection = connection;
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (done) {
+                return -1;
+            }
+            int b = body.read();
+            if (b == -1) {
+                finish(true);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            int read = body.read(b, off, len);
+            if (read == -1) {
+                finish(true);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return done ? 0 : body.available();
+        }
+
+        @Override
+        public void close() {
+            if (!done) {
+                finish(skipRest());
+            }
+        }
+
+        /**
+         * @return true when the rest of the body was skipped up to its end
+         */
+        private boolean skipRest() {
+            if (!keepAlive) {
+                return false;
+            }
+            // a body of known length arrives in full, a chunked one is only skipped as far as it's already buffered
+            boolean shortBody = body instanceof HttpBodyStreams.FixedLengthInputStream
+                    && ((HttpBodyStreams.FixedLengthInputStream) body).getRemaining() <= MAX_DRAIN_BYTES;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long skipped = 0;
+            try {
+                while (skipped <= MAX_DRAIN_BYTES && (shortBody || connection.in.available() > 0)) {
+                    int read = body.read(buffer);
+                    if (read == -1) {
+                        return true;
+                    }
+                    skipped += read;
+                }
+            } catch (IOException e) {
+                // the connection is broken, it gets closed
+            }
+            return false;
+        }
+
+        private void finish(final boolean completelyRead) {
+            if (done) {
+                return;
+            }
+            done = true;
+            inFlight.finished();
+            if (completelyRead && keepAlive) {
+                releaseConnection(connection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import org.glassfish.jersey.client.ClientConfig;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * A {@link DockerTransport} that talks to a docker daemon on its unix domain socket, so the daemon doesn't need to
+ * listen on tcp at all. Needs Java 16 or newer.
+ */
+class UnixSocketTransport extends DockerTransport {
+
+    // the host part is ignored by the connector, the uri just has to be a valid http uri
+    private static final String ROOT_URI = "http://docker";
+
+    private final UnixSocketConnector connector;
+    private final Client client;
+    private final WebTarget rootTarget;
+    private final ApiMetrics metrics;
+
+    UnixSocketTransport(final Path socketPath, final TransportSettings settings) {
+        connector = new UnixSocketConnector(socketPath, settings);
+        ClientConfig config = new ClientConfig().connectorProvider((client, configuration) -> connector);
+        metrics = new ApiMetrics("unix://" + socketPath);
+        client = ClientBuilder.newClient(config)
+                .register(new MetricsFilter(metrics));
+        rootTarget = client.target(ROOT_URI);
+    }
+
+    @Override
+    public WebTarget getRootTarget() {
+        return rootTarget;
+    }
+
+    @Override
+    public ApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public InputStream openStream(final WebTarget target) {
+        Response response = target.request().get();
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            response.close();
+            throw new WebApplicationException(response.getStatusInfo().getReasonPhrase(), response.getStatus());
+        }
+        // jersey hands out an entity stream that ignores close(), so close the response instead. The connector then
+        // closes the connection when the body wasn't read to its end, it doesn't read the rest.
+        return new FilterInputStream(response.readEntity(InputStream.class)) {
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+
+    @Override
+    public TransportStatistics getStatistics() {
+        return connector.getStatistics();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
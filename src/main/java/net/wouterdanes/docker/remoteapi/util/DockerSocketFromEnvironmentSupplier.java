@@ -0,0 +1,35 @@
+package net.wouterdanes.docker.remoteapi.util;
+
+import net.wouterdanes.docker.provider.RemoteDockerProvider;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Supplies the path of the docker unix socket from the environment variable
+ * '{@value net.wouterdanes.docker.provider.RemoteDockerProvider#DOCKER_HOST_SYSTEM_ENV}', when it looks like
+ * unix:///var/run/docker.sock
+ */
+public final class DockerSocketFromEnvironmentSupplier extends DockerEnvironmentSupplier
+        implements Supplier<Optional<Path>> {
+
+    public static final DockerSocketFromEnvironmentSupplier INSTANCE = new DockerSocketFromEnvironmentSupplier();
+
+    private DockerSocketFromEnvironmentSupplier() { }
+
+    @Override
+    public Optional<Path> get() {
+        Optional<URI> dockerUriFromEnvironment = getDockerUriFromEnvironment();
+        if (!dockerUriFromEnvironment.isPresent()) {
+            return Optional.empty();
+        }
+        URI dockerUrl = dockerUriFromEnvironment.get();
+        boolean isUnixSocket = RemoteDockerProvider.UNIX_PROTOCOL.equalsIgnoreCase(dockerUrl.getScheme());
+        return isUnixSocket && dockerUrl.getPath() != null && !dockerUrl.getPath().isEmpty()
+                ? Optional.of(Paths.get(dockerUrl.getPath()))
+                : Optional.empty();
+    }
+}
@@ -17,19 +17,37 @@
 
 package net.wouterdanes.docker.maven;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.wouterdanes.docker.provider.AbstractFakeDockerProvider;
+import net.wouterdanes.docker.provider.DockerProviderSupplier;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class AbstractDockerMojoTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testThatMojoIsNotExecutedWhenSkipIsSet() throws Exception {
         AbstractDockerMojo mojo = new AbstractDockerMojo() {
@@ -52,4 +70,46 @@ public class AbstractDockerMojoTest {
 
         Mockito.verify(mojo, atLeastOnce()).doExecute();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testThatTheMetricsOfTheCallsToDockerAreWrittenAtTheEndOfEveryGoal() throws Exception {
+        String providerKey = UUID.randomUUID().toString();
+        FakeDockerProvider.instance = mock(FakeDockerProvider.class);
+        when(FakeDockerProvider.instance.getApiMetrics()).thenReturn(Optional.of(new ApiMetrics("localhost:2375")));
+        DockerProviderSupplier.registerProvider(providerKey, FakeDockerProvider.class);
+        File metricsFile = new File(temporaryFolder.getRoot(), "target/docker-plugin-metrics.json");
+        HashMap pluginContext = new HashMap();
+        AbstractDockerMojo mojo = new AbstractDockerMojo() {
+            @Override
+            protected void doExecute() throws MojoExecutionException, MojoFailureException {
+                getDockerProvider();
+            }
+        };
+        mojo.setPluginContext(pluginContext);
+        mojo.setProviderName(providerKey);
+        mojo.setMetricsFile(metricsFile);
+
+        try {
+            mojo.execute();
+            mojo.execute();
+        } finally {
+            DockerProviderSupplier.removeProvider(providerKey);
+        }
+
+        JsonObject report = new JsonParser().parse(new String(Files.readAllBytes(metricsFile.toPath()),
+                StandardCharsets.UTF_8)).getAsJsonObject();
+        assertEquals(2, report.getAsJsonArray("goals").size());
+        assertEquals("localhost:2375", report.getAsJsonArray("goals").get(1).getAsJsonObject()
+                .getAsJsonArray("daemons").get(0).getAsJsonObject()
+                .get("daemon").getAsString());
+    }
+
+    public static class FakeDockerProvider extends AbstractFakeDockerProvider {
+        private static FakeDockerProvider instance;
+
+        @Override
+        protected AbstractFakeDockerProvider getInstance() {
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class BufferedLogTest {
+
+    private final Log target = mock(Log.class);
+    private final BufferedLog log = new BufferedLog(target);
+
+    @Test
+    public void testThatMessagesAreHeldBackUntilTheLogIsFlushed() throws Exception {
+        log.info("Step 1 : FROM busybox");
+        log.warn("Step 2 : RUN true");
+
+        verifyZeroInteractions(target);
+        log.flush();
+        log.flush();
+
+        InOrder inOrder = inOrder(target);
+        inOrder.verify(target).info("Step 1 : FROM busybox");
+        inOrder.verify(target).warn("Step 2 : RUN true");
+        verifyNoMoreInteractions(target);
+    }
+
+    @Test
+    public void testThatTheSummaryCountsTheHeldBackLinesAndShowsTheLastOne() throws Exception {
+        assertFalse(log.getSummary().isPresent());
+
+        log.info("Step 1 : FROM busybox");
+        log.info("Step 2 : RUN sleep 3600\n");
+
+        String summary = log.getSummary().get();
+        assertTrue(summary, summary.contains("2 line(s) of output"));
+        assertTrue(summary, summary.endsWith("last: Step 2 : RUN sleep 3600"));
+    }
+
+    @Test
+    public void testThatThereIsNoSummaryAfterAFlush() throws Exception {
+        log.info("Step 1 : FROM busybox");
+
+        log.flush();
+
+        assertFalse(log.getSummary().isPresent());
+    }
+}
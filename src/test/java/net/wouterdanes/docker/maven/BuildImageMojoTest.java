@@ -22,17 +22,26 @@ import net.wouterdanes.docker.provider.DockerExceptionThrowingDockerProvider;
 import net.wouterdanes.docker.provider.DockerProviderSupplier;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
 import net.wouterdanes.docker.provider.model.PushableImage;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 
 public class BuildImageMojoTest {
 
@@ -43,6 +52,9 @@ public class BuildImageMojoTest {
     private static final String REGISTRY = UUID.randomUUID().toString();
     private static final String REGISTRYANDNAMEANDTAG = REGISTRY + "/" + NAMEANDTAG;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private BuildImageMojo mojo = new BuildImageMojo();
 
     private ImageBuildConfiguration mockImage;
@@ -50,6 +62,7 @@ public class BuildImageMojoTest {
     @Before
     public void setUp() throws Exception {
         mojo.setPluginContext(new HashMap());
+        mojo.setBuildCache(true);
 
         FakeDockerProvider.instance = Mockito.mock(FakeDockerProvider.class);
         Mockito.when(FakeDockerProvider.instance.buildImage(any(ImageBuildConfiguration.class))).thenReturn(IMAGEID);
@@ -122,6 +135,131 @@ public class BuildImageMojoTest {
         assertImageEnqueuedForPush(null);
     }
 
+    @Test
+    public void testThatAnImageWithAnUnchangedBuildContextIsNotRebuilt() throws Exception {
+        File cacheFile = temporaryFolder.newFile("build-cache.properties");
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(mockImage)).thenReturn("cafebabe");
+        Mockito.when(FakeDockerProvider.instance.hasImage(IMAGEID)).thenReturn(true);
+
+        mojo.setBuildCacheFile(cacheFile);
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        BuildImageMojo secondMojo = new BuildImageMojo();
+        secondMojo.setPluginContext(new HashMap());
+        secondMojo.setImages(Collections.singletonList(mockImage));
+        secondMojo.setBuildCacheFile(cacheFile);
+        secondMojo.setBuildCache(true);
+        secondMojo.setProviderName(FAKE_PROVIDER_KEY);
+        secondMojo.execute();
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(1)).buildImage(mockImage);
+        Mockito.verify(FakeDockerProvider.instance).tagImage(IMAGEID, NAMEANDTAG);
+        assertEquals(IMAGEID, secondMojo.getBuiltImages().iterator().next().getImageId());
+    }
+
+    @Test
+    public void testThatAnImageIsRebuiltWhenDockerNoLongerHasTheCachedImage() throws Exception {
+        File cacheFile = temporaryFolder.newFile("build-cache.properties");
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(mockImage)).thenReturn("cafebabe");
+        Mockito.when(FakeDockerProvider.instance.hasImage(IMAGEID)).thenReturn(false);
+
+        mojo.setBuildCacheFile(cacheFile);
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(mockImage);
+    }
+
+    @Test
+    public void testThatTheCacheIsNotUsedWhenItIsDisabled() throws Exception {
+        File cacheFile = temporaryFolder.newFile("build-cache.properties");
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(mockImage)).thenReturn("cafebabe");
+        Mockito.when(FakeDockerProvider.instance.hasImage(IMAGEID)).thenReturn(true);
+
+        mojo.setBuildCacheFile(cacheFile);
+        mojo.setBuildCache(false);
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(mockImage);
+        Mockito.verify(FakeDockerProvider.instance, Mockito.never()).getBuildContextDigest(mockImage);
+    }
+
+    @Test
+    public void testThatAnImageIsBuiltAfterTheImageItIsBuiltFrom() throws Exception {
+        ImageBuildConfiguration appImage = mockImageBuiltFrom("app", NAMEANDTAG);
+        Mockito.when(FakeDockerProvider.instance.buildImage(any(ImageBuildConfiguration.class))).thenAnswer(
+                invocation -> invocation.getArguments()[0] == mockImage ? IMAGEID : "app-image-id");
+
+        mojo.setImages(Arrays.asList(appImage, mockImage));
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        InOrder inOrder = Mockito.inOrder(FakeDockerProvider.instance);
+        inOrder.verify(FakeDockerProvider.instance).buildImage(mockImage);
+        inOrder.verify(FakeDockerProvider.instance).buildImage(appImage);
+        assertTrue(mojo.getPluginErrors().isEmpty());
+        assertEquals(2, mojo.getBuiltImages().size());
+    }
+
+    @Test
+    public void testThatAnImageIsRebuiltWhenTheImageItIsBuiltFromChanged() throws Exception {
+        File cacheFile = temporaryFolder.newFile("build-cache.properties");
+        ImageBuildConfiguration appImage = mockImageBuiltFrom("app", NAMEANDTAG);
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(mockImage)).thenReturn("base-context");
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(appImage)).thenReturn("app-context");
+        Mockito.when(FakeDockerProvider.instance.hasImage(anyString())).thenReturn(true);
+        Mockito.when(FakeDockerProvider.instance.buildImage(mockImage)).thenReturn("base-1", "base-2");
+        Mockito.when(FakeDockerProvider.instance.buildImage(appImage)).thenReturn("app-1", "app-2");
+
+        mojo.setImages(Arrays.asList(appImage, mockImage));
+        mojo.setBuildCacheFile(cacheFile);
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(1)).buildImage(appImage);
+
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(mockImage)).thenReturn("changed-base-context");
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(mockImage);
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(appImage);
+    }
+
+    @Test
+    public void testThatAnImageIsRebuiltWhenItsExternalBaseImageChanged() throws Exception {
+        File cacheFile = temporaryFolder.newFile("build-cache.properties");
+        ImageBuildConfiguration appImage = mockImageBuiltFrom("app", "ubuntu:14.04");
+        Mockito.when(FakeDockerProvider.instance.getBuildContextDigest(appImage)).thenReturn("app-context");
+        Mockito.when(FakeDockerProvider.instance.hasImage(anyString())).thenReturn(true);
+        Mockito.when(FakeDockerProvider.instance.buildImage(appImage)).thenReturn("app-1", "app-2");
+        Mockito.when(FakeDockerProvider.instance.getImageId("ubuntu:14.04"))
+                .thenReturn(Optional.of("ubuntu-1"))
+                .thenReturn(Optional.of("ubuntu-1"))
+                .thenReturn(Optional.of("ubuntu-2"));
+
+        mojo.setImages(Collections.singletonList(appImage));
+        mojo.setBuildCacheFile(cacheFile);
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(1)).buildImage(appImage);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(appImage);
+    }
+
+    @Test
+    public void testThatAnImageIsNotBuiltWhenTheImageItIsBuiltFromFails() throws Exception {
+        ImageBuildConfiguration appImage = mockImageBuiltFrom("app", NAMEANDTAG);
+        Mockito.when(FakeDockerProvider.instance.buildImage(mockImage)).thenThrow(new DockerException("broken"));
+
+        mojo.setImages(Arrays.asList(mockImage, appImage));
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.never()).buildImage(appImage);
+        assertEquals(2, mojo.getPluginErrors().size());
+        assertTrue(mojo.getBuiltImages().isEmpty());
+    }
+
     @Test(expected = MojoExecutionException.class)
     public void testThatTheMojoThrowsAnExceptionWhenDuplicateImageIdsExist() throws Exception {
         List<ImageBuildConfiguration> images = new ArrayList<>(2);
@@ -134,6 +272,16 @@ public class BuildImageMojoTest {
         assertImageEnqueuedForPush(null);
     }
 
+    private ImageBuildConfiguration mockImageBuiltFrom(String id, String baseImage) throws IOException {
+        File dockerFile = new File(temporaryFolder.newFolder(id), "Dockerfile");
+        Files.write(dockerFile.toPath(), Collections.singletonList("FROM " + baseImage), StandardCharsets.UTF_8);
+
+        ImageBuildConfiguration image = Mockito.mock(ImageBuildConfiguration.class);
+        Mockito.when(image.getId()).thenReturn(id);
+        Mockito.when(image.getDockerFile()).thenReturn(dockerFile);
+        return image;
+    }
+
     private void executeMojo(String provider) throws MojoExecutionException, MojoFailureException {
         mojo.setProviderName(provider);
         mojo.execute();
@@ -0,0 +1,64 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class DockerfileParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatTheBaseImageIsNormalized() throws Exception {
+        File dockerFile = writeDockerfile("# the app", "FROM mycompany/base", "ADD app.jar /app.jar");
+
+        assertEquals(Collections.singletonList("mycompany/base:latest"), DockerfileParser.getBaseImages(dockerFile));
+    }
+
+    @Test
+    public void testThatStagesFlagsAndContinuationsAreHandled() throws Exception {
+        File dockerFile = writeDockerfile(
+                "from --platform=linux/amd64 \\",
+                "    registry.example.com:5000/builder:1.2 AS build",
+                "RUN make",
+                "FROM build",
+                "FROM scratch",
+                "FROM $BASE_IMAGE",
+                "FROM app:2.0");
+
+        assertEquals(Arrays.asList("registry.example.com:5000/builder:1.2", "app:2.0"),
+                DockerfileParser.getBaseImages(dockerFile));
+    }
+
+    private File writeDockerfile(final String... lines) throws Exception {
+        File dockerFile = folder.newFile("Dockerfile");
+        Files.write(dockerFile.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return dockerFile;
+    }
+}
@@ -20,16 +20,22 @@ package net.wouterdanes.docker.maven;
 import net.wouterdanes.docker.provider.AbstractFakeDockerProvider;
 import net.wouterdanes.docker.provider.DockerProviderSupplier;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class PushImageMojoTest {
@@ -74,6 +80,113 @@ public class PushImageMojoTest {
 
     }
 
+    @Test
+    public void testThatImagesArePushedAtTheSameTime() throws Exception {
+        mojo.setPushParallelism(4);
+        CyclicBarrier allPushing = new CyclicBarrier(3);
+        when(FakeDockerProvider.instance.pushImage(Matchers.anyString())).then(invocation -> {
+            allPushing.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        mojo.enqueueForPushing("first-id", Optional.of("registry/first:1.0"));
+        mojo.enqueueForPushing("second-id", Optional.of("registry/second:1.0"));
+        mojo.enqueueForPushing("third-id", Optional.of("registry/third:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).pushImage("registry/first:1.0");
+        verify(FakeDockerProvider.instance).pushImage("registry/second:1.0");
+        verify(FakeDockerProvider.instance).pushImage("registry/third:1.0");
+    }
+
+    @Test
+    public void testThatATagIsOnlyPushedOnce() throws Exception {
+        mojo.enqueueForPushing("some-id", Optional.of("registry/app:1.0"));
+        mojo.enqueueForPushing("some-id", Optional.of("registry/app:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, times(1)).pushImage("registry/app:1.0");
+    }
+
+    @Test
+    public void testThatAFailedPushFailsTheBuildAfterTheOtherPushesFinished() throws Exception {
+        mojo.setPushParallelism(1);
+        when(FakeDockerProvider.instance.pushImage("registry/first:1.0")).thenThrow(new DockerException("denied"));
+        mojo.enqueueForPushing("first-id", Optional.of("registry/first:1.0"));
+        mojo.enqueueForPushing("second-id", Optional.of("registry/second:1.0"));
+
+        try {
+            mojo.execute();
+            fail("The build should have failed");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("first-id"));
+        }
+        verify(FakeDockerProvider.instance).pushImage("registry/second:1.0");
+    }
+
+    @Test
+    public void testThatATagTheRegistryAlreadyHasWithTheSameDigestIsNotPushed() throws Exception {
+        when(FakeDockerProvider.instance.getRepoDigests("registry:5000/app:1.0"))
+                .thenReturn(Arrays.asList("other:5000/app@sha256:aaaa", "registry:5000/app@sha256:bbbb"));
+        when(FakeDockerProvider.instance.getRegistryDigest("registry:5000/app:1.0"))
+                .thenReturn(Optional.of("sha256:bbbb"));
+        mojo.enqueueForPushing("some-id", Optional.of("registry:5000/app:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).pushImage(Matchers.anyString());
+    }
+
+    @Test
+    public void testThatATagIsPushedWhenTheRegistryHasAnotherDigest() throws Exception {
+        when(FakeDockerProvider.instance.getRepoDigests("registry:5000/app:1.0"))
+                .thenReturn(Arrays.asList("registry:5000/app@sha256:bbbb"));
+        when(FakeDockerProvider.instance.getRegistryDigest("registry:5000/app:1.0"))
+                .thenReturn(Optional.of("sha256:cccc"));
+        mojo.enqueueForPushing("some-id", Optional.of("registry:5000/app:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).pushImage("registry:5000/app:1.0");
+    }
+
+    @Test
+    public void testThatTheRegistryIsNotAskedWhenTheImageWasNeverPushedThere() throws Exception {
+        when(FakeDockerProvider.instance.getRepoDigests("registry:5000/app:1.0"))
+                .thenReturn(Arrays.asList("other:5000/app@sha256:aaaa"));
+        mojo.enqueueForPushing("some-id", Optional.of("registry:5000/app:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).getRegistryDigest(Matchers.anyString());
+        verify(FakeDockerProvider.instance).pushImage("registry:5000/app:1.0");
+    }
+
+    @Test
+    public void testThatATagIsPushedWhenTheDigestsCannotBeCompared() throws Exception {
+        when(FakeDockerProvider.instance.getRepoDigests("registry:5000/app:1.0"))
+                .thenReturn(Arrays.asList("registry:5000/app@sha256:bbbb"));
+        when(FakeDockerProvider.instance.getRegistryDigest("registry:5000/app:1.0"))
+                .thenThrow(new DockerException("connection refused"));
+        mojo.enqueueForPushing("some-id", Optional.of("registry:5000/app:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).pushImage("registry:5000/app:1.0");
+    }
+
+    @Test
+    public void testThatDigestsAreNotComparedWhenSkippingIsOff() throws Exception {
+        mojo.setSkipPushedImages(false);
+        mojo.enqueueForPushing("some-id", Optional.of("registry:5000/app:1.0"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).getRepoDigests(Matchers.anyString());
+        verify(FakeDockerProvider.instance).pushImage("registry:5000/app:1.0");
+    }
+
     public static class FakeDockerProvider extends AbstractFakeDockerProvider {
 
         private static FakeDockerProvider instance;
@@ -0,0 +1,196 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import com.sun.net.httpserver.HttpServer;
+import net.wouterdanes.docker.provider.DockerProvider;
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbe;
+import net.wouterdanes.docker.remoteapi.EventsService;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReadinessProbesTest {
+
+    private ScheduledExecutorService scheduler;
+    private ReadinessProbes probes;
+    private DockerProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = Executors.newScheduledThreadPool(2);
+        probes = new ReadinessProbes(scheduler, scheduler);
+        provider = mock(DockerProvider.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testThatTcpProbeSucceedsWhenSomethingListens() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            ReadinessProbe probe = new ReadinessProbe()
+                    .withType(ReadinessProbe.Type.TCP)
+                    .onPort("8080")
+                    .withTimeout(5);
+
+            CompletableFuture<Void> ready = probes.await(provider, "someId", portsOf(server.getLocalPort()), probe,
+                    30);
+
+            assertNull(ready.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testThatTheTriesOfAProbeRunOnTheTryExecutor() throws Exception {
+        ExecutorService tryExecutor = Executors.newCachedThreadPool();
+        AtomicInteger tries = new AtomicInteger();
+        ReadinessProbes countingProbes = new ReadinessProbes(scheduler, task -> {
+            tries.incrementAndGet();
+            tryExecutor.execute(task);
+        });
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            port = server.getLocalPort();
+        }
+        ReadinessProbe probe = new ReadinessProbe()
+                .withType(ReadinessProbe.Type.TCP)
+                .onPort("8080")
+                .withInterval(50)
+                .withTimeout(1);
+
+        try {
+            countingProbes.await(provider, "someId", portsOf(port), probe, 30).get(5, TimeUnit.SECONDS);
+            fail("The probe should fail, nothing listens on the port");
+        } catch (ExecutionException e) {
+            assertTrue(tries.get() > 1);
+        } finally {
+            tryExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testThatTcpProbeFailsWhenNothingListensBeforeTheTimeout() throws Exception {
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            port = server.getLocalPort();
+        }
+        ReadinessProbe probe = new ReadinessProbe()
+                .withType(ReadinessProbe.Type.TCP)
+                .onPort("8080/tcp")
+                .withInterval(50)
+                .withTimeout(1);
+
+        try {
+            probes.await(provider, "someId", portsOf(port), probe, 30).get(5, TimeUnit.SECONDS);
+            fail("The probe should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DockerException);
+            assertTrue(e.getCause().getMessage().contains("did not succeed within 1 sec."));
+        }
+    }
+
+    @Test
+    public void testThatHttpProbeTriesAgainUntilTheStatusIsAsExpected() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/health", exchange -> {
+            exchange.sendResponseHeaders(requests.incrementAndGet() < 3 ? 503 : 204, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            ReadinessProbe probe = new ReadinessProbe()
+                    .withType(ReadinessProbe.Type.HTTP)
+                    .onPort("8080")
+                    .withPath("health")
+                    .withInterval(20);
+
+            CompletableFuture<Void> ready = probes.await(provider, "someId",
+                    portsOf(server.getAddress().getPort()), probe, 30);
+
+            assertNull(ready.get(5, TimeUnit.SECONDS));
+            assertEquals(3, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testThatHealthProbeFailsWhenTheContainerStops() throws Exception {
+        when(provider.awaitContainerEvent(eq("someId"), Matchers.<String>anyVararg()))
+                .thenReturn(CompletableFuture.completedFuture(EventsService.DIE));
+        ReadinessProbe probe = new ReadinessProbe().withType(ReadinessProbe.Type.HEALTH);
+
+        try {
+            probes.await(provider, "someId", Collections.<ExposedPort>emptyList(), probe, 30)
+                    .get(5, TimeUnit.SECONDS);
+            fail("The probe should have failed");
+        } catch (ExecutionException e) {
+            assertEquals("The health probe failed, docker reported the container stopped", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testThatAllProbesFailAsSoonAsOneFails() throws Exception {
+        when(provider.awaitContainerEvent(eq("someId"), Matchers.<String>anyVararg()))
+                .thenReturn(new CompletableFuture<>());
+        List<ReadinessProbe> configured = Arrays.asList(
+                new ReadinessProbe().withType(ReadinessProbe.Type.HEALTH),
+                new ReadinessProbe().withType(ReadinessProbe.Type.TCP).onPort("9090"));
+
+        try {
+            probes.awaitAll(provider, "someId", portsOf(8080), configured, 30).get(5, TimeUnit.SECONDS);
+            fail("The probes should have failed");
+        } catch (ExecutionException e) {
+            assertEquals("The tcp probe on port 9090 can't run, the container doesn't expose port 9090",
+                    e.getCause().getMessage());
+        }
+    }
+
+    private static List<ExposedPort> portsOf(final int externalPort) {
+        return Collections.singletonList(new ExposedPort("8080/tcp", externalPort, "127.0.0.1"));
+    }
+}
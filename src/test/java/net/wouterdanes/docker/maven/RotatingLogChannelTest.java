@@ -0,0 +1,70 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RotatingLogChannelTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testThatTheFileIsRotatedAndOnlyTheRetainedFilesAreKept() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("db.log");
+
+        try (RotatingLogChannel channel = new RotatingLogChannel(file, 10, 2)) {
+            for (String line : new String[]{"first....\n", "second...\n", "third....\n", "fourth...\n"}) {
+                channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        assertEquals("fourth...\n", read(file));
+        assertEquals("third....\n", read(file.resolveSibling("db.log.1")));
+        assertEquals("second...\n", read(file.resolveSibling("db.log.2")));
+        assertFalse(Files.exists(file.resolveSibling("db.log.3")));
+    }
+
+    @Test
+    public void testThatFilesOfAnEarlierBuildAreRemoved() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("db.log");
+        Files.write(file, "old".getBytes(StandardCharsets.UTF_8));
+        Files.write(file.resolveSibling("db.log.1"), "older".getBytes(StandardCharsets.UTF_8));
+
+        try (RotatingLogChannel channel = new RotatingLogChannel(file, 10, 2)) {
+            channel.write(ByteBuffer.wrap("new\n".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        assertEquals("new\n", read(file));
+        assertFalse(Files.exists(file.resolveSibling("db.log.1")));
+    }
+
+    private static String read(final Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
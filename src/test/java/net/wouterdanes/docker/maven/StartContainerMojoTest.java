@@ -23,27 +23,46 @@ import net.wouterdanes.docker.provider.DockerProviderSupplier;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ReadinessProbe;
+import net.wouterdanes.docker.remoteapi.EventsService;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerLink;
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.project.MavenProject;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 public class StartContainerMojoTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private static final String FAKE_PROVIDER_KEY = UUID.randomUUID().toString();
 
     private final MavenProject mavenProject = mock(MavenProject.class);
@@ -197,6 +216,24 @@ public class StartContainerMojoTest {
 
     }
 
+    @Test
+    public void testThatMojoAddsErrorWhenAReadinessProbeHasAnUnknownType() throws Exception {
+
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .fromImage("some-image")
+                .withId("some-container")
+                .withReadinessProbes(new ReadinessProbe().withType("htp").onPort("8080"));
+
+        StartContainerMojo mojo = createMojo(container, FAKE_PROVIDER_KEY);
+
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("some-container"));
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("htp"));
+        verify(FakeDockerProvider.instance, never()).startContainer(any(ContainerStartConfiguration.class));
+    }
+
     @Test
     public void testThatMojoAsksForLogsAndDoesNotLogAnErrorWhenLogsIndicateServerStarted() throws Exception {
 
@@ -237,6 +274,128 @@ public class StartContainerMojoTest {
 
     }
 
+    @Test
+    public void testThatMojoDoesNotFetchTheLogsWhenTheFollowedLogsMatch() throws Exception {
+
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .fromImage("some-image")
+                .waitForStartup("hello world!")
+                .withId("some-container")
+                .withStartupTimeout(1);
+
+        when(FakeDockerProvider.instance.awaitLogLine(eq("someId"), any(Pattern.class)))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        StartContainerMojo mojo = createMojo(container);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).getLogs("someId");
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatMojoAddsErrorWhenTheFollowedLogsEndWithoutAMatch() throws Exception {
+
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .fromImage("some-image")
+                .waitForStartup("hello world!")
+                .withId("some-container")
+                .withStartupTimeout(30);
+
+        when(FakeDockerProvider.instance.awaitLogLine(eq("someId"), any(Pattern.class)))
+                .thenReturn(CompletableFuture.completedFuture(false));
+
+        StartContainerMojo mojo = createMojo(container);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).getLogs("someId");
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("stopped before it finished startup"));
+    }
+
+    @Test
+    public void testThatMojoWaitsForTheReadinessProbesOfAContainer() throws Exception {
+
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            ContainerStartConfiguration container = new ContainerStartConfiguration()
+                    .fromImage("some-image")
+                    .withId("some-container")
+                    .withReadinessProbes(new ReadinessProbe().withType(ReadinessProbe.Type.TCP).onPort("5432"))
+                    .withStartupTimeout(5);
+
+            when(FakeDockerProvider.instance.getExposedPorts("someId")).thenReturn(Collections.singletonList(
+                    new ExposedPort("5432/tcp", server.getLocalPort(), "127.0.0.1")));
+
+            StartContainerMojo mojo = createMojo(container);
+
+            mojo.execute();
+
+            assertTrue(mojo.getPluginErrors().isEmpty());
+            verify(FakeDockerProvider.instance, never()).getLogs("someId");
+        }
+    }
+
+    @Test
+    public void testThatMojoAddsErrorWhenAReadinessProbeFails() throws Exception {
+
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .fromImage("some-image")
+                .withId("some-container")
+                .withReadinessProbes(new ReadinessProbe().withType(ReadinessProbe.Type.HTTP).onPort("8080"))
+                .withStartupTimeout(5);
+
+        StartContainerMojo mojo = createMojo(container);
+
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage()
+                .contains("Container some-container did not become ready"));
+    }
+
+    @Test
+    public void testThatMojoFollowsTheLogsOfAContainerWhenAskedTo() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .fromImage("some-image")
+                .withId("some-container");
+        StartContainerMojo mojo = createMojo(container);
+        mojo.setLogs(temporaryFolder.getRoot().getPath());
+        mojo.setTailLogs(true);
+        mojo.setLogMaxSize(10);
+        mojo.setLogRetention(5);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).tailLogs(eq("someId"), any(WritableByteChannel.class),
+                any(WritableByteChannel.class));
+        assertTrue(new File(temporaryFolder.getRoot(), "some-container.log").exists());
+    }
+
+    @Test
+    public void testThatMojoStopsWaitingWhenTheContainerDies() throws Exception {
+
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .fromImage("some-image")
+                .waitForStartup("hello world!")
+                .withId("some-container")
+                .withStartupTimeout(30);
+
+        when(FakeDockerProvider.instance.getLogs("someId")).thenReturn("Oh dear, something went wrong!");
+        when(FakeDockerProvider.instance.awaitContainerEvent(eq("someId"), Matchers.<String>anyVararg()))
+                .thenReturn(CompletableFuture.completedFuture(EventsService.DIE));
+
+        StartContainerMojo mojo = createMojo(container);
+
+        long start = System.currentTimeMillis();
+        mojo.execute();
+
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("stopped before it finished startup"));
+    }
+
     @Test
     public void testThatMojoWaitsLongEnoughForTheStartupToFinish() throws Exception {
 
@@ -309,6 +468,142 @@ public class StartContainerMojoTest {
 
     }
 
+    @Test
+    public void testThatIndependentContainersAreStartedAtTheSameTime() throws Exception {
+        ContainerStartConfiguration database = new ContainerStartConfiguration().withId("database");
+        ContainerStartConfiguration broker = new ContainerStartConfiguration().withId("broker");
+        ContainerStartConfiguration app = new ContainerStartConfiguration()
+                .withId("app")
+                .withLinks(new ContainerLink().toContainer("database").withAlias("db"),
+                        new ContainerLink().toContainer("broker").withAlias("mq"));
+
+        final CyclicBarrier bothStarting = new CyclicBarrier(2);
+        Answer<ContainerInspectionResult> startTogether = new Answer<ContainerInspectionResult>() {
+            @Override
+            public ContainerInspectionResult answer(final InvocationOnMock invocation) throws Throwable {
+                bothStarting.await(5, TimeUnit.SECONDS);
+                return new ContainerInspectionResult();
+            }
+        };
+        when(FakeDockerProvider.instance.startContainer(database)).then(startTogether);
+        when(FakeDockerProvider.instance.startContainer(broker)).then(startTogether);
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(database, broker, app), FAKE_PROVIDER_KEY);
+
+        mojo.execute();
+
+        assertEquals(Collections.emptyList(), mojo.getPluginErrors());
+        InOrder databaseFirst = inOrder(FakeDockerProvider.instance);
+        databaseFirst.verify(FakeDockerProvider.instance).startContainer(database);
+        databaseFirst.verify(FakeDockerProvider.instance).startContainer(app);
+        InOrder brokerFirst = inOrder(FakeDockerProvider.instance);
+        brokerFirst.verify(FakeDockerProvider.instance).startContainer(broker);
+        brokerFirst.verify(FakeDockerProvider.instance).startContainer(app);
+    }
+
+    @Test
+    public void testThatAContainerIsNotStartedWhenALinkedContainerDoesNotFinishStartup() throws Exception {
+        ContainerStartConfiguration database = new ContainerStartConfiguration()
+                .withId("database")
+                .waitForStartup("ready to accept connections")
+                .withStartupTimeout(30);
+        ContainerStartConfiguration app = new ContainerStartConfiguration()
+                .withId("app")
+                .withLink(new ContainerLink().toContainer("database").withAlias("db"));
+
+        when(FakeDockerProvider.instance.awaitLogLine(eq("someId"), any(Pattern.class)))
+                .thenReturn(CompletableFuture.completedFuture(false));
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(database, app), FAKE_PROVIDER_KEY);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).startContainer(database);
+        verify(FakeDockerProvider.instance, never()).startContainer(app);
+        assertEquals(2, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().stream()
+                .anyMatch(error -> error.getMessage().contains("stopped before it finished startup")));
+        assertTrue(mojo.getPluginErrors().stream()
+                .anyMatch(error -> error.getMessage().contains("Failed to start container 'app'")));
+    }
+
+    @Test
+    public void testThatAContainerIsNotStartedWhenALinkedContainerFailsToStart() throws Exception {
+        ContainerStartConfiguration database = new ContainerStartConfiguration().withId("database");
+        ContainerStartConfiguration app = new ContainerStartConfiguration()
+                .withId("app")
+                .withLink(new ContainerLink().toContainer("database").withAlias("db"));
+
+        when(FakeDockerProvider.instance.startContainer(database)).thenThrow(new DockerException("no space left"));
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(database, app), FAKE_PROVIDER_KEY);
+
+        mojo.execute();
+
+        assertEquals(2, mojo.getPluginErrors().size());
+        verify(FakeDockerProvider.instance, never()).startContainer(app);
+    }
+
+    @Test
+    public void testThatMissingImagesArePulledAtTheSameTimeBeforeAnyContainerStarts() throws Exception {
+        ContainerStartConfiguration database = new ContainerStartConfiguration().withId("database").fromImage("postgres");
+        ContainerStartConfiguration broker = new ContainerStartConfiguration().withId("broker").fromImage("rabbitmq");
+        ContainerStartConfiguration cache = new ContainerStartConfiguration().withId("cache").fromImage("redis");
+        ContainerStartConfiguration replica = new ContainerStartConfiguration().withId("replica").fromImage("postgres");
+        when(FakeDockerProvider.instance.hasImage("redis")).thenReturn(true);
+        CyclicBarrier bothPulling = new CyclicBarrier(2);
+        when(FakeDockerProvider.instance.pullImage(anyString())).then(invocation -> {
+            bothPulling.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(database, broker, cache, replica), FAKE_PROVIDER_KEY);
+
+        mojo.execute();
+
+        assertEquals(Collections.emptyList(), mojo.getPluginErrors());
+        verify(FakeDockerProvider.instance, times(1)).pullImage("postgres");
+        verify(FakeDockerProvider.instance, never()).pullImage("redis");
+        InOrder pullFirst = inOrder(FakeDockerProvider.instance);
+        pullFirst.verify(FakeDockerProvider.instance).pullImage("rabbitmq");
+        pullFirst.verify(FakeDockerProvider.instance).startContainer(broker);
+    }
+
+    @Test
+    public void testThatBuiltImagesAreNotPulled() throws Exception {
+        ImageBuildConfiguration imageConfig = new ImageBuildConfiguration();
+        imageConfig.setId("built-image");
+        StartContainerMojo mojo = createMojo(new ContainerStartConfiguration().fromImage("built-image").withId("app"));
+        mojo.registerBuiltImage("the-image-id", imageConfig);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).hasImage(anyString());
+        verify(FakeDockerProvider.instance, never()).pullImage(anyString());
+    }
+
+    @Test
+    public void testThatAFailedPullDoesNotStopTheContainerFromStarting() throws Exception {
+        ContainerStartConfiguration configuration = new ContainerStartConfiguration().withId("app").fromImage("private");
+        when(FakeDockerProvider.instance.pullImage("private")).thenThrow(new DockerException("unauthorized"));
+        StartContainerMojo mojo = createMojo(configuration);
+
+        mojo.execute();
+
+        assertEquals(Collections.emptyList(), mojo.getPluginErrors());
+        verify(FakeDockerProvider.instance).startContainer(configuration);
+    }
+
+    @Test
+    public void testThatImagesAreNotPulledUpFrontWhenPrePullIsOff() throws Exception {
+        StartContainerMojo mojo = createMojo(new ContainerStartConfiguration().withId("app").fromImage("postgres"));
+        mojo.setPrePull(false);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).pullImage(anyString());
+    }
+
     @Test
     public void testThatMojoStartsAContainerOnTheProviderWithEnvironmentVariables() throws Exception {
     	Map<String, String> env = new HashMap<>();
@@ -375,6 +670,7 @@ public class StartContainerMojoTest {
         mojo.setProviderName(provider);
         mojo.setPluginContext(new HashMap());
         mojo.setMojoExecution(mojoExecution);
+        mojo.setStartParallelism(8);
 
         return mojo;
     }
@@ -0,0 +1,193 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import net.wouterdanes.docker.provider.AbstractFakeDockerProvider;
+import net.wouterdanes.docker.provider.DockerProviderSupplier;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class StopContainerMojoTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final String fakeProviderKey = UUID.randomUUID().toString();
+    private StopContainerMojo mojo;
+
+    @Before
+    public void setUp() throws Exception {
+        FakeDockerProvider.instance = mock(FakeDockerProvider.class);
+        DockerProviderSupplier.registerProvider(fakeProviderKey, FakeDockerProvider.class);
+
+        mojo = new StopContainerMojo();
+        mojo.setPluginContext(new HashMap());
+        mojo.setProviderName(fakeProviderKey);
+        mojo.setStopParallelism(8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DockerProviderSupplier.removeProvider(fakeProviderKey);
+    }
+
+    @Test
+    public void testThatContainersAreStoppedAtTheSameTime() throws Exception {
+        CyclicBarrier allStopping = new CyclicBarrier(3);
+        doAnswer(invocation -> allStopping.await(5, TimeUnit.SECONDS))
+                .when(FakeDockerProvider.instance).stopContainer(anyString(), anyInt());
+        for (String id : new String[]{"first", "second", "third"}) {
+            mojo.registerStartedContainer(id, inspectionResult(id + "Id"));
+        }
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).deleteContainer("firstId");
+        verify(FakeDockerProvider.instance).deleteContainer("secondId");
+        verify(FakeDockerProvider.instance).deleteContainer("thirdId");
+        assertTrue(mojo.getStartedContainers().isEmpty());
+    }
+
+    @Test
+    public void testThatTheStopTimeoutOfAContainerIsPassedToDocker() throws Exception {
+        mojo.registerStartedContainer("slow", inspectionResult("slowId"), 30);
+        mojo.registerStartedContainer("default", inspectionResult("defaultId"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).stopContainer("slowId", 30);
+        verify(FakeDockerProvider.instance).stopContainer("defaultId", 10);
+    }
+
+    @Test
+    public void testThatContainersAreKilledWhenAskedTo() throws Exception {
+        mojo.setKillContainers(true);
+        mojo.registerStartedContainer("some-container", inspectionResult("someId"), 30);
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).killContainer("someId");
+        verify(FakeDockerProvider.instance, never()).stopContainer(anyString(), anyInt());
+        verify(FakeDockerProvider.instance).deleteContainer("someId");
+    }
+
+    @Test
+    public void testThatAContainerThatDoesNotStopIsNotDeleted() throws Exception {
+        doThrow(new DockerException("nope")).when(FakeDockerProvider.instance).stopContainer("stuckId", 10);
+        mojo.registerStartedContainer("stuck", inspectionResult("stuckId"));
+        mojo.registerStartedContainer("fine", inspectionResult("fineId"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).deleteContainer("stuckId");
+        verify(FakeDockerProvider.instance).deleteContainer("fineId");
+        assertEquals(1, mojo.getStartedContainers().size());
+        assertEquals("stuck", mojo.getStartedContainers().iterator().next().getContainerId());
+    }
+
+    @Test
+    public void testThatLogsAreWrittenAfterTheContainerStopped() throws Exception {
+        Path logs = temporaryFolder.getRoot().toPath();
+        mojo.setLogs(logs.toString());
+        mojo.registerStartedContainer("some-container", inspectionResult("someId"));
+
+        mojo.execute();
+
+        InOrder inOrder = inOrder(FakeDockerProvider.instance);
+        inOrder.verify(FakeDockerProvider.instance).stopContainer("someId", 10);
+        Path logFile = logs.resolve("some-container.log");
+        inOrder.verify(FakeDockerProvider.instance).writeLogs("someId", logFile, logFile);
+        inOrder.verify(FakeDockerProvider.instance).deleteContainer("someId");
+    }
+
+    @Test
+    public void testThatStdoutAndStderrAreWrittenToSeparateFilesWhenAskedTo() throws Exception {
+        Path logs = temporaryFolder.getRoot().toPath();
+        mojo.setLogs(logs.toString());
+        mojo.setSplitLogs(true);
+        mojo.registerStartedContainer("some-container", inspectionResult("someId"));
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).writeLogs("someId", logs.resolve("some-container.stdout.log"),
+                logs.resolve("some-container.stderr.log"));
+    }
+
+    @Test
+    public void testThatFollowedLogsAreNotDownloadedAgain() throws Exception {
+        Path logs = temporaryFolder.getRoot().toPath();
+        mojo.setLogs(logs.toString());
+        mojo.setTailLogs(true);
+        mojo.setLogMaxSize(10);
+        mojo.setLogRetention(5);
+        when(FakeDockerProvider.instance.tailLogs(eq("someId"), any(WritableByteChannel.class),
+                any(WritableByteChannel.class))).then(invocation -> {
+            WritableByteChannel stdout = (WritableByteChannel) invocation.getArguments()[1];
+            stdout.write(ByteBuffer.wrap("started\n".getBytes(StandardCharsets.UTF_8)));
+            return CompletableFuture.completedFuture(null);
+        });
+        mojo.registerStartedContainer("some-container", inspectionResult("someId"));
+        mojo.startLogTail(FakeDockerProvider.instance, "some-container", "someId");
+
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).writeLogs(anyString(), any(Path.class), any(Path.class));
+        assertEquals("started\n", new String(Files.readAllBytes(logs.resolve("some-container.log")),
+                StandardCharsets.UTF_8));
+    }
+
+    private static ContainerInspectionResult inspectionResult(final String id) {
+        ContainerInspectionResult result = mock(ContainerInspectionResult.class);
+        when(result.getId()).thenReturn(id);
+        return result;
+    }
+
+    public static class FakeDockerProvider extends AbstractFakeDockerProvider {
+        private static FakeDockerProvider instance;
+
+        @Override
+        protected AbstractFakeDockerProvider getInstance() {
+            return instance;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import net.wouterdanes.docker.provider.DockerProviderSupplier;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
 import net.wouterdanes.docker.provider.model.ImageTagConfiguration;
 import net.wouterdanes.docker.provider.model.PushableImage;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.junit.After;
@@ -31,9 +32,12 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.util.*;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.times;
 
@@ -225,6 +229,39 @@ public class TagImageMojoTest {
         executeMojo(DockerExceptionThrowingDockerProvider.PROVIDER_KEY);
     }
 
+    @Test
+    public void testThatAllTagsOfAnImageAreAppliedAtTheSameTime() throws Exception {
+        Mockito.when(mockTag.isPush()).thenReturn(true);
+        Mockito.when(mockTag.getRegistry()).thenReturn(REGISTRY1);
+        CyclicBarrier allTagging = new CyclicBarrier(6);
+        Mockito.doAnswer(invocation -> allTagging.await(5, TimeUnit.SECONDS))
+                .when(FakeDockerProvider.instance).tagImage(any(String.class), any(String.class));
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        assertNImagesTagged(6);
+        assertImageEnqueuedForPush(0, STARTID, REG1_TAG1);
+        assertImageEnqueuedForPush(1, STARTID, REG1_NAMEANDTAG);
+        assertImageEnqueuedForPush(2, STARTID, REG1_TAG2);
+    }
+
+    @Test
+    public void testThatTheOtherTagsAreAppliedWhenOneFailsButNothingIsPushed() throws Exception {
+        Mockito.when(mockTag.isPush()).thenReturn(true);
+        Mockito.doThrow(new DockerException("nope")).when(FakeDockerProvider.instance).tagImage(STARTID, TAG1);
+
+        try {
+            executeMojo(FAKE_PROVIDER_KEY);
+            fail("Expected the mojo to fail");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage().contains(TAG1));
+        }
+
+        assertImageTagged(STARTID, NAMEANDTAG);
+        assertImageTagged(STARTID, TAG2);
+        assertImageNotEnqueuedForPush();
+    }
+
     private void executeMojo(String provider) throws MojoExecutionException, MojoFailureException {
         mojo.setProviderName(provider);
         mojo.execute();
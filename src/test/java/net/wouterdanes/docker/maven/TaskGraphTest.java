@@ -0,0 +1,142 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskGraphTest {
+
+    @Test
+    public void testThatDependenciesComeFirstAndTheRestKeepsItsOrder() throws Exception {
+        TaskGraph<String, String> graph = new TaskGraph<>();
+        graph.add("app", Collections.singletonList("base"), () -> "app");
+        graph.add("db", Collections.<String>emptyList(), () -> "db");
+        graph.add("base", Collections.singletonList("external"), () -> "base");
+
+        assertEquals(Arrays.asList("db", "base", "app"), graph.getOrder());
+    }
+
+    @Test
+    public void testThatResultsAreReportedInOrderWhateverFinishesFirst() throws Exception {
+        TaskGraph<String, String> graph = new TaskGraph<>();
+        graph.add("slow", Collections.<String>emptyList(), () -> {
+            Thread.sleep(200);
+            return "slow";
+        });
+        graph.add("fast", Collections.<String>emptyList(), () -> "fast");
+
+        List<String> reported = new ArrayList<>();
+        graph.run(2, "test", result -> reported.add(result.getValue()));
+
+        assertEquals(Arrays.asList("slow", "fast"), reported);
+    }
+
+    @Test
+    public void testThatIndependentTasksRunAtTheSameTime() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        TaskGraph<String, Integer> graph = new TaskGraph<>();
+        graph.add("a", Collections.<String>emptyList(), () -> barrier.await(5, TimeUnit.SECONDS));
+        graph.add("b", Collections.<String>emptyList(), () -> barrier.await(5, TimeUnit.SECONDS));
+
+        List<Boolean> successes = new ArrayList<>();
+        graph.run(2, "test", result -> successes.add(result.isSuccessful()));
+
+        assertEquals(Arrays.asList(true, true), successes);
+    }
+
+    @Test
+    public void testThatNoMoreTasksRunThanTheParallelismAllows() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TaskGraph<Integer, Integer> graph = new TaskGraph<>();
+        for (int i = 0; i < 10; i++) {
+            graph.add(i, Collections.<Integer>emptyList(), () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                return running.decrementAndGet();
+            });
+        }
+
+        graph.run(3, "test", result -> assertTrue(result.isSuccessful()));
+
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testThatTasksDependingOnAFailedTaskAreSkipped() throws Exception {
+        AtomicInteger appRuns = new AtomicInteger();
+        TaskGraph<String, String> graph = new TaskGraph<>();
+        graph.add("base", Collections.<String>emptyList(), () -> {
+            throw new IllegalStateException("broken");
+        });
+        graph.add("app", Collections.singletonList("base"), () -> "app" + appRuns.incrementAndGet());
+        graph.add("tests", Collections.singletonList("app"), () -> "tests");
+
+        List<TaskGraph.TaskResult<String, String>> results = new ArrayList<>();
+        graph.run(2, "test", results::add);
+
+        assertEquals(3, results.size());
+        assertEquals("broken", results.get(0).getException().get().getMessage());
+        assertFalse(results.get(1).isSuccessful());
+        assertEquals("base", results.get(1).getFailedDependency().get());
+        assertEquals("base", results.get(2).getFailedDependency().get());
+        assertEquals(0, appRuns.get());
+    }
+
+    @Test
+    public void testThatTheCriticalPathFollowsTheDependenciesThatFinishedLast() throws Exception {
+        TaskGraph<String, String> graph = new TaskGraph<>();
+        graph.add("database", Collections.<String>emptyList(), () -> {
+            Thread.sleep(150);
+            return "database";
+        });
+        graph.add("mock", Collections.<String>emptyList(), () -> "mock");
+        graph.add("app", Arrays.asList("database", "mock"), () -> "app");
+        graph.add("proxy", Collections.<String>emptyList(), () -> "proxy");
+
+        List<TaskGraph.TaskResult<String, String>> results = new ArrayList<>();
+        graph.run(4, "test", results::add);
+
+        List<String> criticalPath = new ArrayList<>();
+        for (TaskGraph.TaskResult<String, String> result : graph.getCriticalPath(results)) {
+            criticalPath.add(result.getKey());
+        }
+        assertEquals(Arrays.asList("database", "app"), criticalPath);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatACycleIsRejected() throws Exception {
+        TaskGraph<String, String> graph = new TaskGraph<>();
+        graph.add("a", Collections.singletonList("b"), () -> "a");
+        graph.add("b", Collections.singletonList("a"), () -> "b");
+
+        graph.getOrder();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class TaskScopeTest {
+
+    private final Log log = mock(Log.class);
+
+    @Test
+    public void testThatTasksRunOnPlatformThreadsByDefault() throws Exception {
+        try (TaskScope scope = TaskScope.open(TaskScope.PLATFORM, log)) {
+            List<Boolean> virtual = runOneTask(scope);
+
+            assertFalse(scope.isVirtual());
+            assertEquals(Collections.singletonList(false), virtual);
+        }
+        verify(log, never()).warn(anyString());
+    }
+
+    @Test
+    public void testThatTasksRunOnVirtualThreadsOrFallBackWithAWarning() throws Exception {
+        try (TaskScope scope = TaskScope.open(TaskScope.VIRTUAL, log)) {
+            List<Boolean> virtual = runOneTask(scope);
+
+            assertEquals(Collections.singletonList(scope.isVirtual()), virtual);
+            if (!scope.isVirtual()) {
+                verify(log).warn(anyString());
+            }
+        }
+    }
+
+    @Test
+    public void testThatAnUnknownModeFallsBackToPlatformThreads() throws Exception {
+        try (TaskScope scope = TaskScope.open("green", log)) {
+            assertFalse(scope.isVirtual());
+        }
+        verify(log).warn(anyString());
+    }
+
+    @Test
+    public void testThatThePeakOfTasksRunningAtTheSameTimeIsCounted() throws Exception {
+        CyclicBarrier allRunning = new CyclicBarrier(3);
+        TaskGraph<Integer, Integer> graph = new TaskGraph<>();
+        for (int i = 0; i < 3; i++) {
+            graph.add(i, Collections.<Integer>emptyList(), () -> allRunning.await(5, TimeUnit.SECONDS));
+        }
+        graph.add(3, Collections.singletonList(0), () -> 3);
+
+        try (TaskScope scope = TaskScope.open(TaskScope.VIRTUAL, log)) {
+            graph.run(scope, 3, "test", result -> assertTrue(result.isSuccessful()));
+
+            assertEquals(4, scope.getTasks());
+            assertEquals(3, scope.getPeak());
+        }
+    }
+
+    private static List<Boolean> runOneTask(final TaskScope scope) throws Exception {
+        TaskGraph<String, Boolean> graph = new TaskGraph<>();
+        graph.add("task", Collections.<String>emptyList(), TaskScopeTest::isVirtualThread);
+        List<Boolean> results = new ArrayList<>();
+        graph.run(scope, 1, "test", result -> results.add(result.getValue()));
+        return results;
+    }
+
+    private static boolean isVirtualThread() {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.provider.model.ContainerCommitConfiguration;
+import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PushProgress;
+import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
+import net.wouterdanes.docker.remoteapi.model.Credentials;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AbstractDockerProviderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final LegacyDockerProvider provider = new LegacyDockerProvider();
+
+    @Test
+    public void testThatStoppingWithATimeoutOrKillingFallsBackToStopping() throws Exception {
+        provider.stopContainer("app", 5);
+        provider.killContainer("database");
+
+        assertEquals(2, provider.stoppedContainers.size());
+        assertTrue(provider.stoppedContainers.contains("app"));
+        assertTrue(provider.stoppedContainers.contains("database"));
+    }
+
+    @Test
+    public void testThatAProviderWithoutDigestsAlwaysBuildsAndPushes() throws Exception {
+        assertNull(provider.getBuildContextDigest(new ImageBuildConfiguration()));
+        assertTrue(provider.getRepoDigests("app").isEmpty());
+        assertFalse(provider.getRegistryDigest("localhost:5000/app:1.0").isPresent());
+        assertFalse(provider.getApiMetrics().isPresent());
+    }
+
+    @Test
+    public void testThatFollowingLogsFailsSoTheCallerPollsInstead() throws Exception {
+        CompletableFuture<Boolean> logLine = provider.awaitLogLine("app", Pattern.compile("started"));
+
+        try {
+            logLine.get();
+            fail("A provider that can't follow logs should fail the future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+        assertFalse(provider.awaitContainerEvent("app", "die").isDone());
+    }
+
+    @Test
+    public void testThatLogsAreWrittenFromTheDownloadedLogs() throws Exception {
+        Path stdout = temporaryFolder.getRoot().toPath().resolve("app.stdout.log");
+        Path stderr = temporaryFolder.getRoot().toPath().resolve("app.stderr.log");
+
+        provider.writeLogs("app", stdout, stderr);
+
+        assertEquals("hello world", new String(Files.readAllBytes(stdout), StandardCharsets.UTF_8));
+        assertEquals(0, Files.size(stderr));
+    }
+
+    /**
+     * A provider that only implements the methods of the interface before version 5.1.0
+     */
+    private static class LegacyDockerProvider extends AbstractDockerProvider {
+
+        private final List<String> stoppedContainers = new ArrayList<>();
+
+        @Override
+        public void setCredentials(final Credentials credentials) {
+        }
+
+        @Override
+        public ContainerInspectionResult startContainer(final ContainerStartConfiguration configuration) {
+            return null;
+        }
+
+        @Override
+        public void stopContainer(final String containerId) {
+            stoppedContainers.add(containerId);
+        }
+
+        @Override
+        public void deleteContainer(final String containerId) {
+        }
+
+        @Override
+        public List<ExposedPort> getExposedPorts(final String containerId) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String buildImage(final ImageBuildConfiguration image) {
+            return null;
+        }
+
+        @Override
+        public String commitContainer(final ContainerCommitConfiguration configuration) {
+            return null;
+        }
+
+        @Override
+        public void removeImage(final String imageId) {
+        }
+
+        @Override
+        public PushProgress pushImage(final String nameAndTag) {
+            return null;
+        }
+
+        @Override
+        public void tagImage(final String imageId, final String nameAndTag) {
+        }
+
+        @Override
+        public String getLogs(final String containerId) {
+            return "hello world";
+        }
+
+        @Override
+        public void setLogger(final Log logger) {
+        }
+
+        @Override
+        public void setRepositorySystem(final RepositorySystem repositorySystem) {
+        }
+
+        @Override
+        public void setRepositorySystemSession(final RepositorySystemSession repositorySystemSession) {
+        }
+
+        @Override
+        public void setRemoteRepositories(final List<RemoteRepository> remoteRepositories) {
+        }
+    }
+}
@@ -4,14 +4,23 @@ import net.wouterdanes.docker.provider.model.ContainerCommitConfiguration;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.PushProgress;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
 import org.apache.maven.plugin.logging.Log;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 /**
  * Utility class to create mock docker providers, extend this and implement the getInstance() method, then create
@@ -37,6 +46,21 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
         proxy.stopContainer(containerId);
     }
 
+    @Override
+    public void writeLogs(final String containerId, final Path stdout, final Path stderr) {
+        proxy.writeLogs(containerId, stdout, stderr);
+    }
+
+    @Override
+    public void stopContainer(final String containerId, final int timeout) {
+        proxy.stopContainer(containerId, timeout);
+    }
+
+    @Override
+    public void killContainer(final String containerId) {
+        proxy.killContainer(containerId);
+    }
+
     @Override
     public void deleteContainer(final String containerId) {
         proxy.deleteContainer(containerId);
@@ -52,6 +76,29 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
         return proxy.buildImage(image);
     }
 
+    /**
+     * Delegates to {@link #buildImage(ImageBuildConfiguration)} of the mock, so tests only need to stub that one.
+     */
+    @Override
+    public String buildImage(final ImageBuildConfiguration image, final Log buildLog) {
+        return proxy.buildImage(image);
+    }
+
+    @Override
+    public String getBuildContextDigest(final ImageBuildConfiguration image) {
+        return proxy.getBuildContextDigest(image);
+    }
+
+    @Override
+    public boolean hasImage(final String imageId) {
+        return proxy.hasImage(imageId);
+    }
+
+    @Override
+    public PullProgress pullImage(final String image) {
+        return proxy.pullImage(image);
+    }
+
     @Override
     public String commitContainer(ContainerCommitConfiguration configuration) {
         return proxy.commitContainer(configuration);
@@ -63,8 +110,32 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
     }
 
     @Override
-    public void pushImage(final String nameAndTag) {
-        proxy.pushImage(nameAndTag);
+    public PushProgress pushImage(final String nameAndTag) {
+        return proxy.pushImage(nameAndTag);
+    }
+
+    @Override
+    public List<String> getRepoDigests(final String image) {
+        List<String> digests = proxy.getRepoDigests(image);
+        return digests != null ? digests : Collections.emptyList();
+    }
+
+    @Override
+    public Optional<String> getImageId(final String image) {
+        Optional<String> imageId = proxy.getImageId(image);
+        return imageId != null ? imageId : Optional.empty();
+    }
+
+    @Override
+    public Optional<String> getRegistryDigest(final String nameAndTag) {
+        Optional<String> digest = proxy.getRegistryDigest(nameAndTag);
+        return digest != null ? digest : Optional.empty();
+    }
+
+    @Override
+    public Optional<ApiMetrics> getApiMetrics() {
+        Optional<ApiMetrics> metrics = proxy.getApiMetrics();
+        return metrics != null ? metrics : Optional.empty();
     }
 
     @Override
@@ -82,6 +153,32 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
         return proxy.getLogs(containerId);
     }
 
+    @Override
+    public CompletableFuture<Boolean> awaitLogLine(final String containerId, final Pattern pattern) {
+        CompletableFuture<Boolean> logLine = proxy.awaitLogLine(containerId, pattern);
+        if (logLine == null) {
+            // a mock returns null, which behaves like a provider that can't follow logs
+            logLine = new CompletableFuture<>();
+            logLine.completeExceptionally(new UnsupportedOperationException("Can't follow logs"));
+        }
+        return logLine;
+    }
+
+    @Override
+    public CompletableFuture<Void> tailLogs(final String containerId, final WritableByteChannel stdout,
+                                            final WritableByteChannel stderr) {
+        CompletableFuture<Void> tail = proxy.tailLogs(containerId, stdout, stderr);
+        // a mock returns null, which behaves like a container that keeps running
+        return tail != null ? tail : new CompletableFuture<>();
+    }
+
+    @Override
+    public CompletableFuture<String> awaitContainerEvent(final String containerId, final String... events) {
+        CompletableFuture<String> event = proxy.awaitContainerEvent(containerId, events);
+        // a mock returns null, which behaves like a provider that doesn't follow events
+        return event != null ? event : new CompletableFuture<>();
+    }
+
     @Override
     public void setLogger(final Log logger) {
         proxy.setLogger(logger);
@@ -101,4 +198,9 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
     public void setRemoteRepositories(List<RemoteRepository> remoteRepositories) {
         // NOOP
     }
+
+    @Override
+    public void close() {
+        proxy.close();
+    }
 }
@@ -0,0 +1,89 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.remoteapi.PushProgress;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class AsyncDockerProviderTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final DockerProvider provider = mock(DockerProvider.class);
+    private final AsyncDockerProvider async = AsyncDockerProvider.of(provider, executor);
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testThatOperationsCanBeComposedIntoAPipeline() throws Exception {
+        ImageBuildConfiguration image = mock(ImageBuildConfiguration.class);
+        Log buildLog = mock(Log.class);
+        PushProgress pushed = new PushProgress("app:1.0");
+        when(provider.buildImage(image, buildLog)).thenReturn("imageId");
+        when(provider.pushImage("app:1.0")).thenReturn(pushed);
+
+        PushProgress result = async.buildImage(image, buildLog)
+                .thenCompose(imageId -> async.tagImage(imageId, "app:1.0"))
+                .thenCompose(ignored -> async.pushImage("app:1.0"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertSame(pushed, result);
+        InOrder inOrder = inOrder(provider);
+        inOrder.verify(provider).buildImage(image, buildLog);
+        inOrder.verify(provider).tagImage("imageId", "app:1.0");
+        inOrder.verify(provider).pushImage("app:1.0");
+    }
+
+    @Test
+    public void testThatTheFutureFailsWithTheExceptionOfTheProvider() throws Exception {
+        DockerException failure = new DockerException("nope");
+        doThrow(failure).when(provider).tagImage("imageId", "app:1.0");
+
+        try {
+            async.tagImage("imageId", "app:1.0").get(5, TimeUnit.SECONDS);
+            fail("Expected the tag to fail");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testThatOperationsRunOnTheExecutor() throws Exception {
+        Thread caller = Thread.currentThread();
+        when(provider.getLogs("someId")).then(invocation -> Thread.currentThread() != caller ? "elsewhere" : "here");
+
+        assertEquals("elsewhere", async.getLogs("someId").get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BuildContextTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatFilesAndDirectoriesAreWrittenToTheArchive() throws Exception {
+        File dockerFile = writeFile("Dockerfile", "FROM busybox");
+        File directory = folder.newFolder("conf");
+        writeFile("conf/app.properties", "port=8080");
+        writeFile("conf/log.properties", "level=INFO");
+
+        BuildContext buildContext = new BuildContext()
+                .add(dockerFile, "Dockerfile")
+                .add(directory, "etc/app");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buildContext.write(output);
+
+        Map<String, String> contents = readArchive(output.toByteArray());
+        assertEquals(3, contents.size());
+        assertEquals("FROM busybox", contents.get("Dockerfile"));
+        assertEquals("port=8080", contents.get("etc/app/app.properties"));
+        assertEquals("level=INFO", contents.get("etc/app/log.properties"));
+        assertEquals(output.size(), buildContext.getBytesWritten());
+    }
+
+    @Test
+    public void testThatACompressedContextIsAGzippedTar() throws Exception {
+        File dockerFile = writeFile("Dockerfile", "FROM busybox");
+        File jar = writeFile("app.jar", new String(ParallelGzipOutputStreamTest.createCompressibleData(1024 * 1024),
+                StandardCharsets.US_ASCII));
+
+        BuildContext buildContext = new BuildContext()
+                .add(dockerFile, "Dockerfile")
+                .add(jar, "app.jar")
+                .compressed(true);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buildContext.write(output);
+
+        Map<String, String> contents = readArchive(ParallelGzipOutputStreamTest.gunzip(output.toByteArray()));
+        assertEquals(2, contents.size());
+        assertEquals("FROM busybox", contents.get("Dockerfile"));
+        assertEquals(1024 * 1024, contents.get("app.jar").length());
+        assertEquals(output.size(), buildContext.getBytesSent());
+        assertTrue(buildContext.getBytesSent() < buildContext.getBytesWritten());
+    }
+
+    @Test
+    public void testThatTheDigestOnlyChangesWhenTheContextChanges() throws Exception {
+        File dockerFile = writeFile("Dockerfile", "FROM busybox");
+        File directory = folder.newFolder("conf");
+        writeFile("conf/app.properties", "port=8080");
+
+        String digest = new BuildContext().add(dockerFile, "Dockerfile").add(directory, "conf").getDigest("{}");
+
+        assertEquals(digest, new BuildContext().add(dockerFile, "Dockerfile").add(directory, "conf").getDigest("{}"));
+        assertFalse(digest.equals(
+                new BuildContext().add(dockerFile, "Dockerfile").add(directory, "conf").getDigest("{\"a\":\"b\"}")));
+        assertFalse(digest.equals(
+                new BuildContext().add(dockerFile, "Dockerfile").add(directory, "etc").getDigest("{}")));
+
+        writeFile("conf/app.properties", "port=8081");
+        assertFalse(digest.equals(
+                new BuildContext().add(dockerFile, "Dockerfile").add(directory, "conf").getDigest("{}")));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testThatAMissingFileIsReportedWhenItIsAdded() throws Exception {
+        new BuildContext().add(new File(folder.getRoot(), "does-not-exist.jar"), "app.jar");
+    }
+
+    private File writeFile(final String path, final String contents) throws Exception {
+        File file = new File(folder.getRoot(), path);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static Map<String, String> readArchive(final byte[] archive) throws Exception {
+        Map<String, String> contents = new HashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                byte[] bytes = new byte[(int) entry.getSize()];
+                int read = 0;
+                while (read < bytes.length) {
+                    read += tar.read(bytes, read, bytes.length - read);
+                }
+                contents.put(entry.getName(), new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return contents;
+    }
+}
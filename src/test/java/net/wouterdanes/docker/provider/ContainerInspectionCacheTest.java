@@ -0,0 +1,62 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class ContainerInspectionCacheTest {
+
+    private final ContainerInspectionCache cache = new ContainerInspectionCache();
+    private final AtomicInteger inspections = new AtomicInteger();
+    private final Function<String, ContainerInspectionResult> inspector = id -> {
+        inspections.incrementAndGet();
+        return mock(ContainerInspectionResult.class);
+    };
+
+    @Test
+    public void testThatTheInspectionOfTheStartIsReused() throws Exception {
+        ContainerInspectionResult started = mock(ContainerInspectionResult.class);
+        cache.put("someId", started);
+
+        assertSame(started, cache.get("someId", inspector));
+
+        assertEquals(0, inspections.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testThatAContainerIsInspectedAgainAfterItsStateChanged() throws Exception {
+        cache.put("someId", mock(ContainerInspectionResult.class));
+        cache.invalidate("someId");
+
+        ContainerInspectionResult inspection = cache.get("someId", inspector);
+
+        assertSame(inspection, cache.get("someId", inspector));
+        assertEquals(1, inspections.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+}
@@ -1,6 +1,11 @@
 package net.wouterdanes.docker.provider;
 
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 import org.apache.maven.plugin.logging.Log;
 
@@ -9,8 +14,11 @@ import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.PushProgress;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
@@ -46,6 +54,21 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
         throwBadException();
     }
 
+    @Override
+    public void writeLogs(final String containerId, final Path stdout, final Path stderr) {
+        throwBadException();
+    }
+
+    @Override
+    public void stopContainer(final String containerId, final int timeout) {
+        throwBadException();
+    }
+
+    @Override
+    public void killContainer(final String containerId) {
+        throwBadException();
+    }
+
     @Override
     public void deleteContainer(final String containerId) {
         throwBadException();
@@ -63,6 +86,30 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
         return null;
     }
 
+    @Override
+    public String buildImage(final ImageBuildConfiguration image, final Log buildLog) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public String getBuildContextDigest(final ImageBuildConfiguration image) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public boolean hasImage(final String imageId) {
+        throwBadException();
+        return false;
+    }
+
+    @Override
+    public PullProgress pullImage(final String image) {
+        throwBadException();
+        return null;
+    }
+
     @Override
     public String commitContainer(ContainerCommitConfiguration configuration) {
         throwBadException();
@@ -75,8 +122,32 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
     }
 
     @Override
-    public void pushImage(final String nameAndTag) {
+    public PushProgress pushImage(final String nameAndTag) {
         throwBadException();
+        return null;
+    }
+
+    @Override
+    public List<String> getRepoDigests(final String image) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public Optional<String> getImageId(final String image) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public Optional<String> getRegistryDigest(final String nameAndTag) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public Optional<ApiMetrics> getApiMetrics() {
+        return Optional.empty();
     }
 
     @Override
@@ -90,6 +161,25 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
         return null;
     }
 
+    @Override
+    public CompletableFuture<Boolean> awaitLogLine(final String containerId, final Pattern pattern) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<Void> tailLogs(final String containerId, final WritableByteChannel stdout,
+                                            final WritableByteChannel stderr) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<String> awaitContainerEvent(final String containerId, final String... events) {
+        throwBadException();
+        return null;
+    }
+
     @Override
     public void setLogger(final Log logger) {
         // NOOP
@@ -110,6 +200,11 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
         // NOOP
     }
 
+    @Override
+    public void close() {
+        // NOOP
+    }
+
     private static void throwBadException() {
         throw new DockerException("Bad stuff");
     }
@@ -0,0 +1,131 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.transport.ApiMetrics;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+public class DockerProviderRegistryTest {
+
+    private static final String FAKE_PROVIDER_KEY = UUID.randomUUID().toString();
+
+    private DockerProviderRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        FakeDockerProvider.instance = mock(FakeDockerProvider.class);
+        DockerProviderSupplier.registerProvider(FAKE_PROVIDER_KEY, FakeDockerProvider.class);
+        registry = new DockerProviderRegistry(mock(Log.class));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DockerProviderSupplier.removeProvider(FAKE_PROVIDER_KEY);
+    }
+
+    @Test
+    public void testThatTheSameProviderIsReturnedForTheSameNameAndCredentials() throws Exception {
+        Credentials credentials = new Credentials("jim", "123456", "jim@example.com", null);
+
+        DockerProvider first = registry.getProvider(FAKE_PROVIDER_KEY, credentials, p -> { });
+        DockerProvider second = registry.getProvider(FAKE_PROVIDER_KEY,
+                new Credentials("jim", "123456", "jim@example.com", null), p -> { });
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testThatDifferentCredentialsGetADifferentProvider() throws Exception {
+        DockerProvider anonymous = registry.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+        DockerProvider authenticated = registry.getProvider(FAKE_PROVIDER_KEY,
+                new Credentials("jim", "123456", "jim@example.com", null), p -> { });
+
+        assertNotSame(anonymous, authenticated);
+    }
+
+    @Test
+    public void testThatOnlyTheClientsOfTheProvidersOfThisRegistryAreCounted() throws Exception {
+        when(FakeDockerProvider.instance.getApiMetrics()).thenReturn(Optional.of(new ApiMetrics("localhost:2375")));
+        DockerProviderRegistry previousBuild = new DockerProviderRegistry(mock(Log.class));
+        previousBuild.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+        previousBuild.close();
+
+        registry.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+        registry.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+        registry.getProvider(FAKE_PROVIDER_KEY, new Credentials("jim", "123456", "jim@example.com", null), p -> { });
+
+        assertEquals(2, registry.getCreatedClientCount());
+    }
+
+    @Test
+    public void testThatSessionEndTasksRunBeforeProvidersAreClosed() throws Exception {
+        Runnable task = mock(Runnable.class);
+        registry.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+        registry.onSessionEnd(task);
+
+        registry.close();
+        registry.close();
+
+        InOrder inOrder = inOrder(task, FakeDockerProvider.instance);
+        inOrder.verify(task).run();
+        inOrder.verify(FakeDockerProvider.instance).close();
+        verifyNoMoreInteractions(task);
+    }
+
+    @Test
+    public void testThatCloseAllClosesTheProvidersOfOpenRegistries() throws Exception {
+        Runnable task = mock(Runnable.class);
+        registry.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+        registry.onSessionEnd(task);
+
+        DockerProviderRegistry.closeAll();
+        DockerProviderRegistry.closeAll();
+
+        verify(task).run();
+        verify(FakeDockerProvider.instance).close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatAClosedRegistryDoesNotHandOutProviders() throws Exception {
+        registry.close();
+
+        registry.getProvider(FAKE_PROVIDER_KEY, null, p -> { });
+    }
+
+    public static class FakeDockerProvider extends AbstractFakeDockerProvider {
+        private static FakeDockerProvider instance;
+
+        @Override
+        protected AbstractFakeDockerProvider getInstance() {
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import net.wouterdanes.docker.remoteapi.PullProgress;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.exception.ImageNotFoundException;
+import net.wouterdanes.docker.remoteapi.model.ImageInspectionResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ImagePresenceCacheTest {
+
+    private static final String POSTGRES_ID = "sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Test
+    public void testThatImagesAreFoundByNameTagAndId() throws Exception {
+        ImagePresenceCache cache = new ImagePresenceCache(() -> Collections.singletonList(
+                image(POSTGRES_ID, "postgres:latest", "postgres:9.4")));
+
+        assertEquals(Optional.of(true), cache.isPresent("postgres"));
+        assertEquals(Optional.of(true), cache.isPresent("docker.io/library/postgres:9.4"));
+        assertEquals(Optional.of(true), cache.isPresent("0123456789ab"));
+        assertEquals(Optional.of(true), cache.isPresent(POSTGRES_ID));
+        assertEquals(Optional.of(false), cache.isPresent("postgres:9.5"));
+        assertEquals(Optional.of(false), cache.isPresent("fedcba987654"));
+    }
+
+    @Test
+    public void testThatTheImagesAreListedOnce() throws Exception {
+        AtomicInteger listings = new AtomicInteger();
+        ImagePresenceCache cache = new ImagePresenceCache(() -> {
+            listings.incrementAndGet();
+            return Collections.emptyList();
+        });
+
+        cache.isPresent("postgres");
+        cache.isPresent("nginx");
+
+        assertEquals(1, listings.get());
+    }
+
+    @Test
+    public void testThatNothingIsKnownWhenTheImagesCannotBeListed() throws Exception {
+        ImagePresenceCache cache = new ImagePresenceCache(() -> {
+            throw new DockerException("nope");
+        });
+
+        assertFalse(cache.isPresent("postgres").isPresent());
+    }
+
+    @Test
+    public void testThatBuiltImagesAreAddedAndRemovedImagesTakeTheirNamesAlong() throws Exception {
+        ImagePresenceCache cache = new ImagePresenceCache(Collections::emptyList);
+
+        cache.added("abcdef0123456789", Optional.of("app:1.0"));
+        cache.added("abcdef0123456789", Optional.of("registry:5000/app:1.0"));
+        assertEquals(Optional.of(true), cache.isPresent("app:1.0"));
+
+        cache.removed("abcdef0123456789");
+
+        assertEquals(Optional.of(false), cache.isPresent("app:1.0"));
+        assertEquals(Optional.of(false), cache.isPresent("registry:5000/app:1.0"));
+        assertEquals(Optional.of(false), cache.isPresent("abcdef0123456789"));
+    }
+
+    @Test
+    public void testThatConcurrentPullsOfTheSameImageAreCoalesced() throws Exception {
+        ImagePresenceCache cache = new ImagePresenceCache(Collections::emptyList);
+        PullProgress progress = new PullProgress("postgres");
+        AtomicInteger pulls = new AtomicInteger();
+        CountDownLatch pulling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<PullProgress>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.pull("postgres", image -> {
+                pulls.incrementAndGet();
+                pulling.countDown();
+                await(release);
+                return progress;
+            })));
+            await(pulling);
+            for (String image : Arrays.asList("postgres:latest", "library/postgres")) {
+                results.add(executor.submit(() -> cache.pull(image, name -> {
+                    pulls.incrementAndGet();
+                    return new PullProgress(name);
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<PullProgress> result : results) {
+                assertSame(progress, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, pulls.get());
+        assertEquals(Optional.of(true), cache.isPresent("postgres"));
+    }
+
+    @Test
+    public void testThatAFailedPullDoesNotMakeTheImagePresent() throws Exception {
+        ImagePresenceCache cache = new ImagePresenceCache(Collections::emptyList);
+        PullProgress failed = mock(PullProgress.class);
+        when(failed.getError()).thenReturn(Optional.of("manifest unknown"));
+
+        assertSame(failed, cache.pull("postgres:0.1", image -> failed));
+
+        assertEquals(Optional.of(false), cache.isPresent("postgres:0.1"));
+    }
+
+    @Test
+    public void testThatAPullThatThrowsDoesNotMakeTheImagePresentAndFailsTheWaitingPulls() throws Exception {
+        ImagePresenceCache cache = new ImagePresenceCache(Collections::emptyList);
+        CountDownLatch pulling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PullProgress> first = executor.submit(() -> cache.pull("postgres:0.1", image -> {
+                pulling.countDown();
+                await(release);
+                throw new ImageNotFoundException(image);
+            }));
+            await(pulling);
+            Future<PullProgress> waiting = executor.submit(() -> cache.pull("postgres:0.1", PullProgress::new));
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<PullProgress> result : Arrays.asList(first, waiting)) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    fail("The pull should fail");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof ImageNotFoundException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Optional.of(false), cache.isPresent("postgres:0.1"));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ImageInspectionResult image(final String id, final String... tags) {
+        ImageInspectionResult image = mock(ImageInspectionResult.class);
+        when(image.getId()).thenReturn(id);
+        when(image.getRepoTags()).thenReturn(Arrays.asList(tags));
+        when(image.getRepoDigests()).thenReturn(Collections.emptyList());
+        return image;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelGzipOutputStreamTest {
+
+    @Test
+    public void testThatTheOutputIsOneValidGzipStream() throws Exception {
+        byte[] data = createCompressibleData(3 * ParallelGzipOutputStream.BLOCK_SIZE + 12345);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, 4)) {
+            // odd sized writes, so blocks get filled from several writes
+            for (int offset = 0; offset < data.length; offset += 7777) {
+                gzip.write(data, offset, Math.min(7777, data.length - offset));
+            }
+            gzip.write('!');
+        }
+
+        byte[] expected = new byte[data.length + 1];
+        System.arraycopy(data, 0, expected, 0, data.length);
+        expected[data.length] = '!';
+        assertArrayEquals(expected, gunzip(compressed.toByteArray()));
+        assertTrue(compressed.size() < data.length / 2);
+    }
+
+    @Test
+    public void testThatAnEmptyStreamIsValid() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, 2);
+        gzip.finish();
+
+        assertEquals(0, gunzip(compressed.toByteArray()).length);
+        assertEquals(compressed.size(), gzip.getBytesOut());
+    }
+
+    @Test
+    public void testThatTheLevelGoesUpWhenTheOutputIsSlow() throws Exception {
+        byte[] data = createCompressibleData(32 * ParallelGzipOutputStream.BLOCK_SIZE);
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(new SlowOutputStream(20), 4);
+
+        gzip.write(data);
+        gzip.finish();
+
+        assertTrue("level was " + gzip.getLevel(), gzip.getLevel() > 6);
+    }
+
+    @Test
+    public void testThatTheLevelGoesDownWhenTheOutputIsFast() throws Exception {
+        byte[] data = createCompressibleData(32 * ParallelGzipOutputStream.BLOCK_SIZE);
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(new ByteArrayOutputStream(), 4);
+
+        gzip.write(data);
+        gzip.finish();
+
+        assertTrue("level was " + gzip.getLevel(), gzip.getLevel() < 6);
+    }
+
+    static byte[] createCompressibleData(final int size) {
+        String[] words = {"docker ", "maven ", "plugin ", "container ", "image ", "layer ", "build ", "jar\n"};
+        Random random = new Random(42);
+        ByteArrayOutputStream data = new ByteArrayOutputStream(size + 16);
+        while (data.size() < size) {
+            byte[] word = words[random.nextInt(words.length)].getBytes(StandardCharsets.US_ASCII);
+            data.write(word, 0, word.length);
+        }
+        byte[] bytes = new byte[size];
+        System.arraycopy(data.toByteArray(), 0, bytes, 0, size);
+        return bytes;
+    }
+
+    static byte[] gunzip(final byte[] compressed) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private static class SlowOutputStream extends OutputStream {
+        private final long millisPerWrite;
+
+        private SlowOutputStream(final long millisPerWrite) {
+            this.millisPerWrite = millisPerWrite;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            try {
+                Thread.sleep(millisPerWrite);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventsServiceTest {
+
+    private final EventsService service = new EventsService("127.0.0.1:2375");
+
+    @After
+    public void tearDown() throws Exception {
+        service.close();
+    }
+
+    @Test
+    public void testThatAWaitingFutureGetsTheEventOfItsContainer() throws Exception {
+        CompletableFuture<String> died = service.awaitEvent("app", EventsService.DIE);
+        CompletableFuture<String> healthy = service.awaitEvent("app", EventsService.HEALTHY, EventsService.DIE);
+
+        dispatch("{\"status\":\"start\",\"id\":\"app\",\"from\":\"app:1.0\",\"time\":1}",
+                "{\"status\":\"health_status: healthy\",\"id\":\"app\",\"from\":\"app:1.0\",\"time\":2}");
+
+        assertFalse(died.isDone());
+        assertEquals(EventsService.HEALTHY, healthy.getNow(null));
+    }
+
+    @Test
+    public void testThatAnEventThatAlreadyHappenedCompletesTheFutureRightAway() throws Exception {
+        dispatch("{\"status\":\"die\",\"id\":\"app\",\"from\":\"app:1.0\",\"time\":1}");
+
+        assertEquals(EventsService.DIE, service.awaitEvent("app", EventsService.DIE).getNow(null));
+    }
+
+    @Test
+    public void testThatEventsOfOtherContainersAndOtherTypesAreIgnored() throws Exception {
+        CompletableFuture<String> died = service.awaitEvent("app", EventsService.DIE);
+
+        dispatch("{\"status\":\"die\",\"id\":\"database\",\"from\":\"postgres\",\"time\":1}",
+                "{\"status\":\"die\",\"id\":\"app\",\"Type\":\"network\",\"Action\":\"die\",\"time\":2}");
+
+        assertFalse(died.isDone());
+    }
+
+    @Test
+    public void testThatWaitingFuturesFailWhenTheStreamEndsAndTheServiceCanSubscribeAgain() throws Exception {
+        AtomicInteger subscriptions = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            subscriptions.incrementAndGet();
+            byte[] body = "{\"status\":\"start\",\"id\":\"database\",\"time\":1}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        EventsService endingService = new EventsService("127.0.0.1:" + server.getAddress().getPort());
+        try {
+            CompletableFuture<String> died = endingService.awaitEvent("app", EventsService.DIE);
+            endingService.subscribe();
+
+            try {
+                died.get(5, TimeUnit.SECONDS);
+                fail("The future should fail when the stream of events ends");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().getMessage().contains("ended"));
+            }
+
+            endingService.subscribe();
+            assertEquals(2, subscriptions.get());
+        } finally {
+            endingService.close();
+            server.stop(0);
+        }
+    }
+
+    private void dispatch(final String... events) {
+        String body = String.join("\n", events);
+        service.dispatch(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how much heap decoding docker's multiplexed log stream allocates per MB of logs, comparing decoding a
+ * byte[] and a String per frame with the {@link LogFrameDecoder} based {@link LogDemultiplexer} and
+ * {@link LogLineScanner}. This is not a unit test, run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=net.wouterdanes.docker.remoteapi.LogDecoderBenchmark \
+ *     -Dexec.args="[MB of logs] [iterations]"
+ * </pre>
+ * The logs are lines of 100 bytes in frames of one line, like a container logging line by line. Allocation is read
+ * from the thread's allocation counter of the JVM, after a warm up so the numbers don't include class loading.
+ */
+public final class LogDecoderBenchmark {
+
+    private static final int LINE_SIZE = 100;
+    private static final int WARM_UP_ITERATIONS = 5;
+
+    private LogDecoderBenchmark() { }
+
+    public static void main(final String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        byte[] logs = logs(megabytes * 1024 * 1024);
+        double logMegabytes = logs.length / (1024.0 * 1024.0);
+
+        measure("byte[] and String per frame", logs, logMegabytes, iterations, LogDecoderBenchmark::decodePerFrame);
+        WritableByteChannel discard = new DiscardingChannel();
+        LogDemultiplexer demultiplexer = new LogDemultiplexer();
+        measure("LogDemultiplexer           ", logs, logMegabytes, iterations,
+                in -> demultiplexer.demultiplex(in, discard, discard));
+        Matcher matcher = Pattern.compile("never logged").matcher("");
+        LogLineScanner scanner = new LogLineScanner(line -> matcher.reset(line).find());
+        measure("LogLineScanner             ", logs, logMegabytes, iterations, scanner::scan);
+    }
+
+    private static void measure(final String name, final byte[] logs, final double logMegabytes,
+                                final int iterations, final Decoder decoder) throws Exception {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            decoder.decode(Channels.newChannel(new ByteArrayInputStream(logs)));
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            decoder.decode(Channels.newChannel(new ByteArrayInputStream(logs)));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("%s: %,10.0f bytes allocated per MB, %6.1f MB/s%n", name,
+                allocated / (logMegabytes * iterations), logMegabytes * iterations / seconds);
+    }
+
+    /**
+     * Decodes the logs the way they used to be decoded: a byte[] and a String for every frame.
+     */
+    private static void decodePerFrame(final ReadableByteChannel in) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteBuffer read = ByteBuffer.allocate(64 * 1024);
+        while (in.read(read) != -1) {
+            bytes.write(read.array(), 0, read.position());
+            read.clear();
+        }
+        ByteBuffer bb = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.BIG_ENDIAN);
+        StringBuilder logs = new StringBuilder();
+        while (bb.hasRemaining()) {
+            bb.position(bb.position() + 4);
+            byte[] frame = new byte[Math.min(bb.getInt(), bb.remaining())];
+            bb.get(frame);
+            logs.append(new String(frame, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] logs(final int size) {
+        byte[] line = new byte[LINE_SIZE];
+        for (int i = 0; i < LINE_SIZE - 1; i++) {
+            line[i] = (byte) ('a' + i % 26);
+        }
+        line[LINE_SIZE - 1] = '\n';
+        int frames = size / LINE_SIZE;
+        ByteBuffer logs = ByteBuffer.allocate(frames * (8 + LINE_SIZE));
+        for (int i = 0; i < frames; i++) {
+            logs.put((byte) (1 + i % 2)).put(new byte[3]).putInt(LINE_SIZE).put(line);
+        }
+        return logs.array();
+    }
+
+    private interface Decoder {
+        void decode(ReadableByteChannel logs) throws Exception;
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+        @Override
+        public int write(final ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LogDemultiplexerTest {
+
+    private static final int STDOUT = 1;
+    private static final int STDERR = 2;
+
+    @Test
+    public void testThatStdoutAndStderrGoToTheirOwnChannel() throws Exception {
+        byte[] logs = frames(
+                frame(STDOUT, "starting\n"),
+                frame(STDERR, "warning: low memory\n"),
+                frame(STDOUT, "started\n"));
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        long written = new LogDemultiplexer().demultiplex(new ByteArrayInputStream(logs),
+                Channels.newChannel(stdout), Channels.newChannel(stderr));
+
+        assertEquals("starting\nstarted\n", stdout.toString("UTF-8"));
+        assertEquals("warning: low memory\n", stderr.toString("UTF-8"));
+        assertEquals(37, written);
+    }
+
+    @Test
+    public void testThatOneChannelGetsBothStreamsInOrder() throws Exception {
+        byte[] logs = frames(
+                frame(STDOUT, "one\n"),
+                frame(STDERR, "two\n"),
+                frame(STDOUT, "three\n"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+
+        new LogDemultiplexer().demultiplex(new ByteArrayInputStream(logs), channel, channel);
+
+        assertEquals("one\ntwo\nthree\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testThatFramesLargerThanTheBufferAreCopiedCompletely() throws Exception {
+        byte[] payload = new byte[200 * 1024];
+        Arrays.fill(payload, (byte) 'x');
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+
+        new LogDemultiplexer().demultiplex(new ByteArrayInputStream(frame(STDOUT, payload)), channel, channel);
+
+        assertArrayEquals(payload, out.toByteArray());
+    }
+
+    @Test
+    public void testThatATruncatedFrameIsCopiedAsFarAsItGoes() throws Exception {
+        byte[] frame = frame(STDOUT, "cut off here");
+        byte[] logs = Arrays.copyOf(frame, frame.length - 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+
+        new LogDemultiplexer().demultiplex(new ByteArrayInputStream(logs), channel, channel);
+
+        assertEquals("cut off", out.toString("UTF-8"));
+    }
+
+    private static byte[] frames(final byte[]... frames) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] frame(final int stream, final String text) {
+        return frame(stream, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] frame(final int stream, final byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .put((byte) stream).put(new byte[3]).putInt(payload.length).put(payload)
+                .array();
+    }
+}
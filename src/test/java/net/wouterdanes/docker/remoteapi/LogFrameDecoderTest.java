@@ -0,0 +1,128 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogFrameDecoderTest {
+
+    private static final int STDOUT = LogFrameDecoder.STDOUT;
+    private static final int STDERR = LogFrameDecoder.STDERR;
+
+    @Test
+    public void testThatFramesAreHandedOutWithTheirStream() throws Exception {
+        byte[] logs = frames(frame(STDOUT, "out\n"), frame(STDERR, "err\n"), frame(STDOUT, ""), frame(STDOUT, "!"));
+        List<String> frames = new ArrayList<>();
+
+        boolean stopped = new LogFrameDecoder().decode(channel(logs), (stream, payload) -> {
+            frames.add(stream + ":" + StandardCharsets.UTF_8.decode(payload));
+            return false;
+        });
+
+        assertFalse(stopped);
+        assertEquals(Arrays.asList("1:out\n", "2:err\n", "1:!"), frames);
+    }
+
+    @Test
+    public void testThatHeadersAndPayloadsSplitOverReadsAndTheBufferAreReassembled() throws Exception {
+        byte[] logs = frames(frame(STDOUT, "a rather long first frame"), frame(STDERR, "second"));
+        ReadableByteChannel oneByteAtATime = Channels.newChannel(new ByteArrayInputStream(logs) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        });
+        StringBuilder stdout = new StringBuilder();
+        StringBuilder stderr = new StringBuilder();
+
+        new LogFrameDecoder(16).decode(oneByteAtATime, (stream, payload) -> {
+            (stream == STDERR ? stderr : stdout).append(StandardCharsets.UTF_8.decode(payload));
+            return false;
+        });
+
+        assertEquals("a rather long first frame", stdout.toString());
+        assertEquals("second", stderr.toString());
+    }
+
+    @Test
+    public void testThatDecodingStopsWhenTheHandlerAsksTo() throws Exception {
+        byte[] logs = frames(frame(STDOUT, "one"), frame(STDOUT, "two"));
+        List<String> frames = new ArrayList<>();
+
+        boolean stopped = new LogFrameDecoder().decode(channel(logs), (stream, payload) -> {
+            frames.add(StandardCharsets.UTF_8.decode(payload).toString());
+            return true;
+        });
+
+        assertTrue(stopped);
+        assertEquals(Arrays.asList("one"), frames);
+    }
+
+    @Test
+    public void testThatTheHandlerCanLeaveThePayloadUnread() throws Exception {
+        byte[] logs = frames(frame(STDOUT, "skipped"), frame(STDERR, "read"));
+        List<String> frames = new ArrayList<>();
+
+        new LogFrameDecoder().decode(channel(logs), (stream, payload) -> {
+            if (stream == STDERR) {
+                frames.add(StandardCharsets.UTF_8.decode(payload).toString());
+            }
+            return false;
+        });
+
+        assertEquals(Arrays.asList("read"), frames);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatTheBufferMustHoldAHeader() {
+        new LogFrameDecoder(4);
+    }
+
+    private static ReadableByteChannel channel(final byte[] bytes) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] frames(final byte[]... frames) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] frame(final int stream, final String text) {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(8 + payload.length)
+                .put((byte) stream).put(new byte[3]).putInt(payload.length).put(payload)
+                .array();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogLineScannerTest {
+
+    private static final int STDOUT = 1;
+    private static final int STDERR = 2;
+
+    @Test
+    public void testThatLinesContinueInTheNextFrameOfTheSameStream() throws Exception {
+        byte[] logs = frames(
+                frame(STDOUT, "starting the ser"),
+                frame(STDERR, "warning: low memory\n"),
+                frame(STDOUT, "ver\nlistening on port 8080\n"));
+        List<String> lines = new ArrayList<>();
+
+        boolean matched = new LogLineScanner(line -> {
+            lines.add(line.toString());
+            return false;
+        }).scan(new ByteArrayInputStream(logs));
+
+        assertFalse(matched);
+        assertEquals(Arrays.asList("starting the ser", "warning: low memory", "starting the server",
+                "listening on port 8080"), lines);
+    }
+
+    @Test
+    public void testThatACharacterSplitOverTwoFramesIsDecodedCorrectly() throws Exception {
+        byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream logs = new ByteArrayOutputStream();
+        logs.write(frame(STDOUT, new byte[]{'5', ' ', euro[0]}));
+        logs.write(frame(STDOUT, new byte[]{euro[1], euro[2], '\n'}));
+        List<String> lines = new ArrayList<>();
+
+        new LogLineScanner(line -> {
+            lines.add(line.toString());
+            return false;
+        }).scan(new ByteArrayInputStream(logs.toByteArray()));
+
+        assertEquals("5 €", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testThatScanningStopsAtTheFirstMatchingLine() throws Exception {
+        byte[] logs = frames(
+                frame(STDOUT, "booting\r\nServer startup in 1234 ms\n"),
+                frame(STDOUT, "handling requests\n"));
+        List<String> lines = new ArrayList<>();
+
+        boolean matched = new LogLineScanner(line -> {
+            lines.add(line.toString());
+            return line.toString().startsWith("Server startup in");
+        }).scan(new ByteArrayInputStream(logs));
+
+        assertTrue(matched);
+        assertEquals(Arrays.asList("booting", "Server startup in 1234 ms"), lines);
+    }
+
+    @Test
+    public void testThatInvalidUtf8IsReplacedInsteadOfFailing() throws Exception {
+        byte[] logs = frame(STDOUT, new byte[]{'o', 'k', (byte) 0xff, '\n'});
+        List<String> lines = new ArrayList<>();
+
+        new LogLineScanner(line -> {
+            lines.add(line.toString());
+            return false;
+        }).scan(new ByteArrayInputStream(logs));
+
+        assertEquals(Arrays.asList("ok\ufffd"), lines);
+    }
+
+    @Test
+    public void testThatLinesLongerThanTheInitialBufferAreHandedOutWhole() throws Exception {
+        char[] text = new char[10000];
+        Arrays.fill(text, 'x');
+        String longLine = new String(text);
+        List<String> lines = new ArrayList<>();
+
+        new LogLineScanner(line -> {
+            lines.add(line.toString());
+            return false;
+        }).scan(new ByteArrayInputStream(frame(STDOUT, longLine + "\n")));
+
+        assertEquals(longLine, lines.get(lines.size() - 1));
+    }
+
+    private static byte[] frames(final byte[]... frames) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] frame(final int stream, final String text) {
+        return frame(stream, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] frame(final int stream, final byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .put((byte) stream).put(new byte[3]).putInt(payload.length).put(payload)
+                .array();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PullProgressTest {
+
+    private long now;
+    private final PullProgress progress = new PullProgress("postgres:9.4", () -> now);
+
+    @Test
+    public void testThatTheProgressOfEveryLayerIsTracked() {
+        update("{\"status\":\"Pulling from library/postgres\",\"id\":\"9.4\"}");
+        update("{\"status\":\"Already exists\",\"progressDetail\":{},\"id\":\"aaaa\"}");
+        update("{\"status\":\"Pulling fs layer\",\"progressDetail\":{},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Downloading\",\"progressDetail\":{\"current\":1024,\"total\":4096},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Downloading\",\"progressDetail\":{\"current\":512,\"total\":2048},\"id\":\"cccc\"}");
+
+        assertEquals(3, progress.getLayers().size());
+        PullProgress.Layer layer = progress.getLayers().get(1);
+        assertEquals("bbbb", layer.getId());
+        assertEquals("Downloading", layer.getPhase());
+        assertEquals(1024, layer.getCurrent());
+        assertEquals(4096, layer.getTotal());
+        assertEquals(1536, progress.getBytesDownloaded());
+        assertEquals(6144, progress.getBytesTotal());
+        assertEquals(1, progress.getLayersDone());
+    }
+
+    @Test
+    public void testThatAFinishedLayerCountsAsDownloadedCompletely() {
+        update("{\"status\":\"Downloading\",\"progressDetail\":{\"current\":4000,\"total\":4096},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Download complete\",\"progressDetail\":{},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Extracting\",\"progressDetail\":{\"current\":32768,\"total\":65536},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Pull complete\",\"progressDetail\":{},\"id\":\"bbbb\"}");
+
+        assertEquals(4096, progress.getBytesDownloaded());
+        assertEquals(1, progress.getLayersDone());
+        assertEquals("Pull complete", progress.getLayers().get(0).getPhase());
+    }
+
+    @Test
+    public void testThatThroughputAndEtaFollowFromTheElapsedTime() {
+        now += TimeUnit.SECONDS.toNanos(2);
+        update("{\"status\":\"Downloading\",\"progressDetail\":{\"current\":2048,\"total\":8192},\"id\":\"bbbb\"}");
+
+        assertEquals(1024.0, progress.getBytesPerSecond(), 0.001);
+        assertEquals(Optional.of(6L), progress.getEtaSeconds());
+    }
+
+    @Test
+    public void testThatTheReportStopsTheClockWhenThePullFinishes() {
+        now += TimeUnit.SECONDS.toNanos(3);
+        progress.finish();
+        now += TimeUnit.SECONDS.toNanos(10);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(3), progress.getElapsedNanos());
+        assertFalse(progress.getEtaSeconds().isPresent());
+    }
+
+    @Test
+    public void testThatTheErrorOfThePullIsKept() {
+        update("{\"errorDetail\":{\"message\":\"not found\"},\"error\":\"image not found\"}");
+
+        assertEquals(Optional.of("image not found"), progress.getError());
+    }
+
+    private void update(final String json) {
+        progress.update((JsonObject) new JsonParser().parse(json));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+public class PushProgressTest {
+
+    private final PushProgress progress = new PushProgress("app:1.0");
+
+    @Test
+    public void testThatTheLastPhaseOfEveryLayerIsKept() {
+        update("{\"status\":\"Preparing\",\"progressDetail\":{},\"id\":\"aaaa\"}");
+        update("{\"status\":\"Preparing\",\"progressDetail\":{},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Preparing\",\"progressDetail\":{},\"id\":\"cccc\"}");
+        update("{\"status\":\"Layer already exists\",\"progressDetail\":{},\"id\":\"aaaa\"}");
+        update("{\"status\":\"Pushing\",\"progressDetail\":{\"current\":512,\"total\":1024},\"id\":\"bbbb\"}");
+        update("{\"status\":\"Pushed\",\"progressDetail\":{},\"id\":\"cccc\"}");
+
+        assertEquals(Arrays.asList("aaaa", "bbbb", "cccc"), progress.getLayers());
+        assertEquals(Optional.of("Pushing"), progress.getPhase("bbbb"));
+        assertEquals(1, progress.getLayersPushed());
+        assertEquals(1, progress.getLayersAlreadyExisting());
+    }
+
+    @Test
+    public void testThatTheDigestIsReadFromTheStatusOfOlderDaemons() {
+        update("{\"status\":\"1.0: digest: sha256:0123abcdef size: 736\"}");
+
+        assertEquals(Optional.of("sha256:0123abcdef"), progress.getDigest());
+    }
+
+    @Test
+    public void testThatTheErrorOfThePushIsKept() {
+        update("{\"errorDetail\":{\"message\":\"unauthorized\"},\"error\":\"unauthorized\"}");
+
+        assertEquals(Optional.of("unauthorized"), progress.getError());
+    }
+
+    private void update(final String json) {
+        progress.update((JsonObject) new JsonParser().parse(json));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.wouterdanes.docker.remoteapi.model.ImageDescriptor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the client against a small in-process stand-in for a registry:2 on localhost.
+ */
+public class RegistryClientTest {
+
+    private static final String DIGEST = "sha256:0123456789abcdef";
+
+    private HttpServer registry;
+    private String address;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        address = "localhost:" + registry.getAddress().getPort();
+        registry.createContext("/v2/app/manifests/", exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("/1.0")) {
+                exchange.getResponseHeaders().add("Docker-Content-Digest", DIGEST);
+                respond(exchange, 200, null);
+            } else {
+                respond(exchange, 404, null);
+            }
+        });
+        registry.createContext("/v2/private/app/manifests/", exchange -> {
+            if ("Bearer secret-token".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().add("Docker-Content-Digest", DIGEST);
+                respond(exchange, 200, null);
+            } else {
+                exchange.getResponseHeaders().add("WWW-Authenticate", String.format("Bearer realm=\"http://%s/token\"," +
+                        "service=\"registry\",scope=\"repository:private/app:pull\"", address));
+                respond(exchange, 401, null);
+            }
+        });
+        registry.createContext("/token", exchange -> {
+            boolean rightScope = exchange.getRequestURI().getRawQuery().contains("scope=repository%3Aprivate%2Fapp%3Apull");
+            respond(exchange, 200, rightScope ? "{\"token\":\"secret-token\"}" : "{\"token\":\"wrong\"}");
+        });
+        registry.start();
+    }
+
+    @After
+    public void tearDown() {
+        registry.stop(0);
+    }
+
+    @Test
+    public void testThatTheDigestOfATagIsReadFromTheManifestHeaders() throws Exception {
+        assertEquals(Optional.of(DIGEST), new RegistryClient(5000).getManifestDigest(address + "/app:1.0"));
+    }
+
+    @Test
+    public void testThatAnUnknownTagHasNoDigest() throws Exception {
+        assertEquals(Optional.empty(), new RegistryClient(5000).getManifestDigest(address + "/app:2.0"));
+    }
+
+    @Test
+    public void testThatATokenIsFetchedWhenTheRegistryAsksForOne() throws Exception {
+        assertEquals(Optional.of(DIGEST), new RegistryClient(5000).getManifestDigest(address + "/private/app:1.0"));
+    }
+
+    @Test
+    public void testThatOfficialImagesAreLookedUpInTheLibraryOfDockerHub() throws Exception {
+        assertEquals("https://registry-1.docker.io/v2/library/nginx/manifests/latest",
+                RegistryClient.getManifestUrl(new ImageDescriptor("nginx")).toString());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head || bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!head) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ApiMetricsTest {
+
+    @Test
+    public void testThatIdsAndNamesAreLeftOutOfTheEndpoints() throws Exception {
+        assertEquals("POST /containers/create", ApiMetrics.getEndpoint("POST", "/v1.21/containers/create"));
+        assertEquals("GET /containers/{id}/json", ApiMetrics.getEndpoint("GET", "/v1.21/containers/cafebabe/json"));
+        assertEquals("DELETE /containers/{id}", ApiMetrics.getEndpoint("DELETE", "/v1.21/containers/cafebabe"));
+        assertEquals("POST /images/{name}/push",
+                ApiMetrics.getEndpoint("POST", "/v1.21/images/localhost:5000/team/app/push"));
+        assertEquals("GET /images/json", ApiMetrics.getEndpoint("GET", "/v1.21/images/json"));
+        assertEquals("GET /version", ApiMetrics.getEndpoint("GET", "/v1.21/version"));
+    }
+
+    @Test
+    public void testThatAPathWithoutAKnownActionIsAllName() throws Exception {
+        assertEquals("DELETE /images/{name}", ApiMetrics.getEndpoint("DELETE", "/v1.21/images/org/app:1.0"));
+        assertEquals("DELETE /images/{name}",
+                ApiMetrics.getEndpoint("DELETE", "/v1.21/images/localhost:5000/team/app"));
+        assertEquals("POST /images/{name}/tag", ApiMetrics.getEndpoint("POST", "/v1.21/images/org/app/tag"));
+    }
+
+    @Test
+    public void testThatTheMetricsSinceASnapshotOnlyHoldTheLaterCalls() throws Exception {
+        ApiMetrics metrics = new ApiMetrics("localhost:2375");
+        metrics.recordCall("GET /version", TimeUnit.MILLISECONDS.toNanos(500), true);
+        metrics.recordBytesReceived("GET /version", 100);
+        ApiMetrics snapshot = metrics.snapshot();
+        metrics.recordCall("GET /version", TimeUnit.MILLISECONDS.toNanos(10), false);
+        metrics.recordBytesReceived("GET /version", 30);
+        metrics.recordCall("POST /containers/create", TimeUnit.MILLISECONDS.toNanos(20), false);
+
+        ApiMetrics delta = metrics.since(snapshot);
+
+        assertEquals(2, delta.getCalls());
+        assertEquals(1, snapshot.getCalls());
+        JsonObject version = delta.toJson().getAsJsonArray("endpoints").get(0).getAsJsonObject();
+        assertEquals("GET /version", version.get("endpoint").getAsString());
+        assertEquals(1, version.get("calls").getAsInt());
+        assertEquals(0, version.get("errors").getAsInt());
+        assertEquals(30, version.get("bytesReceived").getAsLong());
+        assertEquals(10.0, version.getAsJsonObject("latencyMillis").get("max").getAsDouble(), 0.001);
+    }
+
+    @Test
+    public void testThatCallsErrorsBytesAndLatencyPercentilesAreReported() throws Exception {
+        ApiMetrics metrics = new ApiMetrics("localhost:2375");
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordCall("GET /version", TimeUnit.MILLISECONDS.toNanos(i), i > 98);
+        }
+        metrics.recordBytesSent("GET /version", 10);
+        metrics.recordBytesReceived("GET /version", 2048);
+
+        JsonObject endpoint = metrics.toJson().getAsJsonArray("endpoints").get(0).getAsJsonObject();
+
+        assertEquals("GET /version", endpoint.get("endpoint").getAsString());
+        assertEquals(100, endpoint.get("calls").getAsInt());
+        assertEquals(2, endpoint.get("errors").getAsInt());
+        assertEquals(10, endpoint.get("bytesSent").getAsLong());
+        assertEquals(2048, endpoint.get("bytesReceived").getAsLong());
+        JsonObject latency = endpoint.getAsJsonObject("latencyMillis");
+        assertEquals(50.0, latency.get("p50").getAsDouble(), 0.001);
+        assertEquals(95.0, latency.get("p95").getAsDouble(), 0.001);
+        assertEquals(99.0, latency.get("p99").getAsDouble(), 0.001);
+        assertEquals(100.0, latency.get("max").getAsDouble(), 0.001);
+    }
+}
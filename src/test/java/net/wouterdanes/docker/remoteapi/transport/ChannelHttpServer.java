@@ -0,0 +1,215 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A minimal http/1.1 server on a unix domain socket or on a loopback tcp port, to test the transports without a docker
+ * daemon. The handler gets the request path and returns a json body, responses are sent chunked when the path ends
+ * with "chunked". When the query contains "follow=1", the body is sent as the first chunk of a response that never ends,
+ * like followed logs. Unix sockets need Java 16 or newer, see {@link #isUnixSocketSupported()}.
+ */
+class ChannelHttpServer implements AutoCloseable {
+
+    private final Path socketPath;
+    private final ServerSocketChannel serverChannel;
+    private final Function<String, String> handler;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+    private volatile boolean lastRequestChunked;
+    private volatile long lastRequestBodySize;
+    private final CountDownLatch followerGone = new CountDownLatch(1);
+
+    private ChannelHttpServer(final ServerSocketChannel serverChannel, final Path socketPath,
+                              final Function<String, String> handler) {
+        this.serverChannel = serverChannel;
+        this.socketPath = socketPath;
+        this.handler = handler;
+        acceptor = new Thread(this::acceptConnections, "channel-http-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    static ChannelHttpServer onUnixSocket(final Path socketPath, final Function<String, String> handler)
+            throws Exception {
+        Files.deleteIfExists(socketPath);
+        ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+        ServerSocketChannel serverChannel = (ServerSocketChannel) ServerSocketChannel.class
+                .getMethod("open", ProtocolFamily.class)
+                .invoke(null, unix);
+        SocketAddress address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                .getMethod("of", Path.class)
+                .invoke(null, socketPath);
+        serverChannel.bind(address);
+        return new ChannelHttpServer(serverChannel, socketPath, handler);
+    }
+
+    static ChannelHttpServer onLoopback(final Function<String, String> handler) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return new ChannelHttpServer(serverChannel, null, handler);
+    }
+
+    static boolean isUnixSocketSupported() {
+        try {
+            Class.forName("java.net.UnixDomainSocketAddress");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * @return the host:port of a loopback server
+     */
+    String getApiRoot() throws IOException {
+        InetSocketAddress address = (InetSocketAddress) serverChannel.getLocalAddress();
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    boolean isLastRequestChunked() {
+        return lastRequestChunked;
+    }
+
+    long getLastRequestBodySize() {
+        return lastRequestBodySize;
+    }
+
+    /**
+     * @return true when the client of a followed response closed its connection within the passed time
+     */
+    boolean awaitFollowerGone(final long millis) throws InterruptedException {
+        return followerGone.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws Exception {
+        running = false;
+        serverChannel.close();
+        acceptor.join(1000);
+        if (socketPath != null) {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                Thread connectionThread = new Thread(() -> serve(channel), "channel-http-connection");
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(final SocketChannel channel) {
+        try (SocketChannel ignored = channel) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            String requestLine;
+            while ((requestLine = HttpBodyStreams.readLine(in)) != null) {
+                long contentLength = 0;
+                boolean chunkedRequest = false;
+                String header;
+                while ((header = HttpBodyStreams.readLine(in)) != null && !header.isEmpty()) {
+                    String lowerCaseHeader = header.toLowerCase(Locale.ROOT);
+                    if (lowerCaseHeader.startsWith("content-length:")) {
+                        contentLength = Long.parseLong(header.substring(header.indexOf(':') + 1).trim());
+                    } else if (lowerCaseHeader.startsWith("transfer-encoding:") && lowerCaseHeader.contains("chunked")) {
+                        chunkedRequest = true;
+                    }
+                }
+                InputStream requestBody = chunkedRequest
+                        ? new HttpBodyStreams.ChunkedInputStream(in)
+                        : new HttpBodyStreams.FixedLengthInputStream(in, contentLength);
+                lastRequestBodySize = drain(requestBody);
+                lastRequestChunked = chunkedRequest;
+
+                String path = requestLine.split(" ")[1];
+                byte[] body = handler.apply(path).getBytes(StandardCharsets.UTF_8);
+                HttpBodyStreams.writeLine(out, "HTTP/1.1 200 OK");
+                HttpBodyStreams.writeLine(out, "Content-Type: application/json");
+                if (path.contains("follow=1")) {
+                    HttpBodyStreams.writeLine(out, "Transfer-Encoding: chunked");
+                    HttpBodyStreams.writeLine(out, "");
+                    new HttpBodyStreams.ChunkedOutputStream(out).write(body);
+                    out.flush();
+                    // the body never ends, wait until the client hangs up
+                    while (in.read() != -1) {
+                        // discard
+                    }
+                    followerGone.countDown();
+                    return;
+                } else if (path.endsWith("chunked")) {
+                    HttpBodyStreams.writeLine(out, "Transfer-Encoding: chunked");
+                    HttpBodyStreams.writeLine(out, "");
+                    try (OutputStream chunked = new HttpBodyStreams.ChunkedOutputStream(out)) {
+                        int half = body.length / 2;
+                        chunked.write(body, 0, half);
+                        chunked.flush();
+                        chunked.write(body, half, body.length - half);
+                    }
+                } else {
+                    HttpBodyStreams.writeLine(out, "Content-Length: " + body.length);
+                    HttpBodyStreams.writeLine(out, "");
+                    out.write(body);
+                }
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // client went away
+        }
+    }
+
+    private static long drain(final InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        long size = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            size += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import net.wouterdanes.docker.remoteapi.ContainersService;
+import net.wouterdanes.docker.remoteapi.ImagesService;
+import net.wouterdanes.docker.remoteapi.MiscService;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.exception.ImageNotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledHttpTransportTest {
+
+    private static final String VERSION_JSON = "{\"Version\":\"1.9.1\",\"ApiVersion\":\"1.21\"}";
+
+    private HttpServer server;
+    private DockerTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = VERSION_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        String apiRoot = "127.0.0.1:" + server.getAddress().getPort();
+        transport = new PooledHttpTransport(apiRoot, new TransportSettings(4, 30));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testThatConsecutiveCallsReuseTheSameConnection() throws Exception {
+        MiscService miscService = new MiscService(transport);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("1.21", miscService.getVersionInfo().getApiVersion());
+        }
+
+        TransportStatistics statistics = transport.getStatistics();
+        assertEquals(10, statistics.getRequests());
+        assertEquals(1, statistics.getOpenedConnections());
+        assertEquals(9, statistics.getReusedConnections());
+        assertEquals(1, statistics.getPeakInFlightRequests());
+    }
+
+    @Test
+    public void testThatTheCallsAreRecordedInTheMetrics() throws Exception {
+        MiscService miscService = new MiscService(transport);
+
+        for (int i = 0; i < 3; i++) {
+            miscService.getVersionInfo();
+        }
+
+        JsonObject endpoint = transport.getMetrics().toJson().getAsJsonArray("endpoints").get(0).getAsJsonObject();
+        assertEquals("GET /version", endpoint.get("endpoint").getAsString());
+        assertEquals(3, endpoint.get("calls").getAsInt());
+        assertEquals(0, endpoint.get("errors").getAsInt());
+        assertEquals(3 * VERSION_JSON.length(), endpoint.get("bytesReceived").getAsLong());
+    }
+
+    @Test
+    public void testThatTheBytesOfAStreamedPullAreRecordedInTheMetrics() throws Exception {
+        new ImagesService(transport).pullImage("busybox:latest", progress -> { });
+
+        JsonObject endpoint = transport.getMetrics().toJson().getAsJsonArray("endpoints").get(0).getAsJsonObject();
+        assertEquals("POST /images/create", endpoint.get("endpoint").getAsString());
+        assertEquals(1, endpoint.get("calls").getAsInt());
+        assertEquals(VERSION_JSON.length(), endpoint.get("bytesReceived").getAsLong());
+    }
+
+    @Test(expected = ImageNotFoundException.class)
+    public void testThatAPullOfAnUnknownImageFails() throws Exception {
+        server.createContext("/v1.21/images/create", exchange -> {
+            byte[] body = "{\"message\":\"pull access denied for nope\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+
+        new ImagesService(transport).pullImage("nope:latest", progress -> { });
+    }
+
+    @Test
+    public void testThatARequestFailsWhenNoConnectionComesFreeInTime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowCallArrived = new CountDownLatch(1);
+        server.createContext("/v1.21/slow", exchange -> {
+            slowCallArrived.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = VERSION_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        DockerTransport singleConnection = new PooledHttpTransport("127.0.0.1:" + server.getAddress().getPort(),
+                new TransportSettings(1, 30, 1, 1));
+        CompletableFuture<String> slowCall = CompletableFuture.supplyAsync(() ->
+                singleConnection.getRootTarget().path("v1.21/slow").request().get(String.class));
+        try {
+            assertTrue(slowCallArrived.await(5, TimeUnit.SECONDS));
+            try {
+                new MiscService(singleConnection).getVersionInfo();
+                fail("The call should time out waiting for the only connection");
+            } catch (DockerException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(TransportSettings.MAX_CONNECTIONS_PROPERTY));
+            }
+        } finally {
+            release.countDown();
+            slowCall.get(5, TimeUnit.SECONDS);
+            singleConnection.close();
+        }
+    }
+
+    @Test
+    public void testThatFollowedStreamsCountAsInFlightUntilTheyAreClosed() throws Exception {
+        try (ChannelHttpServer followServer = ChannelHttpServer.onLoopback(path -> "{\"status\":\"start\"}")) {
+            DockerTransport followTransport = new PooledHttpTransport(followServer.getApiRoot(),
+                    new TransportSettings(4, 30));
+            ContainersService containersService = new ContainersService(followTransport);
+            try (InputStream first = containersService.followLogs("cafebabe", 0);
+                 InputStream second = containersService.followLogs("deadbeef", 0)) {
+                assertTrue(first.read() != -1);
+                assertTrue(second.read() != -1);
+            }
+            try (InputStream third = containersService.followLogs("cafebabe", 0)) {
+                assertTrue(third.read() != -1);
+            }
+
+            assertEquals(2, followTransport.getStatistics().getPeakInFlightRequests());
+            followTransport.close();
+        }
+    }
+
+    @Test
+    public void testThatFollowedStreamsDoNotUseUpTheConnectionsOfOtherCalls() throws Exception {
+        try (ChannelHttpServer followServer = ChannelHttpServer.onLoopback(path -> VERSION_JSON)) {
+            DockerTransport singleConnection = new PooledHttpTransport(followServer.getApiRoot(),
+                    new TransportSettings(1, 30, 1, 1));
+            try (InputStream first = new ContainersService(singleConnection).followLogs("cafebabe", 0);
+                 InputStream second = new ContainersService(singleConnection).followLogs("deadbeef", 0)) {
+                assertTrue(first.read() != -1);
+                assertTrue(second.read() != -1);
+
+                assertEquals("1.21", new MiscService(singleConnection).getVersionInfo().getApiVersion());
+            } finally {
+                singleConnection.close();
+            }
+        }
+    }
+
+    @Test
+    public void testThatClosingAFollowedStreamDoesNotWaitForItToEnd() throws Exception {
+        try (ChannelHttpServer followServer = ChannelHttpServer.onLoopback(path -> "{\"status\":\"start\"}")) {
+            DockerTransport followTransport = new PooledHttpTransport(followServer.getApiRoot(),
+                    new TransportSettings(4, 30));
+            try (InputStream logs = new ContainersService(followTransport).followLogs("cafebabe", 0)) {
+                assertTrue(logs.read() != -1);
+            }
+
+            assertTrue(followServer.awaitFollowerGone(5000));
+            followTransport.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import net.wouterdanes.docker.provider.BuildContext;
+import net.wouterdanes.docker.remoteapi.MiscService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamedBuildUploadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ChannelHttpServer server;
+    private DockerTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ChannelHttpServer.onLoopback(path -> "{\"stream\":\"Successfully built 0123abcd\\n\"}");
+        transport = new PooledHttpTransport(server.getApiRoot(), new TransportSettings(4, 30));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.close();
+        server.close();
+    }
+
+    @Test
+    public void testThatTheBuildContextIsUploadedChunked() throws Exception {
+        File dockerFile = folder.newFile("Dockerfile");
+        File jar = folder.newFile("app.jar");
+        try (RandomAccessFile file = new RandomAccessFile(jar, "rw")) {
+            file.setLength(5 * 1024 * 1024);
+        }
+        BuildContext buildContext = new BuildContext()
+                .add(dockerFile, "Dockerfile")
+                .add(jar, "app.jar");
+
+        String imageId = new MiscService(transport).buildImage(buildContext, Optional.empty(), Optional.of("{}"));
+
+        assertEquals("0123abcd", imageId);
+        assertTrue(server.isLastRequestChunked());
+        assertEquals(buildContext.getBytesWritten(), server.getLastRequestBodySize());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import net.wouterdanes.docker.remoteapi.ImagesService;
+import net.wouterdanes.docker.remoteapi.PushProgress;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamedPushTest {
+
+    private static final String PUSHED = "{\"status\":\"The push refers to a repository [localhost:5000/app]\"}\r\n"
+            + "{\"status\":\"Preparing\",\"progressDetail\":{},\"id\":\"aaaa\"}\r\n"
+            + "{\"status\":\"Preparing\",\"progressDetail\":{},\"id\":\"bbbb\"}\r\n"
+            + "{\"status\":\"Layer already exists\",\"progressDetail\":{},\"id\":\"aaaa\"}\r\n"
+            + "{\"status\":\"Pushing\",\"progressDetail\":{\"current\":512,\"total\":1024},\"id\":\"bbbb\"}\r\n"
+            + "{\"status\":\"Pushed\",\"progressDetail\":{},\"id\":\"bbbb\"}\r\n"
+            + "{\"status\":\"1.0: digest: sha256:0123abcd size: 736\"}\r\n"
+            + "{\"progressDetail\":{},\"aux\":{\"Tag\":\"1.0\",\"Digest\":\"sha256:0123abcd\",\"Size\":736}}\r\n";
+    private static final String FAILED = "{\"status\":\"Preparing\",\"progressDetail\":{},\"id\":\"aaaa\"}\r\n"
+            + "{\"errorDetail\":{\"message\":\"denied: requested access to the resource is denied\"},"
+            + "\"error\":\"denied: requested access to the resource is denied\"}\r\n";
+
+    private ChannelHttpServer server;
+    private DockerTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ChannelHttpServer.onLoopback(path -> path.contains("denied") ? FAILED : PUSHED);
+        transport = new PooledHttpTransport(server.getApiRoot(), new TransportSettings(4, 30));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.close();
+        server.close();
+    }
+
+    @Test
+    public void testThatThePushReportsTheStateOfEveryLayerAndTheDigest() {
+        PushProgress push = new ImagesService(transport).pushImage("localhost:5000/app:1.0");
+
+        assertEquals(1, push.getLayersPushed());
+        assertEquals(1, push.getLayersAlreadyExisting());
+        assertEquals(Optional.of("Pushed"), push.getPhase("bbbb"));
+        assertEquals(Optional.of("sha256:0123abcd"), push.getDigest());
+    }
+
+    @Test
+    public void testThatAnErrorInTheStreamFailsThePushAlthoughTheStatusIs200() {
+        try {
+            new ImagesService(transport).pushImage("localhost:5000/denied:1.0");
+            fail("The push should have failed");
+        } catch (DockerException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("requested access to the resource is denied"));
+        }
+    }
+}
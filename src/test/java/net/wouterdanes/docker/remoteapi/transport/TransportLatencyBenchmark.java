@@ -0,0 +1,103 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import net.wouterdanes.docker.remoteapi.ContainersService;
+import net.wouterdanes.docker.remoteapi.MiscService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Compares the round trip latency of /version and /containers/{id}/json over a unix socket and over loopback tcp.
+ * This is not a unit test, run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=net.wouterdanes.docker.remoteapi.transport.TransportLatencyBenchmark \
+ *     -Dexec.args="[iterations] [socket path] [tcp host:port] [container id]"
+ * </pre>
+ * Without a socket path and tcp address, both transports are measured against the same small in-process server, which
+ * shows the overhead of the transports themselves. Pass the socket and tcp address of a real daemon (and the id of a
+ * running container) to measure the daemon as well.
+ */
+public final class TransportLatencyBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 500;
+    private static final String VERSION_JSON = "{\"Version\":\"1.9.1\",\"ApiVersion\":\"1.21\"}";
+    private static final String CONTAINER_JSON = "{\"Id\":\"cafebabe\",\"Name\":\"/busy_tesla\"}";
+
+    private TransportLatencyBenchmark() { }
+
+    public static void main(final String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        if (args.length >= 3) {
+            String containerId = args.length > 3 ? args[3] : null;
+            run("unix " + args[1], DockerTransport.forUnixSocket(Paths.get(args[1])), iterations, containerId);
+            run("tcp  " + args[2], DockerTransport.forApiRoot(args[2]), iterations, containerId);
+            return;
+        }
+
+        Function<String, String> handler = path -> path.contains("/containers/") ? CONTAINER_JSON : VERSION_JSON;
+        Path directory = Files.createTempDirectory("docker-socket-benchmark");
+        try (
+            ChannelHttpServer unixServer = ChannelHttpServer.onUnixSocket(directory.resolve("docker.sock"), handler);
+            ChannelHttpServer tcpServer = ChannelHttpServer.onLoopback(handler)
+        ) {
+            run("unix (in-process)", DockerTransport.forUnixSocket(unixServer.getSocketPath()), iterations, "cafebabe");
+            run("tcp (in-process) ", DockerTransport.forApiRoot(tcpServer.getApiRoot()), iterations, "cafebabe");
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void run(final String name, final DockerTransport transport, final int iterations,
+                            final String containerId) {
+        try {
+            MiscService miscService = new MiscService(transport);
+            ContainersService containersService = new ContainersService(transport);
+            measure(name, "/version", iterations, miscService::getVersionInfo);
+            if (containerId != null) {
+                measure(name, "/containers/{id}/json", iterations, () -> containersService.inspectContainer(containerId));
+            }
+            System.out.printf("%s: %s%n", name, transport.getStatistics());
+        } finally {
+            transport.close();
+        }
+    }
+
+    private static void measure(final String name, final String endpoint, final int iterations,
+                                final Runnable call) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            call.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            call.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0);
+        System.out.printf("%s %-22s mean %7.1f us, p50 %7.1f us, p99 %7.1f us, max %8.1f us%n", name, endpoint,
+                mean / 1000, nanos[iterations / 2] / 1000.0, nanos[(int) (iterations * 0.99)] / 1000.0,
+                nanos[iterations - 1] / 1000.0);
+    }
+}
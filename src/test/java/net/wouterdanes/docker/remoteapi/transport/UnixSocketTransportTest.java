@@ -0,0 +1,113 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.transport;
+
+import net.wouterdanes.docker.remoteapi.ContainersService;
+import net.wouterdanes.docker.remoteapi.MiscService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class UnixSocketTransportTest {
+
+    private Path directory;
+    private ChannelHttpServer server;
+    private DockerTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(ChannelHttpServer.isUnixSocketSupported());
+        directory = Files.createTempDirectory("docker-socket");
+        server = ChannelHttpServer.onUnixSocket(directory.resolve("docker.sock"), path -> {
+            if (path.contains("/containers/")) {
+                return "{\"Id\":\"cafebabe\",\"Name\":\"/busy_tesla\"}";
+            }
+            return "{\"Version\":\"1.9.1\",\"ApiVersion\":\"1.21\"}";
+        });
+        transport = new UnixSocketTransport(server.getSocketPath(), new TransportSettings(4, 30));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (transport != null) {
+            transport.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        if (directory != null) {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testThatConsecutiveCallsReuseTheSameConnection() throws Exception {
+        MiscService miscService = new MiscService(transport);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("1.21", miscService.getVersionInfo().getApiVersion());
+        }
+
+        TransportStatistics statistics = transport.getStatistics();
+        assertEquals(10, statistics.getRequests());
+        assertEquals(1, statistics.getOpenedConnections());
+        assertEquals(1, statistics.getPeakInFlightRequests());
+    }
+
+    @Test
+    public void testThatChunkedResponsesAreReadCompletely() throws Exception {
+        ContainersService containersService = new ContainersService(transport);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("cafebabe", containersService.inspectContainer("chunked").getId());
+        }
+
+        assertEquals(1, transport.getStatistics().getOpenedConnections());
+    }
+
+    @Test
+    public void testThatCallsThatCloseTheResponseWithoutReadingItReuseTheConnection() throws Exception {
+        ContainersService containersService = new ContainersService(transport);
+
+        for (int i = 0; i < 10; i++) {
+            containersService.stopContainer("cafebabe");
+        }
+
+        assertEquals(10, transport.getStatistics().getRequests());
+        assertEquals(1, transport.getStatistics().getOpenedConnections());
+    }
+
+    @Test
+    public void testThatClosingAFollowedStreamDoesNotWaitForItToEnd() throws Exception {
+        ContainersService containersService = new ContainersService(transport);
+
+        try (InputStream logs = containersService.followLogs("cafebabe", 0)) {
+            assertTrue(logs.read() != -1);
+        }
+
+        assertTrue(server.awaitFollowerGone(5000));
+    }
+}